@@ -12,13 +12,26 @@
  ***************************************************************************/
 package games.stendhal.client;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -28,10 +41,47 @@ import marauroa.common.crypto.Hash;
 import marauroa.common.net.message.TransferContent;
 
 /**
- * Manages a cache for content files such as zone data transmitted by the server
+ * Manages a cache for content files such as zone data transmitted by the server.
+ * <p>
+ * The size, modification time, hash and CRC of the cached files are kept in
+ * an index file, so that checking a cached file against the content offered
+ * by the server does not need to read the file. The files are hashed again
+ * only when they have been changed outside the cache. Files that are not in
+ * the index when the cache is initialized are hashed in the background.
+ * Changes to the index are written to the index file by
+ * {@link #saveIndex()} when a transfer is complete. Valid files are read by
+ * mapping them to memory.
  */
 class Cache {
 	private static Logger logger = Logger.getLogger(Cache.class);
+	/** Name of the index file in the cache folder. */
+	private static final String INDEX_FILE = "cache.index";
+	/** Files smaller than this are read instead of mapped to memory. */
+	private static final int MAP_THRESHOLD = 16 * 1024;
+
+	/** Folder for the game data. */
+	private final String gameFolder;
+	/** Index of the cached files by name. Guarded by itself. */
+	private final Map<String, Entry> index = new HashMap<String, Entry>();
+	/** <code>true</code>, if the index has changed since it was written. */
+	private boolean indexChanged;
+
+	/**
+	 * Create a new Cache in the game folder.
+	 */
+	Cache() {
+		this(stendhal.getGameFolder());
+	}
+
+	/**
+	 * Create a new Cache.
+	 *
+	 * @param gameFolder folder for the game data, including the trailing
+	 * 	separator
+	 */
+	Cache(String gameFolder) {
+		this.gameFolder = gameFolder;
+	}
 
 	/**
 	 * Inits the cache.
@@ -40,7 +90,7 @@ class Cache {
 		try {
 
 			// Create file object
-			File file = new File(stendhal.getGameFolder());
+			File file = new File(gameFolder);
 			if (!file.exists() && !file.mkdirs()) {
 				logger.error("Can't create " + file.getAbsolutePath() + " folder");
 			} else if (file.exists() && file.isFile()) {
@@ -49,13 +99,24 @@ class Cache {
 				}
 			}
 
-			file = new File(stendhal.getGameFolder() + "cache");
+			file = new File(gameFolder + "cache");
 			if (!file.exists() && !file.mkdir()) {
 				logger.error("Can't create " + file.getAbsolutePath() + " folder");
 			}
 		} catch (final RuntimeException e) {
 			logger.error("cannot create cach folder", e);
 		}
+		loadIndex();
+
+		Thread validator = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				validateAll();
+			}
+		}, "Cache validator");
+		validator.setDaemon(true);
+		validator.setPriority(Thread.MIN_PRIORITY);
+		validator.start();
 	}
 
 	/**
@@ -70,34 +131,58 @@ class Cache {
 			logger.error("Cannot get item from cache because .. is not allowed in name " + item.name);
 			return null;
 		}
-		String filename = getFilename(item.name);
-		byte[] data = IO.readFileContent(filename);
-		if (data == null) {
+		File file = new File(getFilename(item.name));
+		if (!file.isFile()) {
 			return null;
 		}
+		Entry entry = getEntry(item.name, file);
+		byte[] data = null;
+		if (entry == null) {
+			// Not indexed, or changed outside the cache
+			data = IO.readFileContent(file.getPath());
+			if (data == null) {
+				return null;
+			}
+			entry = putEntry(item.name, file, data);
+		}
 
 		// Check hash, if provided by the server
 		byte[] expectedHash = item.getTransmittedHash();
 		if (expectedHash != null) {
-			byte[] actualHash = Hash.hash(data);
-			if (Arrays.equals(expectedHash, actualHash)) {
-				return new ByteArrayInputStream(data);
-			} else {
+			if (!Arrays.equals(expectedHash, entry.hash)) {
 				return null;
 			}
+		} else if (item.timestamp != entry.crc) {
+			// Otherwise check CRC for Stendhal up to 0.97
+			return null;
 		}
 
-		// Otherwise check CRC for Stendhal up to 0.97
-		int expectedCRC = item.timestamp;
-		int actualCRC = CRC.cmpCRC(data);
-
-		if (expectedCRC == actualCRC) {
+		if (data != null) {
 			return new ByteArrayInputStream(data);
 		}
-		return null;
+		return openFile(file);
 	}
 
-
+	/**
+	 * Open a cached file for reading. Large files are mapped to memory.
+	 *
+	 * @param file file
+	 * @return stream, or <code>null</code> if the file could not be read
+	 */
+	private InputStream openFile(File file) {
+		if (file.length() < MAP_THRESHOLD) {
+			byte[] data = IO.readFileContent(file.getPath());
+			return (data != null) ? new ByteArrayInputStream(data) : null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ByteBufferInputStream(buffer);
+		} catch (IOException e) {
+			logger.warn("Cannot map " + file + ": " + e);
+			return null;
+		}
+	}
 
 	/**
 	 * Stores an item in cache.
@@ -113,13 +198,14 @@ class Cache {
 				logger.error("Cannot store item to cache because .. is not allowed in name " + item.name);
 				return;
 			}
-			String filename = stendhal.getGameFolder() + "cache/" + item.name;
+			String filename = gameFolder + "cache/" + item.name;
 			OutputStream os = new FileOutputStream(filename);
 			try {
 				os.write(data);
 			} finally {
 				os.close();
 			}
+			putEntry(item.name, new File(filename), data);
 
 			logger.debug("Content " + item.name + " cached now.");
 		} catch (IOException e) {
@@ -127,6 +213,135 @@ class Cache {
 		}
 	}
 
+	/**
+	 * Get the index entry of a file, if it is still valid.
+	 *
+	 * @param name name of the item
+	 * @param file cached file
+	 * @return entry, or <code>null</code> if the file is not indexed or has
+	 * 	been changed after indexing
+	 */
+	Entry getEntry(String name, File file) {
+		Entry entry;
+		synchronized (index) {
+			entry = index.get(name);
+		}
+		if ((entry != null) && (entry.size == file.length())
+				&& (entry.modified == file.lastModified())) {
+			return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * Hash the contents of a file and add it to the index.
+	 *
+	 * @param name name of the item
+	 * @param file cached file
+	 * @param data contents of the file
+	 * @return new index entry
+	 */
+	private Entry putEntry(String name, File file, byte[] data) {
+		Entry entry = new Entry(data.length, file.lastModified(), Hash.hash(data), CRC.cmpCRC(data));
+		synchronized (index) {
+			index.put(name, entry);
+			indexChanged = true;
+		}
+		return entry;
+	}
+
+	/**
+	 * Hash the cached files that are not in the index, and forget the files
+	 * that no longer exist.
+	 */
+	void validateAll() {
+		File[] files = new File(gameFolder + "cache").listFiles();
+		if (files == null) {
+			return;
+		}
+		Map<String, File> existing = new HashMap<String, File>();
+		for (File file : files) {
+			if (file.isFile() && !INDEX_FILE.equals(file.getName())) {
+				existing.put(file.getName(), file);
+			}
+		}
+		synchronized (index) {
+			if (index.keySet().retainAll(existing.keySet())) {
+				indexChanged = true;
+			}
+		}
+		for (Map.Entry<String, File> e : existing.entrySet()) {
+			if (getEntry(e.getKey(), e.getValue()) == null) {
+				byte[] data = IO.readFileContent(e.getValue().getPath());
+				if (data != null) {
+					putEntry(e.getKey(), e.getValue(), data);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the index file.
+	 */
+	private void loadIndex() {
+		File file = new File(gameFolder + "cache/" + INDEX_FILE);
+		if (!file.isFile()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t", 5);
+				if (parts.length != 5) {
+					continue;
+				}
+				try {
+					Entry entry = new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+							Base64.getDecoder().decode(parts[3]), Integer.parseInt(parts[4]));
+					synchronized (index) {
+						index.put(parts[0], entry);
+					}
+				} catch (IllegalArgumentException e) {
+					logger.debug("Ignoring invalid cache index line: " + line);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Cannot read cache index: " + e);
+		}
+	}
+
+	/**
+	 * Write the index file, if it has changed. The index is kept locked while
+	 * writing, so that the background validation does not change it at the
+	 * same time.
+	 */
+	void saveIndex() {
+		synchronized (index) {
+			if (!indexChanged) {
+				return;
+			}
+			File file = new File(gameFolder + "cache/" + INDEX_FILE);
+			File tmp = new File(file.getPath() + ".tmp");
+			try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+					new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+				for (Map.Entry<String, Entry> e : index.entrySet()) {
+					Entry entry = e.getValue();
+					out.print(e.getKey() + "\t" + entry.size + "\t" + entry.modified + "\t"
+							+ Base64.getEncoder().encodeToString(entry.hash) + "\t" + entry.crc + "\n");
+				}
+			} catch (IOException e) {
+				logger.warn("Cannot write cache index: " + e);
+				return;
+			}
+			if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+				logger.warn("Cannot replace cache index " + file);
+				return;
+			}
+			indexChanged = false;
+		}
+	}
+
 	/**
 	 * gets the filename
 	 *
@@ -138,6 +353,85 @@ class Cache {
 			logger.error("Cannot access item in cache because .. is not allowed in name " + name);
 			return null;
 		}
-		return stendhal.getGameFolder() + "cache/" + name;
+		return gameFolder + "cache/" + name;
+	}
+
+	/**
+	 * Index data of a cached file.
+	 */
+	static final class Entry {
+		/** Size of the file. */
+		final long size;
+		/** Modification time of the file. */
+		final long modified;
+		/** Hash of the contents. */
+		final byte[] hash;
+		/** CRC of the contents, used by old servers. */
+		final int crc;
+
+		/**
+		 * Create a new Entry.
+		 *
+		 * @param size size of the file
+		 * @param modified modification time of the file
+		 * @param hash hash of the contents
+		 * @param crc CRC of the contents
+		 */
+		Entry(long size, long modified, byte[] hash, int crc) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+			this.crc = crc;
+		}
+	}
+
+	/**
+	 * An InputStream reading a ByteBuffer.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+		/** Buffer to read. */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Create a new ByteBufferInputStream.
+		 *
+		 * @param buffer buffer to read
+		 */
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			return buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + count);
+			return count;
+		}
 	}
 }
@@ -12,8 +12,13 @@
 package games.stendhal.client;
 
 import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import games.stendhal.client.sprite.CompositeSprite;
 import games.stendhal.client.sprite.Sprite;
@@ -21,33 +26,50 @@ import games.stendhal.client.sprite.SpriteCache;
 
 /**
  * A LayerRenderer that merges several tile layers in to one using
- * CompositeSprites.
+ * CompositeSprites. The renderer can be created in a background thread.
  */
 class CompositeLayerRenderer extends TileRenderer {
+	/** Pre-rendered chunks of the layer, or <code>null</code>. */
+	private final TileChunkCache chunks;
+	/** Number of different tile stacks in the layer. */
+	private int uniqueStacks;
+
 	/**
 	 * Create a CompositeLayerRenderer from a set of {@link TileRenderer}s
 	 *
 	 * @param layerRenderers TileRenderers used for compositing
 	 * @param blend composite mode for drawing the adjustment layer
 	 * @param adjustLayer adjustment layer
+	 * @param useChunks <code>true</code>, if the layer should be drawn using
+	 * 	pre-rendered chunks of tiles
 	 */
 	CompositeLayerRenderer(List<TileRenderer> layerRenderers,
-			Composite blend, TileRenderer adjustLayer) {
+			Composite blend, TileRenderer adjustLayer, boolean useChunks) {
 		LayerRenderer lr = layerRenderers.get(0);
 		width = lr.getWidth();
 		height = lr.getHeight();
 
-		Sprite maps[][] = new Sprite[layerRenderers.size()][];
-		int i = 0;
-		for (LayerRenderer layer : layerRenderers) {
-			maps[i] = ((TileRenderer) layer).spriteMap;
-			i++;
-		}
 		createComposites(layerRenderers, blend, adjustLayer);
+		if (useChunks) {
+			chunks = new TileChunkCache(spriteMap, width, height);
+		} else {
+			chunks = null;
+		}
+	}
+
+	@Override
+	public void draw(Graphics g, int x, int y, int w, int h) {
+		if ((chunks != null) && (g instanceof Graphics2D)) {
+			chunks.draw((Graphics2D) g, x, y, w, h);
+		} else {
+			super.draw(g, x, y, w, h);
+		}
 	}
 
 	/**
-	 * Fill the spriteMap with composite sprites.
+	 * Fill the spriteMap with composite sprites. Each different stack of tiles
+	 * is composited only once, and the image merging of the composites is
+	 * done here rather than when they are first drawn.
 	 *
 	 * @param renderers slave layers
 	 * @param blend composite mode for drawing the adjustment layer
@@ -61,28 +83,108 @@ class CompositeLayerRenderer extends TileRenderer {
 		int layers = renderers.size();
 
 		List<Sprite> slaveSprites = new ArrayList<Sprite>(layers);
+		Map<TileStack, Sprite> stacks = new HashMap<TileStack, Sprite>();
+		TileStack probe = new TileStack(layers + 1);
 
 		for (int i = 0; i < size; i++) {
-			for (TileRenderer r : renderers) {
-				slaveSprites.add(r.tileset.getSprite(r.map[i]));
+			for (int layer = 0; layer < layers; layer++) {
+				probe.tiles[layer] = renderers.get(layer).map[i];
 			}
-			Sprite adjSprite = null;
-			if (adjustLayer != null) {
-				adjSprite = adjustLayer.tileset.getSprite(adjustLayer.map[i]);
+			probe.tiles[layers] = (adjustLayer != null) ? adjustLayer.map[i] : 0;
+			probe.updateHash();
+
+			Sprite sprite = stacks.get(probe);
+			if (sprite == null) {
+				for (TileRenderer r : renderers) {
+					slaveSprites.add(r.tileset.getSprite(r.map[i]));
+				}
+				Sprite adjSprite = null;
+				if (adjustLayer != null) {
+					adjSprite = adjustLayer.tileset.getSprite(adjustLayer.map[i]);
+				}
+				sprite = CompositeSprite.getComposite(cache, slaveSprites,
+						blend, adjSprite);
+				slaveSprites.clear();
+				// Merge the images now instead of in the drawing thread
+				if (sprite instanceof CompositeSprite) {
+					((CompositeSprite) sprite).prepare();
+				}
+				stacks.put(probe.copy(), sprite);
 			}
-			spriteMap[i] = CompositeSprite.getComposite(cache, slaveSprites,
-					blend, adjSprite);
-			slaveSprites.clear();
+			spriteMap[i] = sprite;
 		}
+		uniqueStacks = stacks.size();
+	}
+
+	/**
+	 * Get the number of different tile stacks in the layer.
+	 *
+	 * @return number of composited tile stacks
+	 */
+	int getUniqueStacks() {
+		return uniqueStacks;
+	}
 
-		// Wipe out unneeded data from the slaves. Assumes their draw() method
-		// will not be called from anywhere. The renderers will be useless by
-		// themselves after this, so if the assumption changes, this needs code
-		// will need to be revisited
+	/**
+	 * Wipe out unneeded data from the slaves. The renderers will be useless by
+	 * themselves after this, so this must be called only after they are no
+	 * longer drawn.
+	 *
+	 * @param renderers slave layers
+	 */
+	static void releaseSlaves(List<TileRenderer> renderers) {
 		for (TileRenderer r : renderers) {
 			r.map = null;
 			r.spriteMap = null;
 			r.tileset = null;
 		}
 	}
+
+	/**
+	 * Tile indices of all the layers at one map position.
+	 */
+	private static final class TileStack {
+		/** Tile indices, starting from the bottom layer. */
+		private final int[] tiles;
+		/** Cached hash code. */
+		private int hash;
+
+		/**
+		 * Create a new TileStack.
+		 *
+		 * @param layers number of layers
+		 */
+		TileStack(int layers) {
+			tiles = new int[layers];
+		}
+
+		/**
+		 * Update the hash code after the tiles have been changed.
+		 */
+		void updateHash() {
+			hash = Arrays.hashCode(tiles);
+		}
+
+		/**
+		 * Create an unchanging copy of the stack.
+		 *
+		 * @return copy
+		 */
+		TileStack copy() {
+			TileStack copy = new TileStack(tiles.length);
+			System.arraycopy(tiles, 0, copy.tiles, 0, tiles.length);
+			copy.hash = hash;
+			return copy;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof TileStack) && Arrays.equals(tiles, ((TileStack) obj).tiles);
+		}
+	}
 }
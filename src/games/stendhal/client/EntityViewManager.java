@@ -17,13 +17,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+import games.stendhal.client.entity.EntityChangeListener;
 import games.stendhal.client.entity.IEntity;
 import games.stendhal.client.entity.Item;
 import games.stendhal.client.entity.Player;
@@ -34,6 +37,12 @@ import games.stendhal.client.gui.j2d.entity.EntityViewFactory;
  * Manager for EntityViews. Several methods specify from which threads they may
  * be called. The manager takes care of synchronizing the relevant data between
  * those.
+ * <p>
+ * The views are kept in a grid by their screen area, so that finding the
+ * views on the screen does not need to check all the views. Only the views
+ * on the screen and the views whose entity has changed are updated when
+ * preparing a frame, and the drawing order is kept between frames, so that
+ * only the changed views need to be sorted in to it.
  */
 class EntityViewManager {
 	private static final Logger logger = Logger.getLogger(EntityViewManager.class);
@@ -42,19 +51,42 @@ class EntityViewManager {
 	 * Comparator used to sort entities to display.
 	 */
 	private static final EntityViewComparator entityViewComparator = new EntityViewComparator();
+	/** Width and height of the grid cells in pixels. */
+	private static final int CELL_SIZE = 4 * IGameScreen.SIZE_UNIT_PIXELS;
 
 	/**
 	 * The entity views. Modified in the game loop and read in the EDT.
 	 * Remember to synchronize.
 	 */
 	private final List<EntityView<IEntity>> views = new ArrayList<EntityView<IEntity>>();
+	/**
+	 * Views that have been added or whose entity has changed since the last
+	 * frame. Guarded by <code>views</code>.
+	 */
+	private final Set<TrackedView> changedViews = new LinkedHashSet<TrackedView>();
+	/**
+	 * Views that have been removed since the last frame. Guarded by
+	 * <code>views</code>.
+	 */
+	private final List<TrackedView> removedViews = new ArrayList<TrackedView>();
+	/** Views by grid cell. May be accessed only in the EDT. */
+	private final Map<Long, List<TrackedView>> grid = new HashMap<Long, List<TrackedView>>();
+	/** Views on the screen in drawing order. May be accessed only in the EDT. */
+	private final List<TrackedView> visible = new ArrayList<TrackedView>();
 	/** Entities on the screen. */
 	private final List<EntityView<IEntity>> visibleViews = new ArrayList<EntityView<IEntity>>();
+	/** Number of the current frame. */
+	private int frame;
 
 	/**
 	 * The entity to view map. May be accessed only in the game loop thread.
 	 */
 	private final Map<IEntity, EntityView<IEntity>> entities = new HashMap<IEntity, EntityView<IEntity>>();
+	/**
+	 * Tracking data of the views by entity. May be accessed only in the game
+	 * loop thread.
+	 */
+	private final Map<IEntity, TrackedView> tracked = new HashMap<IEntity, TrackedView>();
 
 	/** User name. Used for grabbing user owned items hack. */
 	private final String userName = StendhalClient.get().getCharacter();
@@ -70,7 +102,7 @@ class EntityViewManager {
 
 		if (view != null) {
 			entities.put(entity, view);
-			addEntityView(view);
+			addEntityView(entity, view);
 		}
 		return view;
 	}
@@ -78,11 +110,16 @@ class EntityViewManager {
 	/**
 	 * Add an entity view.
 	 *
+	 * @param entity entity of the view
 	 * @param view new view
 	 */
-	private void addEntityView(EntityView<IEntity> view) {
+	void addEntityView(IEntity entity, EntityView<IEntity> view) {
+		TrackedView t = new TrackedView(view, changedViews, views);
+		tracked.put(entity, t);
+		entity.addChangeListener(t);
 		synchronized (views) {
 			views.add(view);
+			changedViews.add(t);
 		}
 	}
 
@@ -223,18 +260,27 @@ class EntityViewManager {
 		final EntityView<IEntity> view = entities.remove(entity);
 
 		if (view != null) {
-			removeEntityView(view);
+			removeEntityView(entity, view);
 		}
 	}
 
 	/**
 	 * Remove an entity view.
 	 *
+	 * @param entity entity of the view
 	 * @param view removed view
 	 */
-	private void removeEntityView(EntityView<IEntity> view) {
+	void removeEntityView(IEntity entity, EntityView<IEntity> view) {
+		TrackedView t = tracked.remove(entity);
+		if (t != null) {
+			entity.removeChangeListener(t);
+		}
 		synchronized (views) {
 			views.remove(view);
+			if (t != null) {
+				changedViews.remove(t);
+				removedViews.add(t);
+			}
 			view.release();
 		}
 	}
@@ -249,6 +295,9 @@ class EntityViewManager {
 			// initialize() should trigger making a new image
 			entry.getValue().initialize(entry.getKey());
 		}
+		synchronized (views) {
+			changedViews.addAll(tracked.values());
+		}
 	}
 
 	/**
@@ -260,20 +309,167 @@ class EntityViewManager {
 	 * 	should be only done when the whole screen is drawn
 	 */
 	void prepareViews(Rectangle area, boolean setVisibleArea) {
-		visibleViews.clear();
+		frame++;
+		List<TrackedView> updated = new ArrayList<TrackedView>();
 		synchronized (views) {
-			for (EntityView<IEntity> view : views) {
-				view.applyChanges();
-				if (area.intersects(view.getArea())) {
-					visibleViews.add(view);
+			for (TrackedView t : removedViews) {
+				removeFromGrid(t);
+				t.removed = true;
+			}
+			removedViews.clear();
+
+			// Update the changed views, wherever they are
+			for (TrackedView t : changedViews) {
+				t.view.applyChanges();
+				update(t);
+				updated.add(t);
+			}
+			changedViews.clear();
+
+			// Find the views in the area
+			List<TrackedView> candidates = new ArrayList<TrackedView>();
+			int minX = Math.floorDiv(area.x, CELL_SIZE);
+			int maxX = Math.floorDiv(area.x + area.width, CELL_SIZE);
+			int minY = Math.floorDiv(area.y, CELL_SIZE);
+			int maxY = Math.floorDiv(area.y + area.height, CELL_SIZE);
+			for (int y = minY; y <= maxY; y++) {
+				for (int x = minX; x <= maxX; x++) {
+					List<TrackedView> cell = grid.get(cellKey(x, y));
+					if (cell != null) {
+						for (TrackedView t : cell) {
+							if (t.checkedFrame != frame) {
+								t.checkedFrame = frame;
+								candidates.add(t);
+							}
+						}
+					}
+				}
+			}
+			for (TrackedView t : candidates) {
+				// Views can change without changes in the entity
+				t.view.applyChanges();
+				if (update(t)) {
+					updated.add(t);
+				}
+				if (area.intersects(t.view.getArea())) {
+					t.visibleFrame = frame;
 					if (setVisibleArea) {
-						view.setVisibleScreenArea(area);
+						t.view.setVisibleScreenArea(area);
+					}
+				}
+			}
+
+			// Keep the order of the unchanged views that are still visible,
+			// and sort the rest in
+			List<TrackedView> order = new ArrayList<TrackedView>(visible.size());
+			for (TrackedView t : visible) {
+				if ((t.visibleFrame == frame) && !t.moved) {
+					t.sortedFrame = frame;
+					order.add(t);
+				}
+			}
+			for (TrackedView t : candidates) {
+				if ((t.visibleFrame == frame) && (t.sortedFrame != frame)) {
+					t.sortedFrame = frame;
+					int index = Collections.binarySearch(order, t, entityViewComparator);
+					order.add((index < 0) ? -index - 1 : index, t);
+				}
+			}
+			for (TrackedView t : updated) {
+				t.moved = false;
+			}
+			visible.clear();
+			visible.addAll(order);
+		}
+
+		visibleViews.clear();
+		for (TrackedView t : visible) {
+			visibleViews.add(t.view);
+		}
+	}
+
+	/**
+	 * Update the position of a view in the grid, and the values used for
+	 * sorting it.
+	 *
+	 * @param t view
+	 * @return <code>true</code> if the view moved in the drawing order, or was
+	 * 	not in the grid before
+	 */
+	private boolean update(TrackedView t) {
+		if (t.removed) {
+			return false;
+		}
+		Rectangle area = t.view.getArea();
+		int zIndex = t.view.getZIndex();
+		int bottom = area.y + area.height;
+		int minX = Math.floorDiv(area.x, CELL_SIZE);
+		int maxX = Math.floorDiv(area.x + Math.max(area.width, 1) - 1, CELL_SIZE);
+		int minY = Math.floorDiv(area.y, CELL_SIZE);
+		int maxY = Math.floorDiv(area.y + Math.max(area.height, 1) - 1, CELL_SIZE);
+		if (!t.inGrid || (minX != t.minX) || (maxX != t.maxX) || (minY != t.minY) || (maxY != t.maxY)) {
+			removeFromGrid(t);
+			t.minX = minX;
+			t.maxX = maxX;
+			t.minY = minY;
+			t.maxY = maxY;
+			for (int y = minY; y <= maxY; y++) {
+				for (int x = minX; x <= maxX; x++) {
+					Long key = cellKey(x, y);
+					List<TrackedView> cell = grid.get(key);
+					if (cell == null) {
+						cell = new ArrayList<TrackedView>(4);
+						grid.put(key, cell);
 					}
+					cell.add(t);
 				}
 			}
+			if (!t.inGrid) {
+				t.inGrid = true;
+				t.moved = true;
+			}
 		}
+		if ((zIndex != t.zIndex) || (bottom != t.bottom)) {
+			t.zIndex = zIndex;
+			t.bottom = bottom;
+			t.moved = true;
+		}
+		return t.moved;
+	}
 
-		Collections.sort(visibleViews, entityViewComparator);
+	/**
+	 * Remove a view from the grid.
+	 *
+	 * @param t view
+	 */
+	private void removeFromGrid(TrackedView t) {
+		if (!t.inGrid) {
+			return;
+		}
+		for (int y = t.minY; y <= t.maxY; y++) {
+			for (int x = t.minX; x <= t.maxX; x++) {
+				Long key = cellKey(x, y);
+				List<TrackedView> cell = grid.get(key);
+				if (cell != null) {
+					cell.remove(t);
+					if (cell.isEmpty()) {
+						grid.remove(key);
+					}
+				}
+			}
+		}
+		t.inGrid = false;
+	}
+
+	/**
+	 * Get the key of a grid cell.
+	 *
+	 * @param x x coordinate of the cell
+	 * @param y y coordinate of the cell
+	 * @return key
+	 */
+	private static Long cellKey(int x, int y) {
+		return Long.valueOf(((long) x << 32) | (y & 0xffffffffL));
 	}
 
 	/**
@@ -307,22 +503,71 @@ class EntityViewManager {
 	}
 
 	/**
-	 * Comparator for sorting the views.
+	 * Tracking data of a view. Marks the view changed when its entity changes.
+	 */
+	private static final class TrackedView implements EntityChangeListener<IEntity> {
+		/** The tracked view. */
+		final EntityView<IEntity> view;
+		/** Z index used for sorting. */
+		int zIndex;
+		/** Bottom of the view area used for sorting. */
+		int bottom;
+		/** <code>true</code>, if the view is in the grid. */
+		boolean inGrid;
+		/** Grid cells the view is in. */
+		int minX, maxX, minY, maxY;
+		/** <code>true</code>, if the view needs to be sorted again. */
+		boolean moved;
+		/** <code>true</code>, if the view has been removed. */
+		boolean removed;
+		/** Last frame when the view was checked for visibility. */
+		int checkedFrame;
+		/** Last frame when the view was visible. */
+		int visibleFrame;
+		/** Last frame when the view was sorted. */
+		int sortedFrame;
+		/** Manager whose changed set the view is added to. */
+		private final Set<TrackedView> changed;
+		/** Lock guarding the changed set. */
+		private final Object lock;
+
+		/**
+		 * Create a new TrackedView.
+		 *
+		 * @param view view
+		 * @param changed set of changed views
+		 * @param lock lock guarding the set of changed views
+		 */
+		TrackedView(EntityView<IEntity> view, Set<TrackedView> changed, Object lock) {
+			this.view = view;
+			this.changed = changed;
+			this.lock = lock;
+		}
+
+		@Override
+		public void entityChanged(IEntity entity, Object property) {
+			synchronized (lock) {
+				if (!removed) {
+					changed.add(this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Comparator for sorting the views. Uses the values stored at the last
+	 * update of the views, so that the order does not change between the
+	 * updates.
 	 */
-	private static class EntityViewComparator implements
-			Comparator<EntityView<IEntity>> {
+	private static class EntityViewComparator implements Comparator<TrackedView> {
 		@Override
-		public int compare(final EntityView<IEntity> view1,
-				final EntityView<IEntity> view2) {
+		public int compare(final TrackedView view1, final TrackedView view2) {
 			int rv;
 
-			rv = view1.getZIndex() - view2.getZIndex();
+			rv = view1.zIndex - view2.zIndex;
 
 			if (rv == 0) {
-				final Rectangle area1 = view1.getArea();
-				final Rectangle area2 = view2.getArea();
-
-				rv = (area1.y + area1.height) - (area2.y + area2.height);
+				rv = view1.bottom - view2.bottom;
 
 				if (rv == 0) {
 					/*
@@ -332,8 +577,8 @@ class EntityViewManager {
 					 * TODO: stack items in the same order they were added on
 					 * server side.
 					 */
-					rv = view1.getEntity().getID().getObjectID()
-							- view2.getEntity().getID().getObjectID();
+					rv = view1.view.getEntity().getID().getObjectID()
+							- view2.view.getEntity().getID().getObjectID();
 				}
 			}
 
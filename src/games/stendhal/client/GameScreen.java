@@ -630,15 +630,15 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		viewManager.prepareViews(clip, fullRedraw);
 
 		final String set = gameLayers.getAreaName();
-		gameLayers.drawLayers(g, set, "floor_bundle", startTileX,
-				startTileY, layerWidth, layerHeight, "blend_ground", "0_floor",
-				"1_terrain", "2_object");
+		gameLayers.drawLayers(g, set, Zone.FLOOR_BUNDLE, startTileX,
+				startTileY, layerWidth, layerHeight, Zone.FLOOR_ADJUSTMENT,
+				Zone.FLOOR_LAYERS);
 
 		viewManager.draw(g);
 
-		gameLayers.drawLayers(g, set, "roof_bundle", startTileX,
-				startTileY, layerWidth, layerHeight, "blend_roof", "3_roof",
-				"4_roof_add");
+		gameLayers.drawLayers(g, set, Zone.ROOF_BUNDLE, startTileX,
+				startTileY, layerWidth, layerHeight, Zone.ROOF_ADJUSTMENT,
+				Zone.ROOF_LAYERS);
 		gameLayers.drawWeather(g, startTileX, startTileY, layerWidth, layerHeight);
 
 		// Draw the top portion screen entities (such as HP/title bars).
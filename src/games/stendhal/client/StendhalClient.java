@@ -250,6 +250,7 @@ public class StendhalClient extends ClientFramework {
 				break;
 			}
 		}
+		final boolean attributesOnly = isAttributeUpdate(items);
 
 		// Is it just a reload for new coloring?
 		if (currentZone != null) {
@@ -269,6 +270,14 @@ public class StendhalClient extends ClientFramework {
 		contentToLoad = 0;
 
 		for (final TransferContent item : items) {
+			if (attributesOnly && !isForZone(item, currentZone)) {
+				/*
+				 * An update of the zone attributes sent before a zone change
+				 * has been completed. The new zone gets its own attributes.
+				 */
+				item.ack = false;
+				continue;
+			}
 			if ((item.name != null) && item.name.endsWith(".data_map")) {
 				// Tell the zone to be invalid until the data layer has been
 				// added
@@ -297,10 +306,40 @@ public class StendhalClient extends ClientFramework {
 				contentToLoad++;
 			}
 		}
+		if (contentToLoad == 0) {
+			cache.saveIndex();
+		}
 
 		return items;
 	}
 
+	/**
+	 * Check if a transfer contains only zone attributes, sent when they
+	 * change without affecting the coloring of the zone.
+	 *
+	 * @param items transferred content
+	 * @return <code>true</code> if all the content is attribute layers
+	 */
+	static boolean isAttributeUpdate(final List<TransferContent> items) {
+		for (TransferContent item : items) {
+			if ((item.name == null) || !item.name.endsWith(".data_map")) {
+				return false;
+			}
+		}
+		return !items.isEmpty();
+	}
+
+	/**
+	 * Check if transferred content belongs to a zone.
+	 *
+	 * @param item content
+	 * @param zone zone, or <code>null</code>
+	 * @return <code>true</code> if the content is a layer of the zone
+	 */
+	static boolean isForZone(final TransferContent item, final Zone zone) {
+		return (zone != null) && (item.name != null) && item.name.startsWith(zone.getName() + ".");
+	}
+
 	/**
 	 * Add a listener to be called when the player changes zone.
 	 *
@@ -358,7 +397,7 @@ public class StendhalClient extends ClientFramework {
 				 * previous zone. Discard that and keep waiting for the real
 				 * data.
 				 */
-				if (item.name.startsWith(currentZone.getName() + ".")) {
+				if (isForZone(item, currentZone)) {
 					contentHandling(item.name, new ByteArrayInputStream(item.data));
 				} else {
 					// Still waiting for the real data
@@ -378,6 +417,9 @@ public class StendhalClient extends ClientFramework {
 			logger.warn("More data transfer than expected");
 			contentToLoad = 0;
 		}
+		if (contentToLoad == 0) {
+			cache.saveIndex();
+		}
 	}
 
 	@Override
@@ -748,7 +790,9 @@ public class StendhalClient extends ClientFramework {
 			Thread worker = new Thread() {
 				@Override
 				public void run() {
-					zone.validate();
+					if (zone.validate()) {
+						zone.prepareComposites();
+					}
 					// Push "zone change" back to the game loop, so that zone
 					// name checking works correctly, and that there aren't two
 					// zone changes happening from two different threads.
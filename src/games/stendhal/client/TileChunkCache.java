@@ -0,0 +1,271 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * Pre-rendered images of a tile layer. The layer is split into chunks of
+ * {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} tiles, and the constant tiles of
+ * each chunk are drawn to an image when the chunk is first needed. Tiles that
+ * can change between draws, such as animated tiles, are drawn on top of the
+ * chunk image every time. The least recently used chunk images are dropped
+ * when more chunks than needed for a couple of screens are cached.
+ */
+final class TileChunkCache {
+	/** Width and height of a chunk in tiles. */
+	static final int CHUNK_SIZE = 16;
+	/** Width and height of a chunk in pixels. */
+	private static final int CHUNK_PIXELS = CHUNK_SIZE * IGameScreen.SIZE_UNIT_PIXELS;
+	/** Minimum number of chunk images that are kept. */
+	private static final int MIN_CACHED_CHUNKS = 16;
+
+	/** Sprites of the layer. */
+	private final Sprite[] spriteMap;
+	/** Width of the layer in tiles. */
+	private final int width;
+	/** Height of the layer in tiles. */
+	private final int height;
+	/** Number of chunks in horizontal direction. */
+	private final int chunksX;
+	/** Chunks of the layer, created when first needed. */
+	private final Chunk[] chunks;
+	/** Chunks that have an image, in the order of last use. */
+	private final Map<Chunk, Chunk> cached = new LinkedHashMap<Chunk, Chunk>(16, 0.75f, true);
+	/** Maximum number of chunk images. */
+	private int maxCached = MIN_CACHED_CHUNKS;
+
+	/**
+	 * Create a new TileChunkCache.
+	 *
+	 * @param spriteMap sprites of the layer. Must not be changed afterwards
+	 * @param width width of the layer in tiles
+	 * @param height height of the layer in tiles
+	 */
+	TileChunkCache(Sprite[] spriteMap, int width, int height) {
+		this.spriteMap = spriteMap;
+		this.width = width;
+		this.height = height;
+		chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		chunks = new Chunk[chunksX * chunksY];
+	}
+
+	/**
+	 * Draw an area of the layer.
+	 *
+	 * @param g graphics
+	 * @param x starting x coordinate in world units
+	 * @param y starting y coordinate in world units
+	 * @param w width in world units
+	 * @param h height in world units
+	 */
+	void draw(Graphics2D g, int x, int y, int w, int h) {
+		x = Math.max(0, x);
+		y = Math.max(0, y);
+		final int endX = Math.min(x + w, width);
+		final int endY = Math.min(y + h, height);
+		if ((endX <= x) || (endY <= y)) {
+			return;
+		}
+		final int firstX = x / CHUNK_SIZE;
+		final int lastX = (endX - 1) / CHUNK_SIZE;
+		final int firstY = y / CHUNK_SIZE;
+		final int lastY = (endY - 1) / CHUNK_SIZE;
+		// Keep enough chunks for the screen, and some for scrolling
+		maxCached = Math.max(maxCached, 2 * (lastX - firstX + 1) * (lastY - firstY + 1));
+
+		final GraphicsConfiguration gc = g.getDeviceConfiguration();
+		for (int cy = firstY; cy <= lastY; cy++) {
+			for (int cx = firstX; cx <= lastX; cx++) {
+				final Chunk chunk = getChunk(cx, cy);
+				if (!chunk.empty) {
+					drawImage(g, gc, chunk);
+				}
+				drawChanging(g, chunk, x, y, endX, endY);
+			}
+		}
+	}
+
+	/**
+	 * Get a chunk, creating it if needed.
+	 *
+	 * @param cx x coordinate of the chunk
+	 * @param cy y coordinate of the chunk
+	 * @return chunk
+	 */
+	Chunk getChunk(int cx, int cy) {
+		final int index = cy * chunksX + cx;
+		Chunk chunk = chunks[index];
+		if (chunk == null) {
+			chunk = new Chunk(cx * CHUNK_SIZE, cy * CHUNK_SIZE);
+			chunks[index] = chunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Draw the image of the constant tiles of a chunk, rendering it first if
+	 * needed.
+	 *
+	 * @param g graphics
+	 * @param gc configuration for creating the image
+	 * @param chunk chunk
+	 */
+	private void drawImage(Graphics2D g, GraphicsConfiguration gc, Chunk chunk) {
+		final int px = chunk.x * IGameScreen.SIZE_UNIT_PIXELS;
+		final int py = chunk.y * IGameScreen.SIZE_UNIT_PIXELS;
+		do {
+			VolatileImage image = chunk.image;
+			final int status = (image == null) ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(gc);
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				if (image != null) {
+					image.flush();
+				}
+				image = gc.createCompatibleVolatileImage(CHUNK_PIXELS, CHUNK_PIXELS,
+						Transparency.TRANSLUCENT);
+				chunk.image = image;
+				render(chunk);
+			} else if (status == VolatileImage.IMAGE_RESTORED) {
+				render(chunk);
+			}
+			g.drawImage(image, px, py, null);
+		} while (chunk.image.contentsLost());
+
+		cached.put(chunk, chunk);
+		if (cached.size() > maxCached) {
+			final Iterator<Chunk> it = cached.keySet().iterator();
+			final Chunk eldest = it.next();
+			it.remove();
+			eldest.image.flush();
+			eldest.image = null;
+		}
+	}
+
+	/**
+	 * Render the constant tiles of a chunk to its image.
+	 *
+	 * @param chunk chunk
+	 */
+	private void render(Chunk chunk) {
+		final Graphics2D g = chunk.image.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, CHUNK_PIXELS, CHUNK_PIXELS);
+		g.setComposite(AlphaComposite.SrcOver);
+		final int endX = Math.min(chunk.x + CHUNK_SIZE, width);
+		final int endY = Math.min(chunk.y + CHUNK_SIZE, height);
+		int sy = 0;
+		for (int j = chunk.y; j < endY; j++) {
+			int mapidx = (j * width) + chunk.x;
+			int sx = 0;
+			for (int i = chunk.x; i < endX; i++) {
+				final Sprite sprite = spriteMap[mapidx];
+				if (sprite.isConstant()) {
+					sprite.draw(g, sx, sy);
+				}
+				mapidx++;
+				sx += IGameScreen.SIZE_UNIT_PIXELS;
+			}
+			sy += IGameScreen.SIZE_UNIT_PIXELS;
+		}
+		g.dispose();
+	}
+
+	/**
+	 * Draw the tiles of a chunk that are not in the chunk image.
+	 *
+	 * @param g graphics
+	 * @param chunk chunk
+	 * @param x starting x coordinate of the drawn area
+	 * @param y starting y coordinate of the drawn area
+	 * @param endX x coordinate after the drawn area
+	 * @param endY y coordinate after the drawn area
+	 */
+	private void drawChanging(Graphics2D g, Chunk chunk, int x, int y, int endX, int endY) {
+		for (int mapidx : chunk.changing) {
+			final int i = mapidx % width;
+			final int j = mapidx / width;
+			if ((i >= x) && (i < endX) && (j >= y) && (j < endY)) {
+				spriteMap[mapidx].draw(g, i * IGameScreen.SIZE_UNIT_PIXELS,
+						j * IGameScreen.SIZE_UNIT_PIXELS);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of chunks that currently have an image.
+	 *
+	 * @return number of cached chunk images
+	 */
+	int getCachedCount() {
+		return cached.size();
+	}
+
+	/**
+	 * A square area of the layer.
+	 */
+	final class Chunk {
+		/** x coordinate of the first tile */
+		final int x;
+		/** y coordinate of the first tile */
+		final int y;
+		/** <code>true</code>, if the chunk has no constant tiles to draw */
+		final boolean empty;
+		/** indices of the tiles that must be drawn every time */
+		final int[] changing;
+		/** image of the constant tiles, or <code>null</code> */
+		VolatileImage image;
+
+		/**
+		 * Create a new Chunk.
+		 *
+		 * @param x x coordinate of the first tile
+		 * @param y y coordinate of the first tile
+		 */
+		private Chunk(int x, int y) {
+			this.x = x;
+			this.y = y;
+			final int endX = Math.min(x + CHUNK_SIZE, width);
+			final int endY = Math.min(y + CHUNK_SIZE, height);
+			final List<Integer> list = new ArrayList<Integer>();
+			boolean hasConstant = false;
+			for (int j = y; j < endY; j++) {
+				for (int i = x; i < endX; i++) {
+					final int mapidx = j * width + i;
+					final Sprite sprite = spriteMap[mapidx];
+					if (!sprite.isConstant()) {
+						list.add(mapidx);
+					} else if (!(sprite instanceof EmptySprite)) {
+						hasConstant = true;
+					}
+				}
+			}
+			empty = !hasConstant;
+			changing = new int[list.size()];
+			for (int i = 0; i < changing.length; i++) {
+				changing[i] = list.get(i);
+			}
+		}
+	}
+}
@@ -13,13 +13,20 @@ package games.stendhal.client;
 
 import java.awt.Composite;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -28,6 +35,7 @@ import games.stendhal.client.gui.wt.core.SettingChangeAdapter;
 import games.stendhal.client.gui.wt.core.WtWindowManager;
 import games.stendhal.client.sprite.Tileset;
 import games.stendhal.common.CollisionDetection;
+import games.stendhal.common.IO;
 import games.stendhal.common.MathHelper;
 import games.stendhal.common.tiled.LayerDefinition;
 import marauroa.common.game.RPObject;
@@ -44,6 +52,29 @@ public class Zone {
 	 * be drawn.
 	 */
 	private static final String WEATHER_PROPERTY = "ui.draw_weather";
+	/** Name of the composite of the layers below the entities. */
+	static final String FLOOR_BUNDLE = "floor_bundle";
+	/** Adjustment layer of the floor composite. */
+	static final String FLOOR_ADJUSTMENT = "blend_ground";
+	/** Layers of the floor composite, starting from the bottom. */
+	static final String[] FLOOR_LAYERS = { "0_floor", "1_terrain", "2_object" };
+	/** Name of the composite of the layers above the entities. */
+	static final String ROOF_BUNDLE = "roof_bundle";
+	/** Adjustment layer of the roof composite. */
+	static final String ROOF_ADJUSTMENT = "blend_roof";
+	/** Layers of the roof composite, starting from the bottom. */
+	static final String[] ROOF_LAYERS = { "3_roof", "4_roof_add" };
+	/**
+	 * Worker threads for decoding tile layers and creating the composite
+	 * layers, so that zone changes do not pause the client.
+	 */
+	private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+				Thread thread = new Thread(runnable, "Zone worker");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
 
 	/** Name of the zone. */
 	private final String name;
@@ -51,6 +82,8 @@ public class Zone {
 	private String readableName;
 	/** Renderers for normal layers. */
 	private final Map<String, LayerRenderer> layers = new HashMap<String, LayerRenderer>();
+	/** Tile layers that are being decoded by the workers. */
+	private final Map<String, Future<?>> decoding = new LinkedHashMap<String, Future<?>>();
 	/** Global current zone information. */
 	private final ZoneInfo zoneInfo = ZoneInfo.get();
 	/** Weather renderer. */
@@ -172,12 +205,22 @@ public class Zone {
 			tileset = store;
 		} else if (layer.equals("data_map")) {
 			readDataLayer(in);
+			/*
+			 * The server sends the data layer alone, when only attributes
+			 * that do not affect the coloring have changed. Those do not
+			 * require validating the zone again.
+			 */
+			return;
 		} else {
 			/*
 			 * It is a tile layer.
 			 */
-			TileRenderer content = new TileRenderer();
-			content.setMapData(in);
+			final TileRenderer content = new TileRenderer();
+			final byte[] data = IO.readStreamContent(in);
+			decoding.put(layer, WORKERS.submit(() -> {
+				content.setMapData(new ByteArrayInputStream(data));
+				return null;
+			}));
 			layers.put(layer, content);
 		}
 		isValid = false;
@@ -216,16 +259,19 @@ public class Zone {
 		}
 
 		// *** Weather ***
+		// Attributes missing from the layer have been removed, so clear the
+		// values of an earlier layer of the same zone.
 		String weather = obj.get("weather");
-		if (weather != null) {
-			weatherName = weather;
-			if (drawWeather) {
-				this.weather = new WeatherLayerRenderer(weather, zoneInfo.getZoneColor(), zoneInfo.getColorMethod());
-			}
+		weatherName = weather;
+		if (weather != null && drawWeather) {
+			this.weather = new WeatherLayerRenderer(weather, zoneInfo.getZoneColor(), zoneInfo.getColorMethod());
+		} else {
+			this.weather = new EmptyLayerRenderer();
 		}
 
 		// *** other attributes ***
 		String danger = obj.get("danger_level");
+		dangerLevel = 0;
 		if (danger != null) {
 			try {
 				dangerLevel = Double.parseDouble(danger);
@@ -262,6 +308,16 @@ public class Zone {
 		return WtWindowManager.getInstance().getPropertyBoolean("ui.colormaps", true);
 	}
 
+	/**
+	 * Check if drawing the tile layers using pre-rendered chunks is enabled.
+	 *
+	 * @return <code>true</code> if the chunk cache should be used,
+	 * 	<code>false</code> otherwise
+	 */
+	private boolean isTileCacheEnabled() {
+		return WtWindowManager.getInstance().getPropertyBoolean("ui.tilecache", true);
+	}
+
 	/**
 	 * Get blend mode for the effect layers.
 	 *
@@ -397,7 +453,8 @@ public class Zone {
 	}
 
 	/**
-	 * Get a composite representation of multiple tile layers.
+	 * Get a composite representation of multiple tile layers. This is called
+	 * from the drawing thread, and from the thread preparing a zone update.
 	 *
 	 * @param compositeName name to be used for the composite for caching
 	 * @param adjustName name of the adjustment layer
@@ -406,7 +463,7 @@ public class Zone {
 	 * @return layer corresponding to all sub layers or <code>null</code> if
 	 * 	they can not be merged
 	 */
-	LayerRenderer getMerged(String compositeName, String adjustName,
+	synchronized LayerRenderer getMerged(String compositeName, String adjustName,
 			String ... layerNames) {
 		LayerRenderer r = layers.get(compositeName);
 		if (r == null) {
@@ -455,12 +512,30 @@ public class Zone {
 				adjLayer = null;
 			}
 
-			r = new CompositeLayerRenderer(subLayers, adjustment, adjLayer);
+			r = new PendingCompositeRenderer(subLayers, adjustment, adjLayer,
+					isTileCacheEnabled());
 			layers.put(compositeName, r);
 		}
 		return r;
 	}
 
+	/**
+	 * Create the floor and roof composites, and wait until they are ready.
+	 * Zone updates are prepared this way in a background thread before they
+	 * replace the old zone, so that the composites are not drawn without
+	 * the adjustment layers in the meantime. The zone must have been
+	 * validated.
+	 */
+	void prepareComposites() {
+		for (LayerRenderer r : new LayerRenderer[] {
+				getMerged(FLOOR_BUNDLE, FLOOR_ADJUSTMENT, FLOOR_LAYERS),
+				getMerged(ROOF_BUNDLE, ROOF_ADJUSTMENT, ROOF_LAYERS) }) {
+			if (r instanceof PendingCompositeRenderer) {
+				((PendingCompositeRenderer) r).finish();
+			}
+		}
+	}
+
 	/**
 	 * Get the weather renderer.
 	 *
@@ -501,6 +576,9 @@ public class Zone {
 		if (collision == null) {
 			return false;
 		}
+		if (!finishDecoding()) {
+			return false;
+		}
 		if (!tileset.validate(zoneInfo.getZoneColor(), zoneInfo.getColorMethod())) {
 			return false;
 		}
@@ -513,6 +591,29 @@ public class Zone {
 		return true;
 	}
 
+	/**
+	 * Wait until the workers have decoded the tile layers. Layers that could
+	 * not be decoded are dropped.
+	 *
+	 * @return <code>true</code>, if all the layers are ready,
+	 * 	<code>false</code> if the thread was interrupted
+	 */
+	private boolean finishDecoding() {
+		for (Map.Entry<String, Future<?>> entry : decoding.entrySet()) {
+			try {
+				entry.getValue().get();
+			} catch (ExecutionException e) {
+				LOGGER.error("Failed to decode layer " + entry.getKey(), e.getCause());
+				layers.remove(entry.getKey());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		decoding.clear();
+		return true;
+	}
+
 	/**
 	 * A dummy renderer for empty layer groups.
 	 */
@@ -525,4 +626,92 @@ public class Zone {
 		public void setTileset(Tileset tileset) {
 		}
 	}
+
+	/**
+	 * A renderer for a composite layer that is created by the workers. The
+	 * sub layers and the adjustment layer are drawn separately until the
+	 * composite is ready, or if creating it fails.
+	 */
+	private static class PendingCompositeRenderer extends LayerRenderer {
+		/** Layers making up the composite. */
+		private final List<TileRenderer> subLayers;
+		/** Composite mode for drawing the adjustment layer. */
+		private final Composite blend;
+		/** Adjustment layer, or <code>null</code>. */
+		private final TileRenderer adjustLayer;
+		/** The composite being created. */
+		private final Future<CompositeLayerRenderer> future;
+		/** The composite, when it is ready. */
+		private CompositeLayerRenderer composite;
+		/** <code>true</code>, if creating the composite failed. */
+		private boolean failed;
+
+		/**
+		 * Create a new PendingCompositeRenderer, and start creating the
+		 * composite.
+		 *
+		 * @param subLayers layers making up the composite starting from the
+		 * 	bottom
+		 * @param blend composite mode for drawing the adjustment layer
+		 * @param adjustLayer adjustment layer
+		 * @param useChunks <code>true</code>, if the composite should use
+		 * 	pre-rendered chunks of tiles
+		 */
+		PendingCompositeRenderer(final List<TileRenderer> subLayers, final Composite blend,
+				final TileRenderer adjustLayer, final boolean useChunks) {
+			this.subLayers = subLayers;
+			this.blend = blend;
+			this.adjustLayer = adjustLayer;
+			width = subLayers.get(0).getWidth();
+			height = subLayers.get(0).getHeight();
+			future = WORKERS.submit(() -> new CompositeLayerRenderer(subLayers,
+					blend, adjustLayer, useChunks));
+		}
+
+		/**
+		 * Wait until the workers have finished creating the composite.
+		 */
+		void finish() {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// Logged when the layer is drawn
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void draw(Graphics g, int x, int y, int w, int h) {
+			if ((composite == null) && !failed && future.isDone()) {
+				try {
+					composite = future.get();
+					CompositeLayerRenderer.releaseSlaves(subLayers);
+				} catch (ExecutionException e) {
+					LOGGER.error("Failed to create composite layer", e.getCause());
+					failed = true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (composite != null) {
+				composite.draw(g, x, y, w, h);
+			} else {
+				for (TileRenderer layer : subLayers) {
+					layer.draw(g, x, y, w, h);
+				}
+				if ((adjustLayer != null) && (g instanceof Graphics2D)) {
+					Graphics2D g2d = (Graphics2D) g.create();
+					g2d.setComposite(blend);
+					adjustLayer.draw(g2d, x, y, w, h);
+					g2d.dispose();
+				}
+			}
+		}
+
+		@Override
+		public void setTileset(Tileset tileset) {
+			// The sub layers already have their tiles
+		}
+	}
 }
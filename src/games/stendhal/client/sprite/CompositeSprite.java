@@ -33,7 +33,7 @@ public class CompositeSprite implements Sprite {
 	 * Composition status flag. <code>true</code> it the static image layers
 	 * have been merged, <code>false</code> otherwise.
 	 */
-	private boolean composited;
+	private volatile boolean composited;
 	// One Sprite to rule them all...
 	/** The layer Sprites making up the composite. */
 	private List<Sprite> slaves;
@@ -175,10 +175,37 @@ public class CompositeSprite implements Sprite {
 		return slaves.get(0).getWidth();
 	}
 
+	@Override
+	public boolean isConstant() {
+		if (!composited) {
+			composite();
+		}
+		for (int i = 0; i < slaves.size(); i++) {
+			if (!slaves.get(i).isConstant()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Merge the images now, rather than when the sprite is first drawn. This
+	 * can be called in a background thread.
+	 */
+	public void prepare() {
+		if (!composited) {
+			composite();
+		}
+	}
+
 	/**
 	 * Merge all ImageSprite layers.
 	 */
-	private void composite() {
+	private synchronized void composite() {
+		// Composites can be prepared in a background thread
+		if (composited) {
+			return;
+		}
 		ArrayList<Sprite> newSlaves = new ArrayList<>(slaves.size());
 		ImageSprite floor = null;
 		boolean copied = false;
@@ -15,19 +15,35 @@ package games.stendhal.common;
 
 
 import java.awt.geom.Rectangle2D;
-import java.util.BitSet;
+import java.util.Arrays;
 
 import games.stendhal.common.tiled.LayerDefinition;
 
 
 /**
  * A map containing collision information.
+ * <p>
+ * The nodes are stored as a packed row-major bitmap, so that checking a
+ * rectangle is a few word operations per row and does not allocate. For
+ * rectangles spanning many rows, a summed-area table of the collision nodes
+ * is built when first needed, which answers the check in constant time.
  */
 public class CollisionMap {
+	/** Minimum number of rows for using the summed-area table. */
+	private static final int SUMMED_AREA_MIN_ROWS = 8;
 
 	private final int width;
 	private final int height;
-	private final BitSet[] colls;
+	/** Number of words in a row. */
+	private final int rowWords;
+	/** Collision bits, row by row. */
+	private final long[] bits;
+	/**
+	 * Summed-area table of the collision nodes, or <code>null</code> if it
+	 * needs to be built. Entry (x, y) is the number of collision nodes
+	 * above and left of node (x, y), at index <code>y * (width + 1) + x</code>.
+	 */
+	private volatile int[] summedArea;
 
 	/**
 	 * Creates a new empty collision map.
@@ -40,11 +56,8 @@ public class CollisionMap {
 	public CollisionMap(final int width, final int height) {
 		this.width = width;
 		this.height = height;
-		colls = new BitSet[width];
-		for (int i = 0; i < width; i++) {
-			colls[i] = new BitSet();
-		}
-
+		rowWords = (Math.max(0, width) + 63) >>> 6;
+		bits = new long[rowWords * Math.max(0, height)];
 	}
 
 	/**
@@ -86,14 +99,18 @@ public class CollisionMap {
 	 * @param j
 	 *   Node Y coordinate.
 	 * @return
-	 *   {@code true} if node has collision.
+	 *   {@code true} if node has collision. Nodes outside the map have no
+	 *   collision.
 	 */
 	public boolean get(final int i, final int j) {
-		return colls[i].get(j);
+		if (!isInside(i, j)) {
+			return false;
+		}
+		return (bits[j * rowWords + (i >>> 6)] & (1L << i)) != 0;
 	}
 
 	/**
-	 * Sets a collision node.
+	 * Sets a collision node. Nodes outside the map are ignored.
 	 *
 	 * @param i
 	 *   Node X coordinate.
@@ -101,7 +118,11 @@ public class CollisionMap {
 	 *   Node Y coordinate.
 	 */
 	public void set(final int i, final int j) {
-		colls[i].set(j);
+		if (!isInside(i, j)) {
+			return;
+		}
+		bits[j * rowWords + (i >>> 6)] |= 1L << i;
+		summedArea = null;
 	}
 
 	/**
@@ -112,13 +133,16 @@ public class CollisionMap {
 	 */
 	public void set(final Rectangle2D shape) {
 		int y = (int) shape.getY();
-		for (int x = (int) shape.getX(); x < shape.getX() + shape.getWidth(); x++) {
-			colls[x].set(y, (int) (y + shape.getHeight()));
+		final int endY = Math.min(height, (int) (y + shape.getHeight()));
+		for (int x = (int) shape.getX(); (x < shape.getX() + shape.getWidth()) && (x < width); x++) {
+			for (int j = y; j < endY; j++) {
+				set(x, j);
+			}
 		}
 	}
 
 	/**
-	 * Removes collision from a node.
+	 * Removes collision from a node. Nodes outside the map are ignored.
 	 *
 	 * @param i
 	 *   Node X coordinate.
@@ -126,16 +150,35 @@ public class CollisionMap {
 	 *   Node Y coordinate.
 	 */
 	public void unset(final int i, final int k) {
-		colls[i].clear(k);
+		if (!isInside(i, k)) {
+			return;
+		}
+		bits[k * rowWords + (i >>> 6)] &= ~(1L << i);
+		summedArea = null;
+	}
+
+	/**
+	 * Checks if a node is within the map. The bits of a row are padded to
+	 * full words, so nodes outside the map would access the padding or the
+	 * next row.
+	 *
+	 * @param i
+	 *   Node X coordinate.
+	 * @param j
+	 *   Node Y coordinate.
+	 * @return
+	 *   {@code true} if the node is within the map.
+	 */
+	private boolean isInside(final int i, final int j) {
+		return (i >= 0) && (i < width) && (j >= 0) && (j < height);
 	}
 
 	/**
 	 * Removes all collision from the map.
 	 */
 	public void clear() {
-		for (int i = 0; i < this.width; i++) {
-			colls[i].clear();
-		}
+		Arrays.fill(bits, 0);
+		summedArea = null;
 	}
 
 	/**
@@ -161,12 +204,90 @@ public class CollisionMap {
 			return true;
 		}
 
-		final BitSet result = new BitSet();
-		for (int i = x; i < x + width; i++) {
-			result.or(colls[i]);
+		if ((width <= 0) || (height <= 0)) {
+			return false;
+		}
+
+		if (height >= SUMMED_AREA_MIN_ROWS) {
+			return countArea(x, y, width, height) != 0;
+		}
+
+		final int endX = x + width - 1;
+		final int firstWord = x >>> 6;
+		final int lastWord = endX >>> 6;
+		final long firstMask = -1L << x;
+		final long lastMask = -1L >>> (63 - (endX & 63));
+		for (int row = y * rowWords, end = (y + height) * rowWords; row < end; row += rowWords) {
+			if (firstWord == lastWord) {
+				if ((bits[row + firstWord] & firstMask & lastMask) != 0) {
+					return true;
+				}
+			} else {
+				if ((bits[row + firstWord] & firstMask) != 0) {
+					return true;
+				}
+				for (int word = firstWord + 1; word < lastWord; word++) {
+					if (bits[row + word] != 0) {
+						return true;
+					}
+				}
+				if ((bits[row + lastWord] & lastMask) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the collision nodes in a rectangle inside the map using the
+	 * summed-area table.
+	 *
+	 * @param x
+	 *   Beginning node X coordinate.
+	 * @param y
+	 *   Beginning node Y coordinate.
+	 * @param width
+	 *   Width of the area.
+	 * @param height
+	 *   Height of the area.
+	 * @return
+	 *   Number of collision nodes.
+	 */
+	private int countArea(final int x, final int y, final int width, final int height) {
+		int[] table = summedArea;
+		if (table == null) {
+			table = buildSummedArea();
+			summedArea = table;
 		}
+		final int stride = this.width + 1;
+		final int x2 = x + width;
+		final int y2 = y + height;
+		return table[y2 * stride + x2] - table[y * stride + x2]
+				- table[y2 * stride + x] + table[y * stride + x];
+	}
 
-		return !result.get(y, y + height).isEmpty();
+	/**
+	 * Builds the summed-area table of the collision nodes.
+	 *
+	 * @return
+	 *   New table.
+	 */
+	private int[] buildSummedArea() {
+		final int stride = width + 1;
+		final int[] table = new int[stride * (height + 1)];
+		for (int j = 0; j < height; j++) {
+			int rowSum = 0;
+			final int above = j * stride;
+			final int current = above + stride;
+			for (int i = 0; i < width; i++) {
+				if (get(i, j)) {
+					rowSum++;
+				}
+				table[current + i + 1] = table[above + i + 1] + rowSum;
+			}
+		}
+		return table;
 	}
 
 	/**
@@ -12,6 +12,7 @@
  ***************************************************************************/
 package games.stendhal.common;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -61,4 +62,21 @@ public class IO {
 		}
 		return res;
 	}
+
+	/**
+	 * reads the remaining content of a stream into a byte array
+	 *
+	 * @param in stream to read. The stream is not closed
+	 * @return byte-array
+	 * @throws IOException in case of an input/output error
+	 */
+	public static byte[] readStreamContent(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int numRead;
+		while ((numRead = in.read(buffer)) > -1) {
+			out.write(buffer, 0, numRead);
+		}
+		return out.toByteArray();
+	}
 }
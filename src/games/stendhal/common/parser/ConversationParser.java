@@ -36,6 +36,9 @@ public final class ConversationParser extends ErrorBuffer {
 	/** A cache to hold pre-parsed matching Sentences. */
 	private static Map<String, Sentence> matchingSentenceCache = new HashMap<String, Sentence>();
 
+	/** A cache to hold parsed player input. */
+	private static final SentenceCache sentenceCache = new SentenceCache(SentenceCache.DEFAULT_CAPACITY);
+
 	/** Tokenizer to split a sentence into words */
 	private final transient StringTokenizer tokenizer;
 
@@ -135,6 +138,27 @@ public final class ConversationParser extends ErrorBuffer {
 		return parse(text, new ConversationContext());
 	}
 
+	/**
+	 * Parse function without conversation context, returning a shared
+	 * Sentence from the cache if the same text has been parsed recently.
+	 * The returned Sentence must not be modified.
+	 *
+	 * @param text
+	 * @return the parsed text
+	 */
+	public static Sentence parseCached(final String text) {
+		return sentenceCache.parse(text);
+	}
+
+	/**
+	 * Gets the cache used by {@link #parseCached(String)}.
+	 *
+	 * @return SentenceCache
+	 */
+	public static SentenceCache getSentenceCache() {
+		return sentenceCache;
+	}
+
 	/**
 	 * Parse the given text sentence to be used as matching source.
 	 *
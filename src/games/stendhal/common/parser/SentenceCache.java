@@ -0,0 +1,120 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used cache of parsed player input, so that an
+ * utterance heard by several NPCs is parsed only once.
+ * <p>
+ * The cached Sentence objects are shared, and must not be modified. The
+ * cache is cleared whenever words are registered in or removed from the
+ * WordList, because that may change the result of parsing.
+ */
+public final class SentenceCache {
+	/** default number of cached sentences */
+	static final int DEFAULT_CAPACITY = 256;
+
+	private final Map<String, Sentence> sentences;
+	private int wordListRevision;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates a new SentenceCache.
+	 *
+	 * @param capacity maximum number of cached sentences
+	 */
+	SentenceCache(final int capacity) {
+		sentences = new LinkedHashMap<String, Sentence>(capacity * 4 / 3 + 1, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Sentence> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the parsed form of a text, parsing it with the default
+	 * conversation context if it is not cached.
+	 *
+	 * @param text text to parse
+	 * @return parsed sentence, which must not be modified
+	 */
+	public Sentence parse(final String text) {
+		final String key;
+		if (text == null) {
+			key = "";
+		} else {
+			key = text.trim();
+		}
+
+		final int revision = WordList.getInstance().getRevision();
+		synchronized (sentences) {
+			if (revision != wordListRevision) {
+				sentences.clear();
+				wordListRevision = revision;
+			}
+			final Sentence sentence = sentences.get(key);
+			if (sentence != null) {
+				hits++;
+				return sentence;
+			}
+			misses++;
+		}
+
+		final Sentence sentence = ConversationParser.parse(key);
+		synchronized (sentences) {
+			if (revision == wordListRevision) {
+				sentences.put(key, sentence);
+			}
+		}
+		return sentence;
+	}
+
+	/**
+	 * Gets the number of texts that were found in the cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		synchronized (sentences) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Gets the number of texts that had to be parsed.
+	 *
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		synchronized (sentences) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Gets the number of cached sentences.
+	 *
+	 * @return number of sentences
+	 */
+	public int size() {
+		synchronized (sentences) {
+			return sentences.size();
+		}
+	}
+}
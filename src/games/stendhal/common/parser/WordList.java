@@ -59,6 +59,9 @@ final public class WordList {
 	// We keep house holding the usage of registered subject names (see registerSubjectName).
 	private Map<String, Integer> subjectRefCount = new HashMap<String, Integer>();
 
+	/** changed whenever words are registered or removed after loading */
+	private volatile int revision;
+
 	/** instance variable with package protection because of FindBugs hint */
 	static private WordList instance;
 
@@ -250,6 +253,7 @@ final public class WordList {
 	 */
 	private void addEntry(final String key, final WordEntry entry) {
 		words.put(trimWord(key), entry);
+		revision++;
 
 		// store plural and associate with singular form
 		if ((entry.getPlurSing() != null)
@@ -582,6 +586,17 @@ final public class WordList {
 
 			nameSet.add(new CompoundName(parsed, typeString));
 		}
+		revision++;
+	}
+
+	/**
+	 * Gets the revision of the word list, which changes whenever words are
+	 * registered or removed.
+	 *
+	 * @return revision
+	 */
+	int getRevision() {
+		return revision;
 	}
 
 	/**
@@ -645,6 +660,7 @@ final public class WordList {
 				words.remove(expr.getNormalized());
 			}
 		}
+		revision++;
 	}
 
 	/**
@@ -714,6 +730,7 @@ final public class WordList {
 			newEntry.setType(new ExpressionType(VERB_DYNAMIC));
 
 			words.put(key, newEntry);
+			revision++;
 		/*
 		} else if (!checkNameCompatibleLastType(entry, ExpressionType.VERB)) {
 			logger.warn("verb name already registered with incompatible expression type: " +
@@ -0,0 +1,43 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.actions.admin;
+
+import static games.stendhal.common.constants.Actions.TARGET;
+
+import games.stendhal.server.actions.CommandCenter;
+import games.stendhal.server.core.engine.profiler.TurnProfiler;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPAction;
+
+/**
+ * Shows how long the phases of a turn take. "/turnprofile reset" starts a
+ * new measurement.
+ */
+public class TurnProfileAction extends AdministrationAction {
+	private static final String TURNPROFILE = "turnprofile";
+
+	public static void register() {
+		CommandCenter.register(TURNPROFILE, new TurnProfileAction(), 500);
+	}
+
+	@Override
+	protected void perform(final Player player, final RPAction action) {
+		final TurnProfiler profiler = TurnProfiler.get();
+		if ("reset".equals(action.get(TARGET))) {
+			profiler.reset();
+			player.sendPrivateText("Turn profile has been reset.");
+			return;
+		}
+		player.sendPrivateText(profiler.getReport());
+	}
+
+}
@@ -17,7 +17,6 @@ import static games.stendhal.common.constants.Actions.TEXT;
 import games.stendhal.server.actions.ActionListener;
 import games.stendhal.server.actions.validator.StandardActionValidations;
 import games.stendhal.server.core.engine.GameEvent;
-import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPAction;
 
@@ -38,12 +37,11 @@ public class EmoteAction implements ActionListener {
 		//emote actions are treated as normal chat actions
 		//on the client side, !me is replaced with the name
 		final String text = "!me " + QuoteSpecials.quote(action.get(TEXT));
-		player.put("text", text);
+		player.say(text);
 
 		new GameEvent(player.getName(), CHAT, null, Integer.toString(text.length()), text.substring(0, Math.min(text.length(), 1000))).raise();
 
 		player.notifyWorldAboutChanges();
-		SingletonRepository.getRuleProcessor().removePlayerText(player);
 	}
 
 }
@@ -18,7 +18,6 @@ import games.stendhal.common.Rand;
 import games.stendhal.server.actions.ActionListener;
 import games.stendhal.server.actions.validator.StandardActionValidations;
 import games.stendhal.server.core.engine.GameEvent;
-import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.entity.status.StatusType;
 import marauroa.common.game.RPAction;
@@ -40,10 +39,8 @@ public class PublicChatAction implements ActionListener {
 		if (player.getStatusList().countStatusByType(StatusType.DRUNK) >= 2) {
 			text = applyDrunkEffect(text, player.getStatusList().countStatusByType(StatusType.DRUNK) - 1);
 		}
-		player.put("text", text);
-
+		player.say(text);
 		player.notifyWorldAboutChanges();
-		SingletonRepository.getRuleProcessor().removePlayerText(player);
 	}
 
 	/**
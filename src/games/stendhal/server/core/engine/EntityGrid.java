@@ -0,0 +1,321 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.entity.Entity;
+
+/**
+ * Uniform grid of entity buckets used by {@link StendhalRPZone} to answer
+ * positional queries without walking every object in the zone.
+ *
+ * Each entity is registered in every cell its area overlaps. Coordinates
+ * outside the grid are clamped to the border cells, so entities standing
+ * outside of the zone bounds are still found.
+ */
+class EntityGrid {
+	/** Width and height of a cell in tiles. */
+	static final int CELL_SIZE = 8;
+
+	private int columns;
+	private int rows;
+	private List<List<Entity>> cells;
+
+	/** Cell range (first column, first row, last column, last row) of each indexed entity. */
+	private final Map<Entity, int[]> ranges = new IdentityHashMap<Entity, int[]>();
+
+	/**
+	 * Creates a new grid.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 */
+	EntityGrid(final int width, final int height) {
+		resize(width, height);
+	}
+
+	/**
+	 * Changes the dimensions of the grid and re-indexes all entities.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 */
+	final void resize(final int width, final int height) {
+		columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+		rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+		cells = new ArrayList<List<Entity>>(columns * rows);
+		for (int i = 0; i < columns * rows; i++) {
+			cells.add(new ArrayList<Entity>(2));
+		}
+
+		final List<Entity> entities = new ArrayList<Entity>(ranges.keySet());
+		ranges.clear();
+		for (final Entity entity : entities) {
+			add(entity);
+		}
+	}
+
+	/**
+	 * Checks if the grid covers a zone of the given dimensions.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 * @return <code>true</code> if the grid does not need to be resized
+	 */
+	boolean fits(final int width, final int height) {
+		return columns == Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE)
+				&& rows == Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+	}
+
+	/**
+	 * Adds an entity to the grid.
+	 *
+	 * @param entity entity to add
+	 */
+	void add(final Entity entity) {
+		if (ranges.containsKey(entity)) {
+			update(entity);
+			return;
+		}
+		final int[] range = new int[4];
+		computeRange(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight(), range);
+		ranges.put(entity, range);
+		link(entity, range);
+	}
+
+	/**
+	 * Removes an entity from the grid.
+	 *
+	 * @param entity entity to remove
+	 */
+	void remove(final Entity entity) {
+		final int[] range = ranges.remove(entity);
+		if (range != null) {
+			unlink(entity, range);
+		}
+	}
+
+	/**
+	 * Moves an entity to the cells matching its current area.
+	 *
+	 * @param entity entity that moved or changed its size
+	 */
+	void update(final Entity entity) {
+		final int[] range = ranges.get(entity);
+		if (range == null) {
+			return;
+		}
+		final int x1 = column(entity.getX());
+		final int y1 = row(entity.getY());
+		final int x2 = Math.max(x1, lastColumn(entity.getX() + entity.getWidth()));
+		final int y2 = Math.max(y1, lastRow(entity.getY() + entity.getHeight()));
+		if (range[0] == x1 && range[1] == y1 && range[2] == x2 && range[3] == y2) {
+			return;
+		}
+		unlink(entity, range);
+		range[0] = x1;
+		range[1] = y1;
+		range[2] = x2;
+		range[3] = y2;
+		link(entity, range);
+	}
+
+	/**
+	 * Removes all entities from the grid.
+	 */
+	void clear() {
+		for (final List<Entity> cell : cells) {
+			cell.clear();
+		}
+		ranges.clear();
+	}
+
+	/**
+	 * Finds an entity overlapping an area that is an obstacle for another entity.
+	 *
+	 * @param entity entity that wants to occupy the area
+	 * @param area area to check
+	 * @return the blocking entity, or <code>null</code>
+	 */
+	Entity getCollidingObject(final Entity entity, final Rectangle2D area) {
+		final int x1 = column(area.getX());
+		final int y1 = row(area.getY());
+		final int x2 = Math.max(x1, lastColumn(area.getMaxX()));
+		final int y2 = Math.max(y1, lastRow(area.getMaxY()));
+		for (int cy = y1; cy <= y2; cy++) {
+			for (int cx = x1; cx <= x2; cx++) {
+				final List<Entity> cell = cells.get(cy * columns + cx);
+				for (int i = 0; i < cell.size(); i++) {
+					final Entity other = cell.get(i);
+					if ((other != entity)
+							&& area.intersects(other.getX(), other.getY(), other.getWidth(), other.getHeight())
+							&& other.isObstacle(entity)) {
+						return other;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds an entity at the given coordinates.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return the first entity found, or <code>null</code>
+	 */
+	Entity getEntityAt(final double x, final double y) {
+		final List<Entity> cell = cells.get(row(y) * columns + column(x));
+		for (int i = 0; i < cell.size(); i++) {
+			final Entity entity = cell.get(i);
+			if (contains(entity, x, y)) {
+				return entity;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Collects all entities of a class at the given coordinates.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param clazz required entity class
+	 * @param result list to add the found entities to
+	 */
+	<T extends Entity> void collectEntitiesAt(final double x, final double y, final Class<T> clazz, final List<T> result) {
+		final List<Entity> cell = cells.get(row(y) * columns + column(x));
+		for (int i = 0; i < cell.size(); i++) {
+			final Entity entity = cell.get(i);
+			if (clazz.isInstance(entity) && contains(entity, x, y)) {
+				result.add(clazz.cast(entity));
+			}
+		}
+	}
+
+	/**
+	 * Collects all entities of a class whose area intersects a rectangle.
+	 *
+	 * @param area area to search
+	 * @param clazz required entity class
+	 * @param result list to add the found entities to
+	 */
+	<T extends Entity> void collectEntitiesIn(final Rectangle2D area, final Class<T> clazz, final List<T> result) {
+		final int x1 = column(area.getX());
+		final int y1 = row(area.getY());
+		final int x2 = Math.max(x1, lastColumn(area.getMaxX()));
+		final int y2 = Math.max(y1, lastRow(area.getMaxY()));
+		for (int cy = y1; cy <= y2; cy++) {
+			for (int cx = x1; cx <= x2; cx++) {
+				final List<Entity> cell = cells.get(cy * columns + cx);
+				for (int i = 0; i < cell.size(); i++) {
+					final Entity entity = cell.get(i);
+					if (!clazz.isInstance(entity)) {
+						continue;
+					}
+					// report entities spanning several cells only in the
+					// first cell of the search area they are linked to
+					final int[] range = ranges.get(entity);
+					if ((Math.max(range[0], x1) == cx) && (Math.max(range[1], y1) == cy)
+							&& area.intersects(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight())) {
+						result.add(clazz.cast(entity));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of entities in the grid.
+	 *
+	 * @return number of indexed entities
+	 */
+	int size() {
+		return ranges.size();
+	}
+
+	private static boolean contains(final Entity entity, final double x, final double y) {
+		final double ex = entity.getX();
+		final double ey = entity.getY();
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
+		// same semantics as Rectangle2D.contains()
+		return (w > 0) && (h > 0) && (x >= ex) && (y >= ey) && (x < ex + w) && (y < ey + h);
+	}
+
+	private void computeRange(final double x, final double y, final double w, final double h, final int[] range) {
+		range[0] = column(x);
+		range[1] = row(y);
+		range[2] = Math.max(range[0], lastColumn(x + w));
+		range[3] = Math.max(range[1], lastRow(y + h));
+	}
+
+	private void link(final Entity entity, final int[] range) {
+		for (int cy = range[1]; cy <= range[3]; cy++) {
+			for (int cx = range[0]; cx <= range[2]; cx++) {
+				cells.get(cy * columns + cx).add(entity);
+			}
+		}
+	}
+
+	private void unlink(final Entity entity, final int[] range) {
+		for (int cy = range[1]; cy <= range[3]; cy++) {
+			for (int cx = range[0]; cx <= range[2]; cx++) {
+				final List<Entity> cell = cells.get(cy * columns + cx);
+				for (int i = cell.size() - 1; i >= 0; i--) {
+					if (cell.get(i) == entity) {
+						cell.remove(i);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private int column(final double x) {
+		return clamp((int) Math.floor(x / CELL_SIZE), columns);
+	}
+
+	private int row(final double y) {
+		return clamp((int) Math.floor(y / CELL_SIZE), rows);
+	}
+
+	/**
+	 * Gets the last column touched by an area ending (exclusive) at maxX.
+	 */
+	private int lastColumn(final double maxX) {
+		return clamp((int) Math.ceil(maxX / CELL_SIZE) - 1, columns);
+	}
+
+	/**
+	 * Gets the last row touched by an area ending (exclusive) at maxY.
+	 */
+	private int lastRow(final double maxY) {
+		return clamp((int) Math.ceil(maxY / CELL_SIZE) - 1, rows);
+	}
+
+	private static int clamp(final int value, final int size) {
+		if (value < 0) {
+			return 0;
+		}
+		if (value >= size) {
+			return size - 1;
+		}
+		return value;
+	}
+}
@@ -12,11 +12,18 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
 import games.stendhal.server.core.engine.db.StendhalItemDAO;
 import games.stendhal.server.core.engine.dbcommand.AbstractLogItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogItemEventBatchCommand;
 import games.stendhal.server.core.engine.dbcommand.LogMergeItemEventCommand;
 import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
 import games.stendhal.server.core.engine.dbcommand.LogSplitItemEventCommand;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.PassiveEntity;
 import games.stendhal.server.entity.RPEntity;
@@ -33,10 +40,81 @@ import marauroa.server.db.command.DBCommandQueue;
  * @author hendrik
  */
 public class ItemLogger {
+	/** maximum number of item events that are collected before they are written */
+	static final int BATCH_SIZE = 100;
+	/** seconds after which collected item events are written */
+	private static final int FLUSH_INTERVAL = 5;
+
+	private static final Object lock = new Object();
+	/** item events waiting to be written */
+	private static List<AbstractLogItemEventCommand> pending = new ArrayList<AbstractLogItemEventCommand>();
+	private static boolean flushScheduled;
+
+	/** writes the collected item events periodically */
+	private static final TurnListener flusher = new TurnListener() {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			synchronized (lock) {
+				flushScheduled = false;
+			}
+			flush();
+		}
+	};
 
-
+	/**
+	 * Adds an item event. Item events are collected and written to the
+	 * database in batches, when {@link #BATCH_SIZE} events are waiting or
+	 * {@link #FLUSH_INTERVAL} seconds after the first one.
+	 *
+	 * @param command item event
+	 */
 	public void addLogItemEventCommand(final AbstractLogItemEventCommand command) {
-		DBCommandQueue.get().enqueue(command, DBCommandPriority.LOW);
+		// the time of the event, not the time the batch is written
+		command.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+		List<AbstractLogItemEventCommand> batch = null;
+		synchronized (lock) {
+			pending.add(command);
+			if (pending.size() >= BATCH_SIZE) {
+				batch = pending;
+				pending = new ArrayList<AbstractLogItemEventCommand>();
+			} else if (!flushScheduled) {
+				flushScheduled = true;
+				TurnNotifier.get().notifyInSeconds(FLUSH_INTERVAL, flusher);
+			}
+		}
+		if (batch != null) {
+			enqueue(batch);
+		}
+	}
+
+	/**
+	 * Writes all collected item events, for example on logout or shutdown.
+	 */
+	public static void flush() {
+		final List<AbstractLogItemEventCommand> batch;
+		synchronized (lock) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = pending;
+			pending = new ArrayList<AbstractLogItemEventCommand>();
+		}
+		enqueue(batch);
+	}
+
+	/**
+	 * Gets the number of item events waiting to be written.
+	 *
+	 * @return number of item events
+	 */
+	static int getPendingCount() {
+		synchronized (lock) {
+			return pending.size();
+		}
+	}
+
+	private static void enqueue(final List<AbstractLogItemEventCommand> batch) {
+		DBCommandQueue.get().enqueue(new LogItemEventBatchCommand(batch), DBCommandPriority.LOW);
 	}
 
 
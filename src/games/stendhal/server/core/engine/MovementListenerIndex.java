@@ -0,0 +1,320 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.core.events.MovementListener;
+
+/**
+ * Uniform grid of the {@link MovementListener}s of a zone, used by
+ * {@link StendhalRPZone} to find the listeners whose area an entity may
+ * touch without checking every listener.
+ *
+ * The listener areas are copied when the listeners are added, and must be
+ * updated with {@link #update(MovementListener)} when they change. Listeners
+ * are returned in the order they were added, like in a plain list.
+ */
+class MovementListenerIndex {
+	/** Width and height of a cell in tiles. */
+	static final int CELL_SIZE = 8;
+
+	/**
+	 * A registered listener.
+	 */
+	static final class Entry {
+		/** The listener. */
+		final MovementListener listener;
+		/** Registration order. */
+		final int order;
+		/** Copy of the listener area. */
+		final Rectangle2D.Double area = new Rectangle2D.Double();
+		/** Cell range (first column, first row, last column, last row). */
+		final int[] range = new int[4];
+		/** Last query that returned the entry. */
+		int mark;
+		/** <code>true</code> when the listener has been removed. */
+		boolean removed;
+
+		private Entry(final MovementListener listener, final int order) {
+			this.listener = listener;
+			this.order = order;
+		}
+
+		/**
+		 * Checks if an area intersects the listener area, with the same
+		 * result as <code>Rectangle2D.intersects()</code>.
+		 *
+		 * @param x x coordinate of the area
+		 * @param y y coordinate of the area
+		 * @param w width of the area
+		 * @param h height of the area
+		 * @return <code>true</code> if the areas overlap
+		 */
+		boolean intersects(final double x, final double y, final double w, final double h) {
+			if (area.isEmpty() || (w <= 0) || (h <= 0)) {
+				return false;
+			}
+			return (x + w > area.x) && (y + h > area.y)
+					&& (x < area.x + area.width) && (y < area.y + area.height);
+		}
+	}
+
+	private int columns;
+	private int rows;
+	private List<List<Entry>> cells;
+	/** Entries in registration order. */
+	private final List<Entry> entries = new ArrayList<Entry>();
+	/** Entries of each listener. A listener may be added more than once. */
+	private final Map<MovementListener, List<Entry>> byListener = new IdentityHashMap<MovementListener, List<Entry>>();
+	private int nextOrder;
+	private int queryMark;
+
+	/**
+	 * Creates a new index.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 */
+	MovementListenerIndex(final int width, final int height) {
+		resize(width, height);
+	}
+
+	/**
+	 * Changes the dimensions of the grid and re-indexes all listeners.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 */
+	final void resize(final int width, final int height) {
+		columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+		rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+		cells = new ArrayList<List<Entry>>(columns * rows);
+		for (int i = 0; i < columns * rows; i++) {
+			cells.add(new ArrayList<Entry>(0));
+		}
+		for (final Entry entry : entries) {
+			computeRange(entry.area, entry.range);
+			link(entry);
+		}
+	}
+
+	/**
+	 * Checks if the grid covers a zone of the given dimensions.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 * @return <code>true</code> if the grid does not need to be resized
+	 */
+	boolean fits(final int width, final int height) {
+		return columns == Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE)
+				&& rows == Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+	}
+
+	/**
+	 * Adds a listener.
+	 *
+	 * @param listener listener
+	 */
+	void add(final MovementListener listener) {
+		final Entry entry = new Entry(listener, nextOrder++);
+		entry.area.setRect(listener.getArea());
+		computeRange(entry.area, entry.range);
+		entries.add(entry);
+		List<Entry> list = byListener.get(listener);
+		if (list == null) {
+			list = new ArrayList<Entry>(1);
+			byListener.put(listener, list);
+		}
+		list.add(entry);
+		link(entry);
+	}
+
+	/**
+	 * Removes the first registration of a listener.
+	 *
+	 * @param listener listener
+	 */
+	void remove(final MovementListener listener) {
+		final List<Entry> list = byListener.get(listener);
+		if (list == null) {
+			return;
+		}
+		final Entry entry = list.remove(0);
+		if (list.isEmpty()) {
+			byListener.remove(listener);
+		}
+		entry.removed = true;
+		entries.remove(entry);
+		unlink(entry);
+	}
+
+	/**
+	 * Updates the area of a listener, if it is registered.
+	 *
+	 * @param listener listener whose area may have changed
+	 */
+	void update(final MovementListener listener) {
+		final List<Entry> list = byListener.get(listener);
+		if (list == null) {
+			return;
+		}
+		final Rectangle2D area = listener.getArea();
+		for (final Entry entry : list) {
+			if (!entry.area.equals(area)) {
+				unlink(entry);
+				entry.area.setRect(area);
+				computeRange(entry.area, entry.range);
+				link(entry);
+			}
+		}
+	}
+
+	/**
+	 * Checks if an object is a registered listener.
+	 *
+	 * @param object object
+	 * @return <code>true</code> if the object has been added as a listener
+	 */
+	boolean contains(final Object object) {
+		return byListener.containsKey(object);
+	}
+
+	/**
+	 * Gets the number of registered listeners.
+	 *
+	 * @return number of registrations
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Collects the listeners whose cells overlap one or two areas. The
+	 * listeners are not checked for intersection with the areas.
+	 *
+	 * @param x1 x coordinate of the first area
+	 * @param y1 y coordinate of the first area
+	 * @param x2 x coordinate of the second area
+	 * @param y2 y coordinate of the second area
+	 * @param w width of the areas
+	 * @param h height of the areas
+	 * @param result list for the listeners in registration order
+	 */
+	void collect(final double x1, final double y1, final double x2, final double y2,
+			final double w, final double h, final List<Entry> result) {
+		queryMark++;
+		final int c1 = column(Math.min(x1, x2));
+		final int r1 = row(Math.min(y1, y2));
+		final int c2 = Math.max(c1, lastColumn(Math.max(x1, x2) + w));
+		final int r2 = Math.max(r1, lastRow(Math.max(y1, y2) + h));
+		for (int cy = r1; cy <= r2; cy++) {
+			for (int cx = c1; cx <= c2; cx++) {
+				final List<Entry> cell = cells.get(cy * columns + cx);
+				for (int i = 0; i < cell.size(); i++) {
+					final Entry entry = cell.get(i);
+					if (entry.mark != queryMark) {
+						entry.mark = queryMark;
+						result.add(entry);
+					}
+				}
+			}
+		}
+		if ((c1 != c2) || (r1 != r2)) {
+			// restore the registration order of entries from several cells
+			for (int i = 1; i < result.size(); i++) {
+				final Entry entry = result.get(i);
+				int j = i - 1;
+				while ((j >= 0) && (result.get(j).order > entry.order)) {
+					result.set(j + 1, result.get(j));
+					j--;
+				}
+				result.set(j + 1, entry);
+			}
+		}
+	}
+
+	private void computeRange(final Rectangle2D area, final int[] range) {
+		range[0] = column(area.getX());
+		range[1] = row(area.getY());
+		range[2] = Math.max(range[0], lastColumn(area.getMaxX()));
+		range[3] = Math.max(range[1], lastRow(area.getMaxY()));
+	}
+
+	private void link(final Entry entry) {
+		final int[] range = entry.range;
+		for (int cy = range[1]; cy <= range[3]; cy++) {
+			for (int cx = range[0]; cx <= range[2]; cx++) {
+				insert(cells.get(cy * columns + cx), entry);
+			}
+		}
+	}
+
+	/**
+	 * Inserts an entry to a cell, keeping the cell in registration order.
+	 *
+	 * @param cell cell
+	 * @param entry entry
+	 */
+	private static void insert(final List<Entry> cell, final Entry entry) {
+		int i = cell.size();
+		while ((i > 0) && (cell.get(i - 1).order > entry.order)) {
+			i--;
+		}
+		cell.add(i, entry);
+	}
+
+	private void unlink(final Entry entry) {
+		final int[] range = entry.range;
+		for (int cy = range[1]; cy <= range[3]; cy++) {
+			for (int cx = range[0]; cx <= range[2]; cx++) {
+				cells.get(cy * columns + cx).remove(entry);
+			}
+		}
+	}
+
+	private int column(final double x) {
+		return clamp((int) Math.floor(x / CELL_SIZE), columns);
+	}
+
+	private int row(final double y) {
+		return clamp((int) Math.floor(y / CELL_SIZE), rows);
+	}
+
+	/**
+	 * Gets the last column touched by an area ending (exclusive) at maxX.
+	 */
+	private int lastColumn(final double maxX) {
+		return clamp((int) Math.ceil(maxX / CELL_SIZE) - 1, columns);
+	}
+
+	/**
+	 * Gets the last row touched by an area ending (exclusive) at maxY.
+	 */
+	private int lastRow(final double maxY) {
+		return clamp((int) Math.ceil(maxY / CELL_SIZE) - 1, rows);
+	}
+
+	private static int clamp(final int value, final int size) {
+		if (value < 0) {
+			return 0;
+		}
+		if (value >= size) {
+			return size - 1;
+		}
+		return value;
+	}
+}
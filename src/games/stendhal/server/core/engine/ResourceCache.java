@@ -0,0 +1,157 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.IO;
+
+/**
+ * Memory cache for the resources served to the web client, such as maps and
+ * tilesets.
+ * <p>
+ * Each resource is read from the class path only once. The least recently
+ * used resources are dropped when the cached data exceeds the size limit,
+ * which can be set in bytes with the <code>stendhal.resourcecache</code>
+ * system property. Resources that do not exist are not cached, so requests
+ * for arbitrary names cannot fill the cache.
+ */
+public final class ResourceCache {
+	private static final Logger logger = Logger.getLogger(ResourceCache.class);
+
+	private final ClassLoader loader;
+	/** maximum size of the cached data in bytes */
+	private final long maxSize;
+	/** cached resources in the order of last use */
+	private final Map<String, byte[]> resources = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	/** current size of the cached data in bytes */
+	private long size;
+
+	/**
+	 * Creates a new ResourceCache using the size limit from the system
+	 * properties.
+	 *
+	 * @param loader class loader for loading the resources
+	 */
+	public ResourceCache(final ClassLoader loader) {
+		this(loader, Long.getLong("stendhal.resourcecache", 32L * 1024 * 1024).longValue());
+	}
+
+	/**
+	 * Creates a new ResourceCache.
+	 *
+	 * @param loader class loader for loading the resources
+	 * @param maxSize maximum size of the cached data in bytes
+	 */
+	public ResourceCache(final ClassLoader loader, final long maxSize) {
+		this.loader = loader;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets the content of a resource. The returned array must not be
+	 * modified.
+	 *
+	 * @param name name of the resource in the class path
+	 * @return content, or <code>null</code> if the resource does not exist
+	 */
+	public byte[] get(final String name) {
+		byte[] resource;
+		synchronized (resources) {
+			resource = resources.get(name);
+		}
+		if (resource == null) {
+			resource = load(name);
+			if (resource != null) {
+				put(name, resource);
+			}
+		}
+		return resource;
+	}
+
+	/**
+	 * Gets the current size of the cached data.
+	 *
+	 * @return size in bytes
+	 */
+	public long getSize() {
+		synchronized (resources) {
+			return size;
+		}
+	}
+
+	/**
+	 * Removes all resources from the cache.
+	 */
+	public void clear() {
+		synchronized (resources) {
+			resources.clear();
+			size = 0;
+		}
+	}
+
+	/**
+	 * Loads a resource from the class path.
+	 *
+	 * @param name name of the resource
+	 * @return content, or <code>null</code> if the resource does not exist
+	 */
+	private byte[] load(final String name) {
+		final InputStream in = loader.getResourceAsStream(name);
+		if (in == null) {
+			return null;
+		}
+		try {
+			try {
+				return IO.readStreamContent(in);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			logger.warn("Cannot read resource " + name + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Adds a resource to the cache, dropping the least recently used
+	 * resources if needed.
+	 *
+	 * @param name name of the resource
+	 * @param resource content of the resource
+	 */
+	private void put(final String name, final byte[] resource) {
+		final long resourceSize = resource.length;
+		// do not let single large resources push out everything else
+		if (resourceSize > maxSize / 4) {
+			return;
+		}
+		synchronized (resources) {
+			final byte[] old = resources.put(name, resource);
+			if (old != null) {
+				size -= old.length;
+			}
+			size += resourceSize;
+			final Iterator<byte[]> it = resources.values().iterator();
+			while ((size > maxSize) && it.hasNext()) {
+				size -= it.next().length;
+				it.remove();
+			}
+		}
+	}
+}
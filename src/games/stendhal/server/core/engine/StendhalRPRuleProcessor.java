@@ -12,11 +12,13 @@
 package games.stendhal.server.core.engine;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -36,6 +38,7 @@ import games.stendhal.server.core.account.AccountCreator;
 import games.stendhal.server.core.account.CharacterCreator;
 import games.stendhal.server.core.engine.db.StendhalWebsiteDAO;
 import games.stendhal.server.core.engine.dbcommand.SetOnlineStatusCommand;
+import games.stendhal.server.core.engine.profiler.TurnProfiler;
 import games.stendhal.server.core.engine.transformer.PlayerTransformer;
 import games.stendhal.server.core.events.TurnListener;
 import games.stendhal.server.core.events.TurnNotifier;
@@ -46,6 +49,7 @@ import games.stendhal.server.core.scripting.ScriptRunner;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.npc.NPCList;
+import games.stendhal.server.entity.npc.SpeakerNPC;
 import games.stendhal.server.entity.npc.behaviour.impl.OutfitChangerBehaviour.ExpireOutfit;
 import games.stendhal.server.entity.player.AfkTimeouter;
 import games.stendhal.server.entity.player.Player;
@@ -106,6 +110,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 
 	private LinkedList<marauroa.server.game.rp.GameEvent> gameEvents = new LinkedList<>();
 
+	/** zones that are not asleep in the current turn */
+	private final List<IRPZone> awakeZones = new ArrayList<IRPZone>();
+
+	/** maps, tilesets and data files served to the web client */
+	private final ResourceCache resourceCache = new ResourceCache(StendhalRPRuleProcessor.class.getClassLoader());
+
 
 	/**
 	 * gets the singleton instance of StendhalRPRuleProcessor
@@ -119,6 +129,7 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 				StendhalRPRuleProcessor.instance = instance;
 				new GameEvent("server system", "startup").raise();
 				AfkTimeouter.create();
+				TurnProfiler.get().scheduleReports();
 			}
 		}
 
@@ -217,13 +228,14 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	}
 
 	/**
-	 * Kills an RPEntity.
+	 * Kills an RPEntity. If called from parallel zone logic, the entity is
+	 * registered in the commit phase.
 	 *
 	 * @param entity
 	 * @param killer
 	 */
 	public void killRPEntity(final RPEntity entity, final Entity killer) {
-		entityToKill.add(new Pair<RPEntity, Entity>(entity, killer));
+		ZoneLogicExecutor.get().defer(() -> entityToKill.add(new Pair<RPEntity, Entity>(entity, killer)));
 	}
 
 	/**
@@ -281,7 +293,8 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	/** Notify it when a new turn happens. */
 	@Override
 	public synchronized void beginTurn() {
-		final long start = System.nanoTime();
+		final TurnProfiler profiler = TurnProfiler.get();
+		final long start = profiler.start();
 
 		try {
 			destroyObsoleteZones();
@@ -295,36 +308,44 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 			logger.error("error in beginTurn", e);
 		}
 
+		long phaseStart = profiler.start();
 		try {
 			handleKilledEntities();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.recordPhase(TurnProfiler.KILLED_ENTITIES, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			executePlayerLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.recordPhase(TurnProfiler.PLAYER_LOGIC, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			executeNPCsPreLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.recordPhase(TurnProfiler.NPC_PRELOGIC, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			executeZonePreLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.recordPhase(TurnProfiler.ZONE_PRELOGIC, phaseStart);
 
 		try {
 			handlePlayersRmTexts();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
-		logger.debug("Begin turn: " + (System.nanoTime() - start) / 1000000.0);
+		profiler.recordPhase(TurnProfiler.BEGIN_TURN, start);
 	}
 
 	private void destroyObsoleteZones() {
@@ -356,8 +377,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 		// SpeakerNPC logic
 		final NPCList npcList = SingletonRepository.getNPCList();
 		final Set<String> npcs = npcList.getNPCs();
-		for (final String npc : npcs) {
-			npcList.get(npc).preLogic();
+		for (final String name : npcs) {
+			final SpeakerNPC npc = npcList.get(name);
+			final StendhalRPZone zone = npc.getZone();
+			if ((zone == null) || !zone.isDormant()) {
+				npc.preLogic();
+			}
 		}
 	}
 
@@ -375,10 +400,33 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	}
 
 	protected void executeZonePreLogic() {
+		updateAwakeZones();
+		final TurnProfiler profiler = TurnProfiler.get();
+		ZoneLogicExecutor.get().execute(awakeZones, zone -> {
+			final long start = profiler.start();
+			zone.preLogic();
+			profiler.recordZone(zone, start);
+		});
+	}
+
+	/**
+	 * Updates the list of zones whose logic is executed in this turn. Zones
+	 * without players are put to sleep, and skipped until someone enters
+	 * them.
+	 */
+	private void updateAwakeZones() {
+		final int turn = getTurn();
+		awakeZones.clear();
+		int dormant = 0;
 		for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
 			final StendhalRPZone zone = (StendhalRPZone) zoneI;
-			zone.preLogic();
+			if (zone.updateDormancy(turn)) {
+				dormant++;
+			} else {
+				awakeZones.add(zone);
+			}
 		}
+		Statistics.getStatistics().set("Zones dormant", dormant);
 	}
 
 	protected void handleKilledEntities() {
@@ -402,20 +450,30 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	@Override
 	public synchronized void endTurn() {
 		final int currentTurn = getTurn();
+		final TurnProfiler profiler = TurnProfiler.get();
+		final long start = profiler.start();
 		try {
 
+			long phaseStart = profiler.start();
 			SingletonRepository.getTurnNotifier().logic(currentTurn);
+			profiler.recordPhase(TurnProfiler.TURN_NOTIFIER, phaseStart);
 
-			for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
-				final StendhalRPZone zone = (StendhalRPZone) zoneI;
+			// zones that have been woken up during this turn are included
+			// in the next one
+			phaseStart = profiler.start();
+			ZoneLogicExecutor.get().execute(awakeZones, zone -> {
+				final long zoneStart = profiler.start();
 				zone.logic();
-			}
+				profiler.recordZone(zone, zoneStart);
+			});
+			profiler.recordPhase(TurnProfiler.ZONE_LOGIC, phaseStart);
 
 			// run registered object's logic method for this turn
 
 		} catch (final Exception e) {
 			logger.error("error in endTurn", e);
 		}
+		profiler.recordPhase(TurnProfiler.END_TURN, start);
 	}
 
 	/**
@@ -603,6 +661,7 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 				DBCommand command = new SetOnlineStatusCommand(player.getName(), false);
 				DBCommandQueue.get().enqueue(command);
 
+				ItemLogger.flush();
 				new GameEvent(player.getName(), "logout", reason).raise();
 				logger.debug("removed player " + player);
 
@@ -807,6 +866,18 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 * @param params parameters
 	 */
 	public void logGameEvent(String source, String event, String... params) {
+		// the event list is shared by all zones
+		ZoneLogicExecutor.get().defer(() -> addGameEvent(source, event, params));
+	}
+
+	/**
+	 * adds a game event to the events to be written to the database
+	 *
+	 * @param source source
+	 * @param event  event
+	 * @param params parameters
+	 */
+	private void addGameEvent(String source, String event, String... params) {
 		this.gameEvents.add(new marauroa.server.game.rp.GameEvent(source, event, params));
 
 		// we collect one second of game events and write them as batch to the database
@@ -833,7 +904,7 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	public String getMimeTypeForResource(String resource) {
 		if (resource.endsWith(".tmx")) {
 			return "text/xml";
-		} else if (resource.endsWith(".tmx")) {
+		} else if (resource.endsWith(".ogg")) {
 			return "audio/ogg";
 		} else if (resource.endsWith(".png")) {
 			return "image/png";
@@ -849,12 +920,15 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 */
 	@Override
 	public InputStream getResource(String resource) {
+		byte[] data = null;
 		if (resource.startsWith("/tiled") || resource.startsWith("/data")) {
-			return StendhalRPRuleProcessor.class.getClassLoader().getResourceAsStream(resource.substring(1));
+			data = resourceCache.get(resource.substring(1));
+		} else if (resource.startsWith("/tileset")) {
+			data = resourceCache.get("tiled" + resource);
 		}
-		if (resource.startsWith("/tileset")) {
-			return StendhalRPRuleProcessor.class.getClassLoader().getResourceAsStream("tiled" + resource);
+		if (data == null) {
+			return null;
 		}
-		return null;
+		return new ByteArrayInputStream(data);
 	}
 }
@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 
 import games.stendhal.common.parser.WordList;
 import games.stendhal.server.core.config.ZoneGroupsXMLLoader;
+import games.stendhal.server.core.pathfinder.ZonePathfinder;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.mapstuff.portal.OneWayPortalDestination;
 import games.stendhal.server.entity.mapstuff.portal.Portal;
@@ -142,6 +143,7 @@ public class StendhalRPWorld extends RPWorld {
 			loader.load();
 
 			validatePortals();
+			ZonePathfinder.get().precompute(this);
 			SingletonRepository.getAchievementNotifier().initialize();
 			SingletonRepository.getGagManager();
 			SingletonRepository.getJail();
@@ -170,6 +172,7 @@ public class StendhalRPWorld extends RPWorld {
 	@Override
 	public void onFinish() {
 		super.onFinish();
+		ItemLogger.flush();
 		new GameEvent("server system", "shutdown").raise();
 		try {
 			//TODO: find a more appropriate way to do this
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -47,6 +48,7 @@ import games.stendhal.common.tiled.TileSetDefinition;
 import games.stendhal.server.core.config.zone.TeleportationRules;
 import games.stendhal.server.core.events.MovementListener;
 import games.stendhal.server.core.events.ZoneEnterExitListener;
+import games.stendhal.server.core.pathfinder.ReachableArea;
 import games.stendhal.server.core.rp.StendhalRPAction;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.entity.ActiveEntity;
@@ -132,9 +134,16 @@ public class StendhalRPZone extends MarauroaRPZone {
 	private boolean moveToAllowed = true;
 
 	/**
-	 * Objects that implement MovementListener.
+	 * Objects that implement MovementListener, indexed by their area.
 	 */
-	private final List<MovementListener> movementListeners;
+	private final MovementListenerIndex movementListeners;
+	/**
+	 * Reusable lists for the listeners found for a movement, one for each
+	 * level of nested notifications.
+	 */
+	private final List<List<MovementListenerIndex.Entry>> listenerCandidates = new ArrayList<List<MovementListenerIndex.Entry>>();
+	/** Current nesting level of movement notifications. */
+	private int listenerDepth;
 
 
 	private final List<ZoneEnterExitListener> zoneListeners;
@@ -167,6 +176,46 @@ public class StendhalRPZone extends MarauroaRPZone {
 	/** Zones that some event types propagate to from this one. */
 	private String associatedZones;
 
+	/** Largest perception range of the SpeakerNPCs that have been in this zone. */
+	private int speechRange;
+
+	/** Spatial index of the entities in this zone. */
+	private final EntityGrid entityGrid;
+
+	/** Reusable tables for the reachability checks of placements. */
+	private final ReachableArea.Workspace reachableAreaWorkspace = new ReachableArea.Workspace();
+
+	/**
+	 * Use the spatial index for positional queries. Can be disabled with the
+	 * <code>stendhal.zone.linearscan</code> system property to verify results
+	 * against a scan over all zone objects.
+	 */
+	private boolean entityGridEnabled = !Boolean.parseBoolean(System.getProperty("stendhal.zone.linearscan", "false"));
+
+	/** Changed whenever the collision layer changes. */
+	private int navigationRevision;
+
+	/**
+	 * Number of turns a zone has to be without players before it goes to
+	 * sleep.
+	 */
+	static final int DORMANCY_DELAY = 100;
+
+	/**
+	 * Put zones without players to sleep. Can be disabled by setting the
+	 * <code>stendhal.zone.dormancy</code> system property to false.
+	 */
+	private static final boolean DORMANCY_ENABLED = Boolean.parseBoolean(System.getProperty("stendhal.zone.dormancy", "true"));
+
+	/** Is the zone asleep? */
+	private boolean dormant;
+
+	/**
+	 * The last turn in which the zone had players or active NPCs, or in
+	 * which its logic was run before it went to sleep.
+	 */
+	private int lastActiveTurn;
+
 
 	public StendhalRPZone(final String name) {
 		super(name);
@@ -183,11 +232,12 @@ public class StendhalRPZone extends MarauroaRPZone {
 		players = new LinkedList<Player>();
 		playersAndFriends = new LinkedList<RPEntity>();
 
-		movementListeners = new LinkedList<MovementListener>();
+		movementListeners = new MovementListenerIndex(0, 0);
 		zoneListeners = new LinkedList<ZoneEnterExitListener>();
 
 		collisionMap = new CollisionDetection();
 		protectionMap = new CollisionDetection();
+		entityGrid = new EntityGrid(0, 0);
 		String readable = createReadableName(name);
 		if (!name.equals(readable)) {
 			readableName = readable;
@@ -421,18 +471,30 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	/**
 	 * Resend the zone data to players on the zone. This is meant for situations
-	 * where the map data changes. (Weather and lighting changes, and so on).
+	 * where the map data changes. Changes of the zone attributes (weather and
+	 * lighting) should use {@link ZoneAttributes#notifyOnlinePlayers()}.
 	 */
 	public void notifyOnlinePlayers() {
 		// Notify resident players about the changed weather
 		if (!getPlayers().isEmpty()) {
-			List<TransferContent> newContents = getContents();
-			for (Player player : getPlayers()) {
-				// Old clients do not understand content transfer that just
-				// update the old map, and end up with no entities on the screen
-				if (!player.isDisconnected() && player.isClientNewerThan("0.97")) {
-					StendhalRPAction.transferContent(player, newContents);
-				}
+			notifyOnlinePlayers(getContents());
+		}
+	}
+
+	/**
+	 * Send changed zone data to players on the zone.
+	 *
+	 * @param newContents the changed contents
+	 */
+	void notifyOnlinePlayers(final List<TransferContent> newContents) {
+		if (newContents.isEmpty()) {
+			return;
+		}
+		for (Player player : getPlayers()) {
+			// Old clients do not understand content transfer that just
+			// update the old map, and end up with no entities on the screen
+			if (!player.isDisconnected() && player.isClientNewerThan("0.97")) {
+				StendhalRPAction.transferContent(player, newContents);
 			}
 		}
 	}
@@ -461,6 +523,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 			throws IOException {
 		addToContent(name, collisionLayer.encode());
 		collisionMap.setCollisionData(collisionLayer);
+		navigationRevision++;
+	}
+
+	/**
+	 * Get the navigation revision of the zone. The revision changes when the
+	 * collision layer of the zone changes, and is used to invalidate
+	 * precomputed path finding data.
+	 *
+	 * @return revision
+	 */
+	public int getNavigationRevision() {
+		return navigationRevision;
 	}
 
 	/**
@@ -851,6 +925,19 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return contents;
 	}
 
+	/**
+	 * Get the contents that need to be resent to the players after zone
+	 * attributes not affecting the coloring have changed.
+	 *
+	 * @return attributes layer, or an empty list if the zone has no attributes
+	 */
+	List<TransferContent> getAttributeContents() {
+		if (attributes == null) {
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(attributes.getContents());
+	}
+
 	public boolean isInProtectionArea(final Entity entity) {
 		final Rectangle2D area = entity.getArea();
 		return protectionMap.collides(area);
@@ -906,6 +993,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		 */
 		assignRPObjectID(object);
 		super.add(object);
+		if (object instanceof Entity) {
+			getEntityGrid().add((Entity) object);
+		}
 
 		notifyAdded(object);
 
@@ -951,7 +1041,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		} else if (object instanceof BabyDragon) {
 			playersAndFriends.add((BabyDragon) object);
 		} else if (object instanceof SpeakerNPC) {
-			SingletonRepository.getNPCList().add((SpeakerNPC) object);
+			final SpeakerNPC npc = (SpeakerNPC) object;
+			ZoneLogicExecutor.get().defer(() -> SingletonRepository.getNPCList().add(npc));
+			updateSpeechRange(((SpeakerNPC) object).getPerceptionRange());
 		} else if (object instanceof Portal) {
 			portals.add((Portal) object);
 		}
@@ -962,6 +1054,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		// TODO: Move up to MarauroaRPZone?
 		SingletonRepository.getRPWorld().requestSync(object);
+
+		if (dormant && !playersAndFriends.isEmpty()) {
+			wakeUp();
+		}
 	}
 
 	/**
@@ -973,6 +1069,66 @@ public class StendhalRPZone extends MarauroaRPZone {
 		if (!playersAndFriends.contains(object)) {
 			playersAndFriends.add(object);
 		}
+		if (dormant) {
+			wakeUp();
+		}
+	}
+
+	/**
+	 * Checks whether the zone is asleep. The logic of sleeping zones is
+	 * skipped.
+	 *
+	 * @return <code>true</code> if the zone is asleep
+	 */
+	public boolean isDormant() {
+		return dormant;
+	}
+
+	/**
+	 * Updates the sleeping state of the zone. A zone goes to sleep when
+	 * there have been no players or their friends in it for
+	 * {@link #DORMANCY_DELAY} turns, and none of its NPCs needs to act alone.
+	 *
+	 * @param turn current turn
+	 * @return <code>true</code> if the zone is asleep
+	 */
+	boolean updateDormancy(final int turn) {
+		if (dormant || !DORMANCY_ENABLED) {
+			return dormant;
+		}
+		if (!playersAndFriends.isEmpty()) {
+			lastActiveTurn = turn;
+		} else if (turn - lastActiveTurn >= DORMANCY_DELAY) {
+			for (final NPC npc : npcs) {
+				if (npc.isActiveInEmptyZone()) {
+					lastActiveTurn = turn;
+					return false;
+				}
+			}
+			logger.debug("Zone " + getName() + " goes to sleep");
+			dormant = true;
+			// the logic is skipped from this turn on
+			lastActiveTurn = turn - 1;
+		}
+		return dormant;
+	}
+
+	/**
+	 * Wakes the zone up, and lets the NPCs catch up with the turns in which
+	 * the zone was asleep.
+	 */
+	private void wakeUp() {
+		dormant = false;
+		final int turn = SingletonRepository.getRuleProcessor().getTurn();
+		logger.debug("Zone " + getName() + " wakes up after " + (turn - lastActiveTurn) + " turns");
+		for (final NPC npc : npcs) {
+			try {
+				npc.onZoneWakeUp(lastActiveTurn, turn - 1);
+			} catch (final RuntimeException e) {
+				logger.error("Error waking up " + npc + " in zone " + getName(), e);
+			}
+		}
+		lastActiveTurn = turn;
 	}
 
 	private void notifyAdded(final RPObject object) {
@@ -991,6 +1147,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public synchronized RPObject remove(final RPObject.ID id) {
 
 		final RPObject object = get(id);
+		if (object instanceof Entity) {
+			entityGrid.remove((Entity) object);
+		}
 		notifyRemoved(object);
 		if (object instanceof Entity) {
 			((Entity) object).onRemoved(this);
@@ -1014,7 +1173,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 		} else if (object instanceof BabyDragon) {
 			playersAndFriends.remove(object);
 		} else if (object instanceof SpeakerNPC) {
-			SingletonRepository.getNPCList().remove(((SpeakerNPC) object).getName());
+			removeFromNPCList((SpeakerNPC) object);
 		} else if (object instanceof Portal) {
 			portals.remove(object);
 		}
@@ -1039,6 +1198,17 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 
 
+	/**
+	 * Remove an NPC from the global NPC list. Delayed to the end of the
+	 * parallel zone logic, if needed.
+	 *
+	 * @param npc removed NPC
+	 */
+	private static void removeFromNPCList(final SpeakerNPC npc) {
+		final String name = npc.getName();
+		ZoneLogicExecutor.get().defer(() -> SingletonRepository.getNPCList().remove(name));
+	}
+
 	/**
 	 * removes object from zone.
 	 *
@@ -1050,7 +1220,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 			modify(object);
 
 			if (object instanceof SpeakerNPC) {
-				SingletonRepository.getNPCList().remove(((SpeakerNPC) object).getName());
+				removeFromNPCList((SpeakerNPC) object);
 			}
 
 			if (object instanceof NPC) {
@@ -1181,6 +1351,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 	}
 
 	private Entity getCollidingObject(final Entity entity, final Rectangle2D area) {
+		if (entityGridEnabled) {
+			return getEntityGrid().getCollidingObject(entity, area);
+		}
+
 		for (final RPObject other : objects.values()) {
 			// Ignore same object
 			if (entity != other) {
@@ -1207,6 +1381,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return the first entity found if there are more than one or null if there are none
 	 */
 	public synchronized Entity getEntityAt(final double x, final double y) {
+		if (entityGridEnabled) {
+			return getEntityGrid().getEntityAt(x, y);
+		}
+
 		for (final RPObject other : objects.values()) {
 			final Entity otherEntity = (Entity) other;
 
@@ -1227,6 +1405,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public synchronized List<Entity> getEntitiesAt(final double x, final double y) {
 		List<Entity> entities = new LinkedList<Entity>();
 
+		if (entityGridEnabled) {
+			getEntityGrid().collectEntitiesAt(x, y, Entity.class, entities);
+			return entities;
+		}
+
 		for (final RPObject other : objects.values()) {
 			final Entity entity = (Entity) other;
 
@@ -1249,6 +1432,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public synchronized <T extends Entity> List<T> getEntitiesAt(final double x, final double y, Class<T> clazz) {
 		List<T> entities = new LinkedList<T>();
 
+		if (entityGridEnabled) {
+			getEntityGrid().collectEntitiesAt(x, y, clazz, entities);
+			return entities;
+		}
+
 		for (final RPObject other : objects.values()) {
 			final Entity entity = (Entity) other;
 			if (!clazz.isInstance(entity)) {
@@ -1264,6 +1452,108 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return entities;
 	}
 
+	/**
+	 * Finds all entities of a class whose area intersects a rectangle.
+	 *
+	 * @param area area to search
+	 * @param clazz required entity class
+	 * @return list of entities in the area
+	 */
+	public synchronized <T extends Entity> List<T> getEntitiesIn(final Rectangle2D area, final Class<T> clazz) {
+		List<T> entities = new LinkedList<T>();
+
+		if (entityGridEnabled) {
+			getEntityGrid().collectEntitiesIn(area, clazz, entities);
+			return entities;
+		}
+
+		for (final RPObject other : objects.values()) {
+			final Entity entity = (Entity) other;
+			if (clazz.isInstance(entity) && area.intersects(entity.getArea())) {
+				entities.add(clazz.cast(entity));
+			}
+		}
+
+		return entities;
+	}
+
+	/**
+	 * Tells the SpeakerNPCs near a player that the player said something.
+	 * Only NPCs whose perception range covers the player are told, so that
+	 * NPCs do not have to look for speaking players every turn.
+	 *
+	 * @param player player who spoke
+	 */
+	public void onPlayerSpoke(final Player player) {
+		if (speechRange <= 0) {
+			return;
+		}
+		final Rectangle2D area = new Rectangle2D.Double(player.getX() - speechRange,
+				player.getY() - speechRange, 2 * speechRange + 1, 2 * speechRange + 1);
+		for (final SpeakerNPC npc : getEntitiesIn(area, SpeakerNPC.class)) {
+			npc.onPlayerSpoke(player);
+		}
+	}
+
+	/**
+	 * Makes sure that speech is delivered to a SpeakerNPC with the given
+	 * perception range.
+	 *
+	 * @param range perception range of a SpeakerNPC in this zone
+	 */
+	public void updateSpeechRange(final int range) {
+		if (range > speechRange) {
+			speechRange = range;
+		}
+	}
+
+	/**
+	 * Notification that the position or size of an entity in this zone
+	 * changed.
+	 *
+	 * @param entity
+	 *            The changed entity.
+	 */
+	public synchronized void onEntityAreaChanged(final Entity entity) {
+		entityGrid.update(entity);
+		if ((entity instanceof MovementListener) && movementListeners.contains(entity)) {
+			movementListeners.update((MovementListener) entity);
+		}
+	}
+
+	/**
+	 * Enables or disables the spatial index for positional queries. When
+	 * disabled, queries scan all objects of the zone. The index is kept up to
+	 * date in either case.
+	 *
+	 * @param enabled
+	 *            <code>true</code> to use the spatial index
+	 */
+	public void setEntityGridEnabled(final boolean enabled) {
+		entityGridEnabled = enabled;
+	}
+
+	/**
+	 * Get the spatial entity index, adjusted to the current zone size.
+	 *
+	 * @return entity grid
+	 */
+	private EntityGrid getEntityGrid() {
+		if (!entityGrid.fits(getWidth(), getHeight())) {
+			entityGrid.resize(getWidth(), getHeight());
+		}
+		return entityGrid;
+	}
+
+	/**
+	 * Get the reusable tables for reachability checks in this zone.
+	 *
+	 * @return workspace
+	 */
+	public ReachableArea.Workspace getReachableAreaWorkspace() {
+		return reachableAreaWorkspace;
+	}
+
 	/**
 	 * Get the zone name. This is the same as <code>getID().getID()</code>,
 	 * only cleaner to use.
@@ -1327,15 +1617,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 *            The new Y coordinate.
 	 */
 	public void notifyEntered(final ActiveEntity entity, final int newX, final int newY) {
-		Rectangle2D eArea;
-
-		eArea = entity.getArea(newX, newY);
-
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-			if (area.intersects(eArea)) {
-				l.onEntered(entity, this, newX, newY);
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
+		final List<MovementListenerIndex.Entry> candidates = startListenerQuery(newX, newY, newX, newY, w, h);
+		try {
+			for (int i = 0; i < candidates.size(); i++) {
+				final MovementListenerIndex.Entry e = candidates.get(i);
+				if (!e.removed && e.intersects(newX, newY, w, h)) {
+					e.listener.onEntered(entity, this, newX, newY);
+				}
 			}
+		} finally {
+			endListenerQuery(candidates);
 		}
 	}
 
@@ -1350,15 +1643,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 *            The old Y coordinate.
 	 */
 	public void notifyExited(final ActiveEntity entity, final int oldX, final int oldY) {
-		Rectangle2D eArea;
-
-		eArea = entity.getArea(oldX, oldY);
-
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-			if (area.intersects(eArea)) {
-				l.onExited(entity, this, oldX, oldY);
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
+		final List<MovementListenerIndex.Entry> candidates = startListenerQuery(oldX, oldY, oldX, oldY, w, h);
+		try {
+			for (int i = 0; i < candidates.size(); i++) {
+				final MovementListenerIndex.Entry e = candidates.get(i);
+				if (!e.removed && e.intersects(oldX, oldY, w, h)) {
+					e.listener.onExited(entity, this, oldX, oldY);
+				}
 			}
+		} finally {
+			endListenerQuery(candidates);
 		}
 	}
 
@@ -1378,51 +1674,97 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	public void notifyMovement(final ActiveEntity entity, final int oldX, final int oldY,
 			final int newX, final int newY) {
-		Rectangle2D oeArea;
-		Rectangle2D neArea;
-		boolean oldIn;
-		boolean newIn;
-
-		oeArea = entity.getArea(oldX, oldY);
-		neArea = entity.getArea(newX, newY);
-
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-
-			oldIn = area.intersects(oeArea);
-			newIn = area.intersects(neArea);
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
+		final List<MovementListenerIndex.Entry> candidates = startListenerQuery(oldX, oldY, newX, newY, w, h);
+		try {
+			for (int i = 0; i < candidates.size(); i++) {
+				final MovementListenerIndex.Entry e = candidates.get(i);
+				if (e.removed) {
+					continue;
+				}
+				final boolean oldIn = e.intersects(oldX, oldY, w, h);
+				final boolean newIn = e.intersects(newX, newY, w, h);
+				final MovementListener l = e.listener;
 
-			if (!oldIn && newIn) {
-				l.onEntered(entity, this, newX, newY);
-			}
+				if (!oldIn && newIn) {
+					l.onEntered(entity, this, newX, newY);
+				}
 
-			if (oldIn && newIn) {
-				l.onMoved(entity, this, oldX, oldY, newX, newY);
-			}
+				if (oldIn && newIn) {
+					l.onMoved(entity, this, oldX, oldY, newX, newY);
+				}
 
-			if (oldIn && !newIn) {
-				l.onExited(entity, this, oldX, oldY);
+				if (oldIn && !newIn) {
+					l.onExited(entity, this, oldX, oldY);
+				}
 			}
+		} finally {
+			endListenerQuery(candidates);
 		}
 	}
 
 	public void notifyBeforeMovement(final ActiveEntity entity, final int oldX, final int oldY,
 			final int newX, final int newY) {
-		Rectangle2D neArea;
-		boolean newIn;
-
-		neArea = entity.getArea(newX, newY);
-
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
+		final List<MovementListenerIndex.Entry> candidates = startListenerQuery(newX, newY, newX, newY, w, h);
+		try {
+			for (int i = 0; i < candidates.size(); i++) {
+				final MovementListenerIndex.Entry e = candidates.get(i);
+				if (!e.removed && e.intersects(newX, newY, w, h)) {
+					e.listener.beforeMove(entity, this, oldX, oldY, newX, newY);
+				}
+			}
+		} finally {
+			endListenerQuery(candidates);
+		}
+	}
 
-			newIn = area.intersects(neArea);
+	/**
+	 * Find the movement listeners that may be interested in an entity at one
+	 * or two positions. The returned list must be given back with
+	 * {@link #endListenerQuery(List)}.
+	 *
+	 * @param x1 first x coordinate
+	 * @param y1 first y coordinate
+	 * @param x2 second x coordinate
+	 * @param y2 second y coordinate
+	 * @param w entity width
+	 * @param h entity height
+	 * @return candidate listeners in registration order
+	 */
+	private List<MovementListenerIndex.Entry> startListenerQuery(final int x1, final int y1,
+			final int x2, final int y2, final double w, final double h) {
+		if (listenerDepth == listenerCandidates.size()) {
+			listenerCandidates.add(new ArrayList<MovementListenerIndex.Entry>());
+		}
+		final List<MovementListenerIndex.Entry> candidates = listenerCandidates.get(listenerDepth);
+		listenerDepth++;
+		getMovementListeners().collect(x1, y1, x2, y2, w, h, candidates);
+		return candidates;
+	}
 
-			if (newIn) {
-				l.beforeMove(entity, this, oldX, oldY, newX, newY);
-			}
+	/**
+	 * Release a list returned by {@link #startListenerQuery}.
+	 *
+	 * @param candidates list
+	 */
+	private void endListenerQuery(final List<MovementListenerIndex.Entry> candidates) {
+		candidates.clear();
+		listenerDepth--;
+	}
 
+	/**
+	 * Get the movement listener index, adjusted to the current zone size.
+	 *
+	 * @return movement listener index
+	 */
+	private MovementListenerIndex getMovementListeners() {
+		if (!movementListeners.fits(getWidth(), getHeight())) {
+			movementListeners.resize(getWidth(), getHeight());
 		}
+		return movementListeners;
 	}
 
 	public void addZoneEnterExitListener(final ZoneEnterExitListener listener) {
@@ -1436,14 +1778,15 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 
 	/**
-	 * Register a movement listener for notification. Eventually create a
-	 * macro-block hash to cut down on listeners to check.
+	 * Register a movement listener for notification. The listeners are
+	 * indexed by their area. Listeners that are entities in this zone are
+	 * updated when they move, other listeners must keep their area.
 	 *
 	 * @param listener
 	 *            A movement listener to register.
 	 */
 	public void addMovementListener(final MovementListener listener) {
-		movementListeners.add(listener);
+		getMovementListeners().add(listener);
 	}
 
 	/**
@@ -13,13 +13,21 @@ package games.stendhal.server.core.engine;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import games.stendhal.common.CRC;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.rp.DaylightUpdater;
 import games.stendhal.server.core.rp.WeatherUpdater;
 import marauroa.common.game.RPObject;
@@ -32,6 +40,19 @@ import marauroa.common.net.message.TransferContent;
 public class ZoneAttributes {
 	private static final Logger logger = Logger.getLogger(ZoneAttributes.class);
 
+	/** Attributes that require the client to recolor the tilesets. */
+	private static final Set<String> COLORING_ATTRIBUTES = new HashSet<String>(
+			Arrays.asList("color", "color_method", "blend_method"));
+	/** Attribute sets whose changes have not been sent to the players yet. */
+	private static final Set<ZoneAttributes> changed = new LinkedHashSet<ZoneAttributes>();
+	/** Sends the pending changes. */
+	private static final TurnListener sender = new TurnListener() {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			sendChanges();
+		}
+	};
+
 	/** Container to wrap the contents to pass as a layer. */
 	private final TransferContent content = new TransferContent();
 	/** An object for storing the attributes. */
@@ -45,6 +66,11 @@ public class ZoneAttributes {
 	 * <code>false</code> if it needs to be rewritten.
 	 */
 	private boolean valid;
+	/**
+	 * <code>true</code>, if an attribute affecting the coloring has changed
+	 * since the players were last notified.
+	 */
+	private boolean coloringChanged;
 
 	/**
 	 * Create new ZoneAttributes.
@@ -113,7 +139,7 @@ public class ZoneAttributes {
 			}
 			attr.put(key, value);
 		}
-		invalidate();
+		invalidate(key);
 	}
 
 	/**
@@ -133,7 +159,7 @@ public class ZoneAttributes {
 	 */
 	public void remove(String key) {
 		attr.remove(key);
-		invalidate();
+		invalidate(key);
 	}
 
 	/**
@@ -163,9 +189,72 @@ public class ZoneAttributes {
 
 	/**
 	 * Flag the binary contents needing update.
+	 *
+	 * @param key name of the changed attribute
 	 */
-	private void invalidate() {
+	private void invalidate(String key) {
 		valid = false;
+		if (COLORING_ATTRIBUTES.contains(key)) {
+			coloringChanged = true;
+		}
+	}
+
+	/**
+	 * Send the changed attributes to the players on the zone. All changes
+	 * made during a turn are sent together at the start of the next turn.
+	 * Only the attributes layer is transferred, unless the coloring changed.
+	 * The client needs all the tile layers to recolor the map, but it has
+	 * them in its cache.
+	 */
+	public void notifyOnlinePlayers() {
+		synchronized (changed) {
+			if (changed.isEmpty()) {
+				TurnNotifier.get().notifyInTurns(0, sender);
+			}
+			changed.add(this);
+		}
+	}
+
+	/**
+	 * Send all pending attribute changes to the players.
+	 */
+	static void sendChanges() {
+		final List<ZoneAttributes> list;
+		synchronized (changed) {
+			list = new ArrayList<ZoneAttributes>(changed);
+			changed.clear();
+		}
+		for (ZoneAttributes attributes : list) {
+			attributes.zone.notifyOnlinePlayers(attributes.takeChangedContents());
+		}
+	}
+
+	/**
+	 * Get the contents that need to be sent to the players after the
+	 * changes, and clear the coloring change flag. That is the attributes
+	 * layer alone, or all the zone contents if the coloring changed.
+	 *
+	 * @return changed contents
+	 */
+	List<TransferContent> takeChangedContents() {
+		final boolean coloring = coloringChanged;
+		coloringChanged = false;
+		if (coloring) {
+			return zone.getContents();
+		}
+		return zone.getAttributeContents();
+	}
+
+	/**
+	 * Get the number of attribute sets with changes that have not been sent
+	 * yet.
+	 *
+	 * @return number of pending attribute sets
+	 */
+	static int getPendingCount() {
+		synchronized (changed) {
+			return changed.size();
+		}
 	}
 
 	/**
@@ -0,0 +1,218 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.MathHelper;
+import marauroa.common.game.IRPZone;
+
+/**
+ * Runs the per turn logic of all zones, optionally in parallel.
+ * <p>
+ * Parallel execution is disabled by default. It is enabled by setting the
+ * <code>stendhal.zone.parallel</code> system property to the number of
+ * worker threads. The zones are then split into ranges, which are processed
+ * by a fork join pool while the game loop thread waits for them.
+ * <p>
+ * During the parallel phase, zone logic may only modify its own zone.
+ * Anything that touches other zones or global state, such as the NPC list,
+ * game event logging or the statistics, has to be passed to
+ * {@link #defer(Runnable)}. Deferred actions are executed on the game loop
+ * thread in a serial commit phase after all zones are done. They are run in
+ * the order of the zones, and in the order they were deferred within a zone,
+ * so the result does not depend on thread scheduling. Outside of the parallel
+ * phase deferred actions are executed immediately.
+ */
+public final class ZoneLogicExecutor {
+	private static final Logger logger = Logger.getLogger(ZoneLogicExecutor.class);
+
+	/** maximum number of zones handled by one task without splitting it */
+	private static final int BATCH_SIZE = 16;
+
+	/** actions deferred by the zone that is processed on the current thread */
+	private static final ThreadLocal<List<Runnable>> deferred = new ThreadLocal<List<Runnable>>();
+
+	private static ZoneLogicExecutor instance;
+
+	/** pool for the zone logic, <code>null</code> for serial execution */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Gets the ZoneLogicExecutor instance.
+	 *
+	 * @return ZoneLogicExecutor
+	 */
+	public static synchronized ZoneLogicExecutor get() {
+		if (instance == null) {
+			instance = new ZoneLogicExecutor(MathHelper.parseIntDefault(
+					System.getProperty("stendhal.zone.parallel"), 0));
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new ZoneLogicExecutor.
+	 *
+	 * @param parallelism number of worker threads. Zones are processed
+	 * 	serially on the calling thread, if this is less than 2
+	 */
+	ZoneLogicExecutor(final int parallelism) {
+		if (parallelism > 1) {
+			logger.info("Executing zone logic with " + parallelism + " threads");
+			pool = new ForkJoinPool(parallelism);
+		} else {
+			pool = null;
+		}
+	}
+
+	/**
+	 * Checks whether zones are processed in parallel.
+	 *
+	 * @return <code>true</code> if parallel execution is enabled
+	 */
+	public boolean isParallel() {
+		return pool != null;
+	}
+
+	/**
+	 * Checks whether the current thread is executing zone logic in the
+	 * parallel phase.
+	 *
+	 * @return <code>true</code> if actions passed to {@link #defer(Runnable)}
+	 * 	are delayed to the commit phase
+	 */
+	public boolean isInParallelPhase() {
+		return deferred.get() != null;
+	}
+
+	/**
+	 * Executes an action that may affect other zones or global state. In the
+	 * parallel phase it is delayed until all zones are done, otherwise it is
+	 * executed immediately.
+	 *
+	 * @param action action to execute
+	 */
+	public void defer(final Runnable action) {
+		final List<Runnable> actions = deferred.get();
+		if (actions == null) {
+			action.run();
+		} else {
+			actions.add(action);
+		}
+	}
+
+	/**
+	 * Executes a task for every zone, followed by the commit phase for the
+	 * actions deferred by the tasks.
+	 *
+	 * @param zones zones to process
+	 * @param task task to execute for each zone
+	 */
+	public void execute(final Iterable<IRPZone> zones, final Consumer<StendhalRPZone> task) {
+		if (pool == null) {
+			for (final IRPZone zone : zones) {
+				task.accept((StendhalRPZone) zone);
+			}
+			return;
+		}
+
+		final List<StendhalRPZone> list = new ArrayList<StendhalRPZone>();
+		for (final IRPZone zone : zones) {
+			list.add((StendhalRPZone) zone);
+		}
+		final List<List<Runnable>> actions = new ArrayList<List<Runnable>>(
+				Collections.<List<Runnable>>nCopies(list.size(), null));
+		pool.invoke(new ZoneTask(list, 0, list.size(), task, actions));
+
+		// commit phase
+		for (int i = 0; i < actions.size(); i++) {
+			final List<Runnable> zoneActions = actions.get(i);
+			if (zoneActions == null) {
+				continue;
+			}
+			for (final Runnable action : zoneActions) {
+				try {
+					action.run();
+				} catch (final RuntimeException e) {
+					logger.error("Error in deferred action of zone " + list.get(i).getName(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Processes a range of zones, splitting it if it is large.
+	 */
+	private final class ZoneTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<StendhalRPZone> zones;
+		private final int from;
+		private final int to;
+		private final Consumer<StendhalRPZone> task;
+		private final List<List<Runnable>> actions;
+
+		/**
+		 * Creates a new ZoneTask.
+		 *
+		 * @param zones all zones
+		 * @param from index of the first zone to process
+		 * @param to index after the last zone to process
+		 * @param task task to execute for each zone
+		 * @param actions collected deferred actions for each zone
+		 */
+		ZoneTask(final List<StendhalRPZone> zones, final int from, final int to,
+				final Consumer<StendhalRPZone> task, final List<List<Runnable>> actions) {
+			this.zones = zones;
+			this.from = from;
+			this.to = to;
+			this.task = task;
+			this.actions = actions;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BATCH_SIZE) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new ZoneTask(zones, from, middle, task, actions),
+						new ZoneTask(zones, middle, to, task, actions));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				final StendhalRPZone zone = zones.get(i);
+				final List<Runnable> zoneActions = new ArrayList<Runnable>();
+				deferred.set(zoneActions);
+				try {
+					task.accept(zone);
+				} catch (final RuntimeException e) {
+					logger.error("Error in logic of zone " + zone.getName(), e);
+				} finally {
+					deferred.remove();
+				}
+				if (!zoneActions.isEmpty()) {
+					// each task sets only its own indices of the
+					// preallocated list
+					actions.set(i, zoneActions);
+				}
+			}
+		}
+	}
+}
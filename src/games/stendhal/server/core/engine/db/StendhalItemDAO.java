@@ -40,6 +40,9 @@ public class StendhalItemDAO {
 	public static final String ATTR_ITEM_LOGID = "logid";
 	private static final Logger logger = Logger.getLogger(StendhalItemDAO.class);
 
+	/** statement collecting itemlog rows while a batch is open on the current thread */
+	private final ThreadLocal<PreparedStatement> itemLogBatch = new ThreadLocal<PreparedStatement>();
+
 	/**
 	 * Assigns the next logid to the specified item in case it does not already have one.
 	 *
@@ -115,6 +118,21 @@ public class StendhalItemDAO {
 		if (player != null) {
 			playerName = player.getName();
 		}
+
+		final PreparedStatement batch = itemLogBatch.get();
+		if (batch != null) {
+			batch.setInt(1, itemid);
+			batch.setString(2, trimToEmpty(playerName));
+			batch.setString(3, trimToEmpty(event));
+			batch.setString(4, trimToEmpty(param1));
+			batch.setString(5, trimToEmpty(param2));
+			batch.setString(6, trimToEmpty(param3));
+			batch.setString(7, trimToEmpty(param4));
+			batch.setTimestamp(8, timestamp);
+			batch.addBatch();
+			return;
+		}
+
 		final String query = "INSERT INTO itemlog (itemid, source, event, "
 			+ "param1, param2, param3, param4, timedate) VALUES ("
 			+ "[itemid], '[source]', '[event]', '[param1]', '[param2]', '[param3]', '[param4]', '[timedate]');";
@@ -132,6 +150,68 @@ public class StendhalItemDAO {
 		transaction.execute(query, params);
 	}
 
+	/**
+	 * trims a value to the column size of the itemlog table, like the
+	 * parameter substitution of DBTransaction does with <code>null</code>
+	 * converted to an empty string.
+	 *
+	 * @param value value
+	 * @return trimmed value
+	 */
+	private static String trimToEmpty(final String value) {
+		if (value == null) {
+			return "";
+		}
+		return StringUtils.trimTo(value, 64);
+	}
+
+	/**
+	 * Starts collecting the itemlog entries written by the current thread,
+	 * so that they are sent to the database together in
+	 * {@link #itemLogExecuteBatch()}. Assigning item ids is not affected.
+	 *
+	 * @param transaction database transaction
+	 * @throws SQLException in case of a database error
+	 */
+	public void itemLogBeginBatch(final DBTransaction transaction) throws SQLException {
+		itemLogBatch.set(transaction.prepareStatement("INSERT INTO itemlog (itemid, source, event, "
+				+ "param1, param2, param3, param4, timedate) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", null));
+	}
+
+	/**
+	 * Writes the collected itemlog entries and ends the batch.
+	 *
+	 * @throws SQLException in case of a database error
+	 */
+	public void itemLogExecuteBatch() throws SQLException {
+		final PreparedStatement batch = itemLogBatch.get();
+		itemLogBatch.remove();
+		if (batch == null) {
+			return;
+		}
+		try {
+			batch.executeBatch();
+		} finally {
+			batch.close();
+		}
+	}
+
+	/**
+	 * Drops the collected itemlog entries after an error.
+	 */
+	public void itemLogAbortBatch() {
+		final PreparedStatement batch = itemLogBatch.get();
+		itemLogBatch.remove();
+		if (batch == null) {
+			return;
+		}
+		try {
+			batch.close();
+		} catch (final SQLException e) {
+			logger.warn("Cannot close itemlog batch: " + e);
+		}
+	}
+
 	/**
 	 * gets an optional attribute .
 	 *
@@ -0,0 +1,72 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * logs a number of item events in one transaction, sending the itemlog
+ * entries to the database as a single batch.
+ */
+public class LogItemEventBatchCommand extends AbstractDBCommand {
+	private final List<AbstractLogItemEventCommand> commands;
+
+	/**
+	 * creates a batch of item log commands
+	 *
+	 * @param commands item log commands, with their enqueue time already set
+	 */
+	public LogItemEventBatchCommand(final List<AbstractLogItemEventCommand> commands) {
+		this.commands = commands;
+	}
+
+	@Override
+	public void execute(final DBTransaction transaction) throws SQLException {
+		final StendhalItemDAO stendhalItemDAO = DAORegister.get().get(StendhalItemDAO.class);
+		stendhalItemDAO.itemLogBeginBatch(transaction);
+		try {
+			for (final AbstractLogItemEventCommand command : commands) {
+				command.log(transaction);
+			}
+			stendhalItemDAO.itemLogExecuteBatch();
+		} finally {
+			stendhalItemDAO.itemLogAbortBatch();
+		}
+	}
+
+	/**
+	 * gets the number of item events in this batch
+	 *
+	 * @return number of item events
+	 */
+	public int size() {
+		return commands.size();
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("size", commands.size()).toString();
+	}
+}
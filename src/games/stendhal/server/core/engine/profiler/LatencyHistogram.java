@@ -0,0 +1,166 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations with logarithmic buckets, similar to an
+ * HdrHistogram. Every power of two is split into {@link #HALF} linear
+ * buckets, so that recorded values are kept with an error of less than
+ * about 6 percent, using a small fixed amount of memory.
+ * <p>
+ * Values are microseconds. A histogram must only be written by one thread
+ * at a time.
+ */
+public final class LatencyHistogram {
+	/** number of bits used for the linear buckets */
+	private static final int SUB_BITS = 5;
+	/** values below this are counted exactly */
+	private static final int SUB = 1 << SUB_BITS;
+	/** number of buckets for each following power of two */
+	private static final int HALF = SUB / 2;
+	/** highest value that can be recorded, larger values are capped */
+	private static final long MAX_VALUE = (1L << 32) - 1;
+
+	private final long[] counts = new long[indexOf(MAX_VALUE) + 1];
+	private long totalCount;
+	private long sum;
+	private long max;
+
+	/**
+	 * Gets the bucket of a value.
+	 *
+	 * @param value value
+	 * @return bucket index
+	 */
+	static int indexOf(final long value) {
+		if (value < SUB) {
+			return (int) value;
+		}
+		// shift the value so that it is in [HALF, SUB)
+		final int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BITS - 1);
+		return SUB + (shift - 1) * HALF + (int) ((value >> shift) - HALF);
+	}
+
+	/**
+	 * Gets the smallest value of a bucket.
+	 *
+	 * @param index bucket index
+	 * @return smallest value counted in the bucket
+	 */
+	static long lowestValueOf(final int index) {
+		if (index < SUB) {
+			return index;
+		}
+		final int shift = (index - SUB) / HALF + 1;
+		final long sub = (index - SUB) % HALF + HALF;
+		return sub << shift;
+	}
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value value in microseconds
+	 */
+	public void record(final long value) {
+		final long v = Math.max(0, Math.min(value, MAX_VALUE));
+		counts[indexOf(v)]++;
+		totalCount++;
+		sum += v;
+		if (v > max) {
+			max = v;
+		}
+	}
+
+	/**
+	 * Records a duration measured with <code>System.nanoTime()</code>.
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	public void recordNanos(final long nanos) {
+		record(nanos / 1000);
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return number of values
+	 */
+	public long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Gets the sum of the recorded values.
+	 *
+	 * @return sum in microseconds
+	 */
+	public long getSum() {
+		return sum;
+	}
+
+	/**
+	 * Gets the largest recorded value.
+	 *
+	 * @return maximum in microseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the mean of the recorded values.
+	 *
+	 * @return mean in microseconds
+	 */
+	public double getMean() {
+		if (totalCount == 0) {
+			return 0;
+		}
+		return (double) sum / totalCount;
+	}
+
+	/**
+	 * Gets the value below which the given percentage of the recorded
+	 * values are.
+	 *
+	 * @param percentile percentile in [0, 100]
+	 * @return highest value of the bucket containing the percentile, in
+	 * 	microseconds
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		final double p = Math.max(0, Math.min(percentile, 100));
+		final long rank = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(lowestValueOf(i + 1) - 1, max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		sum = 0;
+		max = 0;
+	}
+}
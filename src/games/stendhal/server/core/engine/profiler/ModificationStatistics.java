@@ -0,0 +1,68 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many calls of <code>Entity.notifyWorldAboutChanges()</code>
+ * passed the entity on to the perception, and how many were skipped because
+ * the entity had not changed since the previous notification.
+ */
+public final class ModificationStatistics {
+	private static final LongAdder modified = new LongAdder();
+	private static final LongAdder suppressed = new LongAdder();
+
+	private ModificationStatistics() {
+		// static methods only
+	}
+
+	/**
+	 * Records a notification that modified the zone.
+	 */
+	public static void recordModified() {
+		modified.increment();
+	}
+
+	/**
+	 * Records a notification that was skipped because nothing changed.
+	 */
+	public static void recordSuppressed() {
+		suppressed.increment();
+	}
+
+	/**
+	 * Gets the number of notifications that modified the zone.
+	 *
+	 * @return number of modifications
+	 */
+	public static long getModified() {
+		return modified.sum();
+	}
+
+	/**
+	 * Gets the number of notifications that were skipped.
+	 *
+	 * @return number of suppressed modifications
+	 */
+	public static long getSuppressed() {
+		return suppressed.sum();
+	}
+
+	/**
+	 * Resets the counters.
+	 */
+	public static void reset() {
+		modified.reset();
+		suppressed.reset();
+	}
+}
@@ -0,0 +1,306 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.parser.ConversationParser;
+import games.stendhal.common.parser.SentenceCache;
+import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+
+/**
+ * Measures how long the phases of a turn, the logic of each zone, and the
+ * turn listeners take.
+ * <p>
+ * The report is available to admins with the <code>/turnprofile</code>
+ * command, and written periodically to the file configured as
+ * <code>turn_profile_file</code> in server.ini (default
+ * <code>log/turnprofile.txt</code>, every <code>turn_profile_interval</code>
+ * seconds). Profiling can be disabled by setting the
+ * <code>stendhal.turnprofiler</code> system property to false.
+ */
+public final class TurnProfiler implements TurnListener {
+	private static final Logger logger = Logger.getLogger(TurnProfiler.class);
+
+	/** phase: handling entities killed in the previous turn */
+	public static final String KILLED_ENTITIES = "killed entities";
+	/** phase: player logic */
+	public static final String PLAYER_LOGIC = "player logic";
+	/** phase: SpeakerNPC pre-logic */
+	public static final String NPC_PRELOGIC = "npc prelogic";
+	/** phase: zone pre-logic */
+	public static final String ZONE_PRELOGIC = "zone prelogic";
+	/** phase: TurnNotifier */
+	public static final String TURN_NOTIFIER = "turn notifier";
+	/** phase: zone logic */
+	public static final String ZONE_LOGIC = "zone logic";
+	/** phase: all of beginTurn */
+	public static final String BEGIN_TURN = "begin turn";
+	/** phase: all of endTurn */
+	public static final String END_TURN = "end turn";
+
+	/** number of zones and listeners in the report */
+	private static final int TOP = 10;
+
+	private static TurnProfiler instance;
+
+	private final boolean enabled;
+	private final Map<String, LatencyHistogram> phases = new LinkedHashMap<String, LatencyHistogram>();
+	private final Map<String, LatencyHistogram> zones = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final Map<String, LatencyHistogram> listeners = new ConcurrentHashMap<String, LatencyHistogram>();
+	/** turns where beginTurn and endTurn together took longer than a turn */
+	private long overruns;
+	/** start of the current beginTurn */
+	private long turnStart;
+	private Date since = new Date();
+
+	private File reportFile;
+	private int reportInterval;
+
+	/**
+	 * Gets the TurnProfiler instance.
+	 *
+	 * @return TurnProfiler
+	 */
+	public static synchronized TurnProfiler get() {
+		if (instance == null) {
+			instance = new TurnProfiler(Boolean.parseBoolean(
+					System.getProperty("stendhal.turnprofiler", "true")));
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new TurnProfiler.
+	 *
+	 * @param enabled <code>true</code> if durations should be measured
+	 */
+	TurnProfiler(final boolean enabled) {
+		this.enabled = enabled;
+		for (final String phase : new String[] {KILLED_ENTITIES, PLAYER_LOGIC,
+				NPC_PRELOGIC, ZONE_PRELOGIC, TURN_NOTIFIER, ZONE_LOGIC,
+				BEGIN_TURN, END_TURN}) {
+			phases.put(phase, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * Starts measuring.
+	 *
+	 * @return start time to pass to one of the record methods
+	 */
+	public long start() {
+		if (!enabled) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the duration of a turn phase.
+	 *
+	 * @param phase name of the phase, one of the constants of this class
+	 * @param start value returned by {@link #start()}
+	 */
+	public void recordPhase(final String phase, final long start) {
+		if (!enabled) {
+			return;
+		}
+		final long now = System.nanoTime();
+		phases.get(phase).recordNanos(now - start);
+		if (BEGIN_TURN.equals(phase)) {
+			turnStart = start;
+		} else if (END_TURN.equals(phase) && (turnStart != 0)) {
+			if (now - turnStart > StendhalRPWorld.MILLISECONDS_PER_TURN * 1000000L) {
+				overruns++;
+			}
+			turnStart = 0;
+		}
+	}
+
+	/**
+	 * Records the duration of the pre-logic or logic of a zone. Can be called
+	 * from parallel zone logic.
+	 *
+	 * @param zone zone
+	 * @param start value returned by {@link #start()}
+	 */
+	public void recordZone(final StendhalRPZone zone, final long start) {
+		if (!enabled) {
+			return;
+		}
+		final long duration = System.nanoTime() - start;
+		zones.computeIfAbsent(zone.getName(), name -> new LatencyHistogram()).recordNanos(duration);
+	}
+
+	/**
+	 * Records the duration of a turn listener.
+	 *
+	 * @param listener listener
+	 * @param start value returned by {@link #start()}
+	 */
+	public void recordListener(final TurnListener listener, final long start) {
+		if (!enabled) {
+			return;
+		}
+		final long duration = System.nanoTime() - start;
+		listeners.computeIfAbsent(listener.getClass().getName(), name -> new LatencyHistogram()).recordNanos(duration);
+	}
+
+	/**
+	 * Gets the histogram of a phase.
+	 *
+	 * @param phase name of the phase
+	 * @return histogram, or <code>null</code> if the phase is unknown
+	 */
+	public LatencyHistogram getPhase(final String phase) {
+		return phases.get(phase);
+	}
+
+	/**
+	 * Gets the number of turns that took longer than the turn duration.
+	 *
+	 * @return number of overruns
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * Forgets all measurements.
+	 */
+	public void reset() {
+		for (final LatencyHistogram histogram : phases.values()) {
+			histogram.reset();
+		}
+		zones.clear();
+		listeners.clear();
+		overruns = 0;
+		ModificationStatistics.reset();
+		since = new Date();
+	}
+
+	/**
+	 * Creates a report of the measurements.
+	 *
+	 * @return report text
+	 */
+	public String getReport() {
+		final StringBuilder sb = new StringBuilder();
+		final LatencyHistogram end = phases.get(END_TURN);
+		sb.append("Turn profile since " + since + ": " + end.getCount() + " turns, "
+				+ overruns + " longer than " + StendhalRPWorld.MILLISECONDS_PER_TURN + " ms\n");
+		if (!enabled) {
+			sb.append("Profiling is disabled.\n");
+			return sb.toString();
+		}
+		appendHeader(sb, "phase");
+		for (final Map.Entry<String, LatencyHistogram> entry : phases.entrySet()) {
+			appendLine(sb, entry.getKey(), entry.getValue());
+		}
+		appendTop(sb, "zone", zones);
+		appendTop(sb, "turn listener", listeners);
+
+		final SentenceCache sentenceCache = ConversationParser.getSentenceCache();
+		sb.append("\nSentence cache: " + sentenceCache.getHits() + " hits, "
+				+ sentenceCache.getMisses() + " misses\n");
+		sb.append("Entity modifications: " + ModificationStatistics.getModified()
+				+ " sent, " + ModificationStatistics.getSuppressed() + " unchanged\n");
+		return sb.toString();
+	}
+
+	private static void appendHeader(final StringBuilder sb, final String title) {
+		sb.append(String.format(Locale.ENGLISH, "%-40s %9s %9s %8s %8s %8s %8s %8s%n",
+				title, "count", "total ms", "mean ms", "p50", "p99", "p99.9", "max"));
+	}
+
+	private static void appendLine(final StringBuilder sb, final String name, final LatencyHistogram h) {
+		sb.append(String.format(Locale.ENGLISH, "%-40s %9d %9d %8.3f %8.3f %8.3f %8.3f %8.3f%n",
+				name, h.getCount(), h.getSum() / 1000, h.getMean() / 1000,
+				h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(99) / 1000.0,
+				h.getValueAtPercentile(99.9) / 1000.0, h.getMax() / 1000.0));
+	}
+
+	/**
+	 * Appends the entries that took the most time in total.
+	 *
+	 * @param sb report
+	 * @param title title of the entries
+	 * @param histograms histograms by name
+	 */
+	private static void appendTop(final StringBuilder sb, final String title,
+			final Map<String, LatencyHistogram> histograms) {
+		final List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<Map.Entry<String, LatencyHistogram>>(histograms.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue().getSum(), a.getValue().getSum()));
+		sb.append('\n');
+		appendHeader(sb, title);
+		for (int i = 0; i < Math.min(TOP, entries.size()); i++) {
+			appendLine(sb, entries.get(i).getKey(), entries.get(i).getValue());
+		}
+	}
+
+	/**
+	 * Starts writing the report to the configured file periodically.
+	 */
+	public void scheduleReports() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			final Configuration config = Configuration.getConfiguration();
+			final String fileName = config.get("turn_profile_file", "log/turnprofile.txt");
+			reportInterval = config.getInt("turn_profile_interval", 5 * 60);
+			if ((fileName == null) || fileName.trim().isEmpty() || (reportInterval <= 0)) {
+				return;
+			}
+			reportFile = new File(fileName);
+			TurnNotifier.get().notifyInSeconds(reportInterval, this);
+		} catch (final IOException e) {
+			logger.error(e, e);
+		}
+	}
+
+	@Override
+	public void onTurnReached(final int currentTurn) {
+		writeReport(reportFile);
+		TurnNotifier.get().notifyInSeconds(reportInterval, this);
+	}
+
+	/**
+	 * Writes the report to a file.
+	 *
+	 * @param file file to write to
+	 */
+	void writeReport(final File file) {
+		try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			out.print(getReport());
+		} catch (final IOException e) {
+			logger.warn("Cannot write turn profile to " + file + ": " + e);
+		}
+	}
+}
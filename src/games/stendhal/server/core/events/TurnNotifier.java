@@ -12,21 +12,31 @@
  ***************************************************************************/
 package games.stendhal.server.core.events;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.profiler.TurnProfiler;
+import marauroa.server.game.Statistics;
 
 /**
  * Other classes can register here to be notified at some time in the future.
+ * <p>
+ * The notifications are kept in a hierarchical timing wheel. Each level has
+ * 256 slots; the first level has one slot per turn, and every further level
+ * covers the full range of the level below in each slot. Notifications are
+ * moved down to the lower levels when their turn comes near. Every
+ * notification is also indexed by its listener, so that scheduling,
+ * cancelling and looking up the remaining time do not need to search the
+ * whole register.
  *
  * @author hendrik, daniel
  */
@@ -34,21 +44,64 @@ public final class TurnNotifier {
 
 	private static Logger logger = Logger.getLogger(TurnNotifier.class);
 
+	/** Number of bits of the turn number covered by one wheel level. */
+	private static final int SLOT_BITS = 8;
+	/** Number of slots per wheel level. */
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	/** Number of wheel levels. Four levels cover all int turn differences. */
+	private static final int LEVELS = 4;
+	/** Pseudo level of notifications for turns that were skipped. */
+	private static final int STALE = -1;
+
 	/** The singleton instance. */
 	private static TurnNotifier instance;
 
 	private int currentTurn = -1;
 
+	/** The last turn the wheel was advanced to. */
+	private int wheelTurn = -1;
+
+	/** First notification of each slot, by level. */
+	private final Notification[][] wheel = new Notification[LEVELS][SLOTS];
+
 	/**
-	 * This Map maps each turn to the set of all events that will take place at
-	 * this turn. Turns at which no event should take place needn't be
-	 * registered here.
+	 * Notifications for turns that were never reached, because
+	 * logic() was not called for consecutive turns.
 	 */
-	private final Map<Integer, Set<TurnListener>> register = new HashMap<Integer, Set<TurnListener>>();
+	private Notification stale;
+
+	/** First notification of each listener. */
+	private final Map<TurnListener, Notification> byListener = new HashMap<TurnListener, Notification>();
+
+	/** Number of pending notifications. */
+	private int queueSize;
+
+	/** Number of listeners notified in the last turn. */
+	private int firedInLastTurn;
 
 	/** Used for multi-threading synchronization. * */
 	private final Object sync = new Object();
 
+	/**
+	 * A scheduled notification. It is a member of the list of its slot and of
+	 * the list of its listener.
+	 */
+	private static final class Notification {
+		final TurnListener listener;
+		final int turn;
+		int level;
+		int slot;
+		Notification prev;
+		Notification next;
+		Notification listenerNext;
+
+		Notification(final TurnListener listener, final int turn) {
+			this.listener = listener;
+			this.turn = turn;
+		}
+	}
+
 
 	/**
 	 * Return the TurnNotifier instance.
@@ -83,37 +136,40 @@ public final class TurnNotifier {
 		// for the current turn. So it is important to
 		// adjust currentTurn before the loop.
 
-		this.currentTurn = currentTurn;
-
-		// get and remove the set for this turn
-		Set<TurnListener> set = null;
+		// get and remove the notifications for this turn
+		Notification due;
 		synchronized (sync) {
-			set = register.remove(Integer.valueOf(currentTurn));
+			this.currentTurn = currentTurn;
+			if (currentTurn != wheelTurn + 1) {
+				// turns were skipped or repeated. Place everything
+				// anew relative to the requested turn.
+				reposition(currentTurn);
+			}
+			advance(currentTurn);
+			due = takeDue(currentTurn);
 		}
 
-		if (logger.isDebugEnabled()) {
-			final StringBuilder os = new StringBuilder();
-			os.append("register: " + register.size() + "\n");
-			int setSize;
-			if (set != null) {
-				setSize = set.size();
-			} else {
-				setSize = 0;
+		final TurnProfiler profiler = TurnProfiler.get();
+		int fired = 0;
+		for (Notification notification = due; notification != null; notification = notification.next) {
+			fired++;
+			final long start = profiler.start();
+			try {
+				notification.listener.onTurnReached(currentTurn);
+			} catch (final RuntimeException e) {
+				logger.error("Exception in " + notification.listener, e);
 			}
-			os.append("set: " + setSize + "\n");
-			logger.info(os);
+			profiler.recordListener(notification.listener, start);
 		}
+		firedInLastTurn = fired;
 
-		if (set != null) {
-			for (final TurnListener turnListener : set) {
-
-				try {
-					turnListener.onTurnReached(currentTurn);
-				} catch (final RuntimeException e) {
-					logger.error("Exception in " + turnListener, e);
-				}
-			}
+		if (logger.isDebugEnabled()) {
+			logger.info("register: " + queueSize + "\nset: " + fired + "\n");
 		}
+
+		final Statistics stats = Statistics.getStatistics();
+		stats.set("Turn notifications queued", queueSize);
+		stats.add("Turn notifications fired", fired);
 	}
 
 	/**
@@ -177,15 +233,18 @@ public final class TurnNotifier {
 		}
 
 		synchronized (sync) {
-			// do we have other events for this turn?
-			final Integer turnInt = Integer.valueOf(turn);
-			Set<TurnListener> set = register.get(turnInt);
-			if (set == null) {
-				set = new HashSet<TurnListener>();
-				register.put(turnInt, set);
+			// is the listener already registered for this turn?
+			final Notification first = byListener.get(turnListener);
+			for (Notification other = first; other != null; other = other.listenerNext) {
+				if (other.turn == turn) {
+					return;
+				}
 			}
-			// add it to the list
-			set.add(turnListener);
+			final Notification notification = new Notification(turnListener, turn);
+			notification.listenerNext = first;
+			byListener.put(turnListener, notification);
+			link(notification);
+			queueSize++;
 		}
 	}
 
@@ -198,17 +257,12 @@ public final class TurnNotifier {
 
 	public void dontNotify(final TurnListener turnListener) {
 		// all events that are equal to this one should be forgotten.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			// We don't remove directly, but first store in this
-			// set. This is to avoid ConcurrentModificationExceptions.
-			final Set<TurnListener> toBeRemoved = new HashSet<TurnListener>();
-			if (set.contains(turnListener)) {
-					toBeRemoved.add(turnListener);
-			}
-			for (final TurnListener event : toBeRemoved) {
-				set.remove(event);
+		synchronized (sync) {
+			Notification notification = byListener.remove(turnListener);
+			while (notification != null) {
+				unlink(notification);
+				queueSize--;
+				notification = notification.listenerNext;
 			}
 		}
 	}
@@ -223,24 +277,16 @@ public final class TurnNotifier {
 	 */
 
 	public int getRemainingTurns(final TurnListener turnListener) {
-		// all events match that are equal to this.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		// the HashMap is unsorted, so we need to run through
-		// all of it.
-		final List<Integer> matchingTurns = new ArrayList<Integer>();
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			for (final TurnListener currentEvent : set) {
-				if (currentEvent.equals(turnListener)) {
-					matchingTurns.add(mapEntry.getKey());
-				}
+		synchronized (sync) {
+			final Notification first = byListener.get(turnListener);
+			if (first == null) {
+				return -1;
 			}
-		}
-		if (matchingTurns.size() > 0) {
-			Collections.sort(matchingTurns);
-			return matchingTurns.get(0).intValue() - currentTurn;
-		} else {
-			return -1;
+			int turn = first.turn;
+			for (Notification other = first.listenerNext; other != null; other = other.listenerNext) {
+				turn = Math.min(turn, other.turn);
+			}
+			return turn - currentTurn;
 		}
 	}
 
@@ -258,14 +304,63 @@ public final class TurnNotifier {
 		return (getRemainingTurns(turnListener) * StendhalRPWorld.MILLISECONDS_PER_TURN) / 1000;
 	}
 
+	/**
+	 * Gets the number of pending notifications.
+	 *
+	 * @return queue depth
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Gets the number of listeners that were notified in the last turn.
+	 *
+	 * @return number of notifications fired by the last call of logic()
+	 */
+	public int getFiredInLastTurn() {
+		return firedInLastTurn;
+	}
+
 	/**
 	 * Returns the list of events. Note this is only for debugging the
-	 * TurnNotifier
+	 * TurnNotifier. The map is built from the current notifications each time
+	 * it is accessed. Clearing it removes all notifications.
 	 *
 	 * @return eventList
 	 */
 	public Map<Integer, Set<TurnListener>> getEventListForDebugging() {
-		return register;
+		return new AbstractMap<Integer, Set<TurnListener>>() {
+			@Override
+			public Set<Map.Entry<Integer, Set<TurnListener>>> entrySet() {
+				final Map<Integer, Set<TurnListener>> events = new TreeMap<Integer, Set<TurnListener>>();
+				synchronized (sync) {
+					for (final Notification first : byListener.values()) {
+						for (Notification notification = first; notification != null; notification = notification.listenerNext) {
+							Set<TurnListener> set = events.get(Integer.valueOf(notification.turn));
+							if (set == null) {
+								set = new HashSet<TurnListener>();
+								events.put(Integer.valueOf(notification.turn), set);
+							}
+							set.add(notification.listener);
+						}
+					}
+				}
+				return events.entrySet();
+			}
+
+			@Override
+			public void clear() {
+				synchronized (sync) {
+					for (int level = 0; level < LEVELS; level++) {
+						Arrays.fill(wheel[level], null);
+					}
+					stale = null;
+					byListener.clear();
+					queueSize = 0;
+				}
+			}
+		};
 	}
 
 	/**
@@ -276,4 +371,162 @@ public final class TurnNotifier {
 	public int getCurrentTurnForDebugging() {
 		return currentTurn;
 	}
+
+	/**
+	 * Move the wheel to a turn, and move the notifications of the
+	 * higher levels down when their slot comes up.
+	 *
+	 * @param turn turn to advance to
+	 */
+	private void advance(final int turn) {
+		// Cascade the highest level first, so that notifications moving down
+		// more than one level are caught by the slots cascaded after it
+		for (int level = LEVELS - 1; level > 0; level--) {
+			if ((turn & ((1 << (level * SLOT_BITS)) - 1)) == 0) {
+				final int slot = (turn >>> (level * SLOT_BITS)) & SLOT_MASK;
+				Notification notification = wheel[level][slot];
+				wheel[level][slot] = null;
+				while (notification != null) {
+					final Notification next = notification.next;
+					link(notification);
+					notification = next;
+				}
+			}
+		}
+		wheelTurn = turn;
+	}
+
+	/**
+	 * Remove the notifications of a turn from the wheel and from the
+	 * listener index.
+	 *
+	 * @param turn turn that was reached
+	 * @return the notifications of the turn, chained by <code>next</code>
+	 */
+	private Notification takeDue(final int turn) {
+		final int slot = turn & SLOT_MASK;
+		Notification notification = wheel[0][slot];
+		wheel[0][slot] = null;
+		Notification due = null;
+		while (notification != null) {
+			final Notification next = notification.next;
+			if (notification.turn == turn) {
+				removeFromListener(notification);
+				queueSize--;
+				notification.prev = null;
+				notification.next = due;
+				due = notification;
+			} else {
+				link(notification);
+			}
+			notification = next;
+		}
+		return due;
+	}
+
+	/**
+	 * Put all notifications anew to the wheel, for a wheel that is about to
+	 * be advanced to the given turn.
+	 *
+	 * @param turn next turn to process
+	 */
+	private void reposition(final int turn) {
+		Notification all = stale;
+		stale = null;
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				Notification notification = wheel[level][slot];
+				wheel[level][slot] = null;
+				while (notification != null) {
+					final Notification next = notification.next;
+					notification.next = all;
+					all = notification;
+					notification = next;
+				}
+			}
+		}
+		wheelTurn = turn - 1;
+		while (all != null) {
+			final Notification next = all.next;
+			link(all);
+			all = next;
+		}
+	}
+
+	/**
+	 * Add a notification to the slot matching its distance from the next
+	 * turn to process.
+	 *
+	 * @param notification notification
+	 */
+	private void link(final Notification notification) {
+		final long delta = (long) notification.turn - (wheelTurn + 1L);
+		if (delta < 0) {
+			notification.level = STALE;
+			notification.prev = null;
+			notification.next = stale;
+			if (stale != null) {
+				stale.prev = notification;
+			}
+			stale = notification;
+			return;
+		}
+		int level = 0;
+		while ((level < LEVELS - 1) && (delta >= (1L << ((level + 1) * SLOT_BITS)))) {
+			level++;
+		}
+		final int slot = (notification.turn >>> (level * SLOT_BITS)) & SLOT_MASK;
+		final Notification first = wheel[level][slot];
+		notification.level = level;
+		notification.slot = slot;
+		notification.prev = null;
+		notification.next = first;
+		if (first != null) {
+			first.prev = notification;
+		}
+		wheel[level][slot] = notification;
+	}
+
+	/**
+	 * Remove a notification from its slot.
+	 *
+	 * @param notification notification
+	 */
+	private void unlink(final Notification notification) {
+		if (notification.prev != null) {
+			notification.prev.next = notification.next;
+		} else if (notification.level == STALE) {
+			stale = notification.next;
+		} else {
+			wheel[notification.level][notification.slot] = notification.next;
+		}
+		if (notification.next != null) {
+			notification.next.prev = notification.prev;
+		}
+		notification.prev = null;
+		notification.next = null;
+	}
+
+	/**
+	 * Remove a notification from the list of its listener.
+	 *
+	 * @param notification notification
+	 */
+	private void removeFromListener(final Notification notification) {
+		final Notification first = byListener.get(notification.listener);
+		if (first == notification) {
+			if (notification.listenerNext == null) {
+				byListener.remove(notification.listener);
+			} else {
+				byListener.put(notification.listener, notification.listenerNext);
+			}
+			return;
+		}
+		for (Notification other = first; other != null; other = other.listenerNext) {
+			if (other.listenerNext == notification) {
+				other.listenerNext = notification.listenerNext;
+				return;
+			}
+		}
+	}
 }
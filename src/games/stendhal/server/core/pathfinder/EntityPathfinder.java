@@ -71,12 +71,20 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 	 * <li> have stopped
 	 */
 	private void createEntityCollisionMap() {
-		Point targetPoint = new Point(goalNode.getX(), goalNode.getY());
-		resistanceMap = new ResistanceMap(zone.getWidth(), zone.getHeight());
+		Point targetPoint = new Point(goalX, goalY);
+		// Nodes at the search bounds edge can still be covered by the
+		// entity's full area
+		final int width = Math.min(zone.getWidth() - boundsX, boundsWidth + (int) Math.ceil(entity.getWidth()));
+		final int height = Math.min(zone.getHeight() - boundsY, boundsHeight + (int) Math.ceil(entity.getHeight()));
+		resistanceMap = new ResistanceMap(zone.getWidth(), zone.getHeight(), boundsX, boundsY,
+				Math.max(0, width), Math.max(0, height), getIntTable(Math.max(0, width) * Math.max(0, height)));
 		for (final RPObject obj : zone) {
 			final Entity otherEntity = (Entity) obj;
+			if (!resistanceMap.overlaps(otherEntity.getArea())) {
+				continue;
+			}
 			if (!entity.getID().equals(otherEntity.getID())
-					&& (otherEntity.stopped()|| (otherEntity.squaredDistance(startNode.getX(), startNode.getY()) < COLLISION_DISTANCE_SQUARED))) {
+					&& (otherEntity.stopped()|| (otherEntity.squaredDistance(startX, startY) < COLLISION_DISTANCE_SQUARED))) {
 				final Rectangle2D area = otherEntity.getArea();
 				// Hack: Allow players to move onto portals as destination
 				if ((entity instanceof Player) && (otherEntity instanceof Portal) && area.contains(targetPoint)) {
@@ -89,58 +97,40 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 	}
 
 	@Override
-	public TreeNode createNode(int x, int y) {
-		return new PathTreeNode(x, y);
-	}
-
-	/**
-	 * Pathfinder node
-	 */
-	private class PathTreeNode extends TreeNode {
-		private final double cost;
-
-		protected PathTreeNode(int x, int y) {
-			super(x, y);
-
-			/*
-			 * Modify movement cost by resistance
-			 */
-			if (resistanceMap != null) {
-				int resistance = resistanceMap.getResistance(x, y , entity.getWidth(), entity.getHeight());
-				cost = 100.0 / (100 - resistance);
-			} else {
-				cost = 1.0;
-			}
-		}
-
-		@Override
-		protected double getCost() {
-			return cost;
+	protected double getCost(final int x, final int y) {
+		/*
+		 * Modify movement cost by resistance
+		 */
+		if (resistanceMap != null) {
+			int resistance = resistanceMap.getResistance(x, y, entity.getWidth(), entity.getHeight());
+			return 100.0 / (100 - resistance);
 		}
+		return 1.0;
+	}
 
-		@Override
-		public TreeNode createNode(int x, int y) {
-			return new PathTreeNode(x, y);
+	@Override
+	protected boolean isValid(final int x, final int y) {
+		boolean result = !zone.simpleCollides(entity, x, y, entity.getWidth(), entity.getHeight());
+		if (checkEntities && result) {
+			result = !resistanceMap.collides(x, y, entity.getWidth(), entity.getHeight());
 		}
 
-		@Override
-		protected int createNodeID(int x, int y) {
-			return x + y * zone.getWidth();
-		}
+		return result;
+	}
 
-		@Override
-		public boolean isValid(int x, int y) {
-			boolean result = !zone.simpleCollides(entity, x, y, entity.getWidth(), entity.getHeight());
-			if (checkEntities && result) {
-				result = !resistanceMap.collides(x, y, entity.getWidth(), entity.getHeight());
-			}
+	@Override
+	protected int getMapWidth() {
+		return zone.getWidth();
+	}
 
-			return result;
-		}
+	@Override
+	protected int getMapHeight() {
+		return zone.getHeight();
 	}
 
 	/**
-	 * Resistance data for entities.
+	 * Resistance data for entities. Only the part of the zone that the search
+	 * can reach is stored.
 	 */
 	private static class ResistanceMap {
 		/** Resistance that corresponds to collision */
@@ -148,19 +138,43 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 		/** Minimum resistance that is considered a collision */
 		private static final int COLLIDE_THRESHOLD = 95;
 
+		/** Zone size. */
 		private final int width, height;
-		private final int[][] map;
+		/** Stored part of the zone. */
+		private final int originX, originY, mapWidth, mapHeight;
+		/** Row major resistance values of the stored area. */
+		private final int[] map;
 
 		/**
 		 * Create a new ResistanceMap.
 		 *
-		 * @param width width of the area
-		 * @param height height of the area
+		 * @param width width of the zone
+		 * @param height height of the zone
+		 * @param originX x coordinate of the stored area
+		 * @param originY y coordinate of the stored area
+		 * @param mapWidth width of the stored area
+		 * @param mapHeight height of the stored area
+		 * @param map zeroed table of at least mapWidth * mapHeight entries
 		 */
-		public ResistanceMap(int width, int height) {
+		ResistanceMap(int width, int height, int originX, int originY, int mapWidth, int mapHeight, int[] map) {
 			this.width = width;
 			this.height = height;
-			map = new int[width][height];
+			this.originX = originX;
+			this.originY = originY;
+			this.mapWidth = mapWidth;
+			this.mapHeight = mapHeight;
+			this.map = map;
+		}
+
+		/**
+		 * Check if an area overlaps the stored part of the zone.
+		 *
+		 * @param area checked area
+		 * @return <code>true</code> if the area overlaps
+		 */
+		boolean overlaps(Rectangle2D area) {
+			return (area.getMaxX() > originX) && (area.getX() < originX + mapWidth)
+					&& (area.getMaxY() > originY) && (area.getY() < originY + mapHeight);
 		}
 
 		/**
@@ -189,10 +203,10 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 			double w = area.getWidth();
 			double h = area.getHeight();
 
-			final int startx = (int) Math.max(0, x);
-			final int endx = (int) Math.min(width, x + w);
-			final int starty = (int) Math.max(0, y);
-			final int endy = (int) Math.min(height, y + h);
+			final int startx = (int) Math.max(originX, x);
+			final int endx = (int) Math.min(originX + mapWidth, x + w);
+			final int starty = (int) Math.max(originY, y);
+			final int endy = (int) Math.min(originY + mapHeight, y + h);
 
 			// Fill the area
 			for (int k = startx; k < endx; k++) {
@@ -204,14 +218,15 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 					 * want to give something like corpses some resistance to
 					 * make it harder to wade through a pile of bodies.
 					 */
-					int old = map[k][i];
+					final int index = (i - originY) * mapWidth + (k - originX);
+					int old = map[index];
 					/*
 					 * Add up like probabilities. Several slightly resistant
 					 * entities can still add up to a completely impassable
 					 * barrier, when the resistance grows over
 					 * COLLIDE_THRESHOLD.
 					 */
-					map[k][i] = 100 - ((100 - old) * (100 - resistance)) / 100;
+					map[index] = 100 - ((100 - old) * (100 - resistance)) / 100;
 				}
 			}
 		}
@@ -234,16 +249,16 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 				return COLLISION;
 			}
 
-			final int startx = (int) Math.max(0, x);
-			final int endx = (int) Math.min(width, x + w);
-			final int starty = (int) Math.max(0, y);
-			final int endy = (int) Math.min(height, y + h);
+			final int startx = (int) Math.max(originX, x);
+			final int endx = (int) Math.min(Math.min(width, originX + mapWidth), x + w);
+			final int starty = (int) Math.max(originY, y);
+			final int endy = (int) Math.min(Math.min(height, originY + mapHeight), y + h);
 
 			final int entitySize = (int) (w * h);
 			int resistance = 0;
 			for (int k = startx; k < endx; k++) {
 				for (int i = starty; i < endy; i++) {
-					int r = map[k][i];
+					int r = map[(i - originY) * mapWidth + (k - originX)];
 					if (r > COLLIDE_THRESHOLD) {
 						/*
 						 * A full collision is always collision, regardless of
@@ -14,6 +14,7 @@ package games.stendhal.server.core.pathfinder;
 
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -27,6 +28,12 @@ public abstract class Path {
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(Path.class);
 
+	/**
+	 * Paths longer than this (in manhattan distance) are first planned on the
+	 * abstract zone graph, and then refined in short pieces.
+	 */
+	private static final int LONG_PATH_DISTANCE = 2 * ZoneGraph.CLUSTER_SIZE;
+
 	/**
 	 * Get a reasonable maximum path length to search
 	 *
@@ -64,10 +71,66 @@ public abstract class Path {
 	 * @return a list with the path nodes or an empty list if no path is found
 	 */
 	public static List<Node> searchPath(final Entity entity, final int ex, final int ey) {
+		if ((entity.getZone() != null)
+				&& (Math.abs(ex - entity.getX()) + Math.abs(ey - entity.getY()) > LONG_PATH_DISTANCE)) {
+			final List<Node> path = searchLongPath(entity, ex, ey, defaultMaximumDistance(entity, ex, ey));
+			if (!path.isEmpty()) {
+				return path;
+			}
+		}
 		return searchPath(entity, entity.getX(), entity.getY(), entity.getArea(
 				ex, ey), defaultMaximumDistance(entity, ex, ey));
 	}
 
+	/**
+	 * Finds a long path for the Entity <code>entity</code> using the waypoints
+	 * of the abstract zone graph. Each piece between two waypoints is searched
+	 * separately, so the searched area stays small.
+	 *
+	 * @param entity
+	 *            the Entity
+	 * @param ex
+	 *            destination x
+	 * @param ey
+	 *            destination y
+	 * @param maxLength
+	 *            the maximum length of the whole path
+	 * @return a list with the path nodes or an empty list if no path is found
+	 *            within the maximum length
+	 */
+	private static List<Node> searchLongPath(final Entity entity, final int ex, final int ey,
+			final int maxLength) {
+		final List<Node> result = new LinkedList<Node>();
+		final List<Node> waypoints = ZonePathfinder.get().searchZoneWaypoints(entity.getZone(),
+				entity.getX(), entity.getY(), ex, ey);
+		if (waypoints == null) {
+			return result;
+		}
+
+		result.add(waypoints.get(0));
+		for (final Node waypoint : waypoints.subList(1, waypoints.size())) {
+			// continue from where the previous piece ended
+			final Node last = result.get(result.size() - 1);
+			// the steps taken so far count against the total length
+			final int remaining = maxLength - (result.size() - 1);
+			final List<Node> piece = searchPath(entity, last.getX(), last.getY(),
+					entity.getArea(waypoint.getX(), waypoint.getY()), remaining);
+			if (piece.isEmpty()) {
+				// blocked by other entities, the entity is too large for
+				// the abstract route, or the path would be too long
+				result.clear();
+				return result;
+			}
+			result.addAll(piece.subList(1, piece.size()));
+			if (result.size() - 1 > maxLength) {
+				result.clear();
+				return result;
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Finds a path for the Entity <code>entity</code>.
 	 *
@@ -25,16 +25,17 @@ package games.stendhal.server.core.pathfinder;
 
 
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Stack;
 
 /**
- * Implements the A* algorithm. Pathing can be done on any class that implements
- * the <code>Navigable</code> interface. See org.generation5.ai.Navigable.
+ * Implements the A* algorithm. Subclasses define which positions are
+ * walkable, and the cost of moving to them.
+ * <p>
+ * The search only covers the bounding box of the positions that can be
+ * reached within the maximum distance. Node data is kept in int indexed
+ * tables of a {@link PathfinderWorkspace} that is reused between searches,
+ * so a search does not allocate per node objects.
  *
  * @author James Matthews
  *
@@ -74,38 +75,13 @@ public abstract class Pathfinder {
 	 * @see #IN_PROGRESS
 	 */
 	private int pathStatus = IN_PROGRESS;
-	/**
-	 * The open list.
-	 */
-	private final PriorityQueue<TreeNode> openList = new PriorityQueue<TreeNode>(16,
-			new Comparator<TreeNode>() {
-		@Override
-		public int compare(final TreeNode o1, final TreeNode o2) {
-			return (int) Math.signum(o1.weight - o2.weight);
-		}
-	});
-
-	private final HashMap<Integer, TreeNode> nodeRegistry = new HashMap<Integer, TreeNode>();
-
-	/**
-	 * The goal node.
-	 */
-	protected TreeNode goalNode;
-
-	/**
-	 * The start node.
-	 */
-	protected TreeNode startNode;
 
-	/**
-	 * The current best node. The best node is taken from the open list after
-	 * every iteration of <code>doStep</code>.
-	 */
-	private TreeNode bestNode;
+	/** Node tables of the current search. */
+	private PathfinderWorkspace workspace;
 
 	/**
-	 * The maximum distance for the path. It is compared with the f value of the
-	 * node. The minimum for working pathfinding is
+	 * The maximum distance for the path. It is compared with the g value of
+	 * the node. The minimum for working pathfinding is
 	 * heuristicFromStartNode + 1
 	 */
 	private double maxDistance;
@@ -115,46 +91,71 @@ public abstract class Pathfinder {
 	 */
 	private final Rectangle2D goalArea;
 
-	/** Initialization data */
-	private final int startX, startY;
-	/** Initialization data */
-	private final Rectangle2D destination;
+	/** Start position. */
+	protected final int startX, startY;
+	/** Goal position used for the heuristic. */
+	protected int goalX, goalY;
 	/** Initialization data */
 	private final double initMaxDist;
 
+	/** Bounding box of the positions the search can reach. */
+	protected int boundsX, boundsY, boundsWidth, boundsHeight;
+
 	protected Pathfinder(final int startX, final int startY, final Rectangle2D destination, final double maxDist) {
 		this.goalArea = destination;
 
 		// Setup the initialization data needed for node creation
 		this.startX = startX;
 		this.startY = startY;
-		this.destination = destination;
 		this.initMaxDist = maxDist;
 
-		openList.clear();
-		nodeRegistry.clear();
-
-		bestNode = null;
 		pathStatus = IN_PROGRESS;
 	}
 
 	/**
-	 * Initialization that can not be done safely in the constructor.
+	 * Initialization that can not be done safely in the constructor. Called
+	 * after the search bounds have been determined.
 	 */
 	protected void init() {
-		/*
-		 * createNode is defined in child classes, so it may require
-		 * work in the child's constructor.
-		 */
-		startNode = createNode(startX, startY);
-		goalNode = createNode((int) (destination.getCenterX()),
-				(int) (destination.getCenterY()));
-		openList.offer(startNode);
-		nodeRegistry.put(startNode.nodeNumber, startNode);
+		// sub classes can implement this method
+	}
+
+	/**
+	 * Determine the goal position, the maximum distance and the search
+	 * bounds.
+	 */
+	private void initSearchArea() {
+		goalX = (int) goalArea.getCenterX();
+		goalY = (int) goalArea.getCenterY();
 
 		// calculate shortest distance and allow a variance of X percent
-		final double startF = 1.1 * startNode.getHeuristic(goalNode) + 1;
+		final double startF = 1.1 * getHeuristic(startX, startY) + 1;
 		this.maxDistance = Math.max(initMaxDist, startF);
+
+		/*
+		 * Every step costs at least 1, so nodes are created only up to
+		 * maxDistance + 1 steps from the start.
+		 */
+		final int reach = (int) Math.min(Math.ceil(maxDistance) + 1, Integer.MAX_VALUE / 4);
+		final int x1 = Math.max(0, startX - reach);
+		final int y1 = Math.max(0, startY - reach);
+		final int x2 = Math.min(getMapWidth(), startX + reach + 1);
+		final int y2 = Math.min(getMapHeight(), startY + reach + 1);
+		boundsX = x1;
+		boundsY = y1;
+		boundsWidth = Math.max(0, x2 - x1);
+		boundsHeight = Math.max(0, y2 - y1);
+	}
+
+	/**
+	 * Get a zeroed int table from the workspace of the running search. The
+	 * table is valid until the search ends.
+	 *
+	 * @param size minimum size of the table
+	 * @return table
+	 */
+	protected int[] getIntTable(final int size) {
+		return workspace.getResistanceTable(size);
 	}
 
 	/**
@@ -168,72 +169,67 @@ public abstract class Pathfinder {
 	}
 
 	public final List<Node> getPath() {
-		init();
+		initSearchArea();
+		workspace = PathfinderWorkspace.acquire(boundsWidth * boundsHeight);
+		try {
+			init();
+			return search();
+		} finally {
+			workspace.release();
+			workspace = null;
+		}
+	}
+
+	/**
+	 * Run the search.
+	 *
+	 * @return found path, or an empty list
+	 */
+	private List<Node> search() {
 		final List<Node> list = new LinkedList<Node>();
 
-		if (unreachableGoal()) {
+		if (unreachableGoal() || !inBounds(startX, startY)) {
+			pathStatus = PATH_NOT_FOUND;
 			return list;
 		}
 
+		final int start = nodeIndex(startX, startY);
+		workspace.visit(start, getCost(startX, startY));
+		workspace.update(start, -1, 0.0, getHeuristic(startX, startY));
+		workspace.open(start);
+
+		int bestNode = -1;
 		while (pathStatus == Pathfinder.IN_PROGRESS) {
-			doStep();
+			bestNode = workspace.poll();
+			if (bestNode < 0) {
+				pathStatus = PATH_NOT_FOUND;
+			} else if (reachedGoal(bestNode)) {
+				pathStatus = PATH_FOUND;
+			} else {
+				createChildren(bestNode);
+			}
 		}
 
 		if (pathStatus == Pathfinder.PATH_FOUND) {
-			TreeNode node = bestNode;
-			while (node != null) {
-				list.add(0, new Node(node.getX(), node.getY()));
-				node = node.getParent();
+			int node = bestNode;
+			while (node >= 0) {
+				list.add(0, new Node(nodeX(node), nodeY(node)));
+				node = workspace.getParent(node);
 			}
 		}
-		/* */
 
 		return list;
 	}
 
-	/**
-	 * Iterate the pathfinder through one step.
-	 */
-	private void doStep() {
-		bestNode = getBest();
-		if (bestNode == null) {
-			pathStatus = PATH_NOT_FOUND;
-			return;
-		}
-
-		if (reachedGoal(bestNode)) {
-			pathStatus = PATH_FOUND;
-			return;
-		}
-
-		bestNode.createChildren();
-	}
-
-	/**
-	 * Assigns the best node from the open list.
-	 *
-	 * @return the best node.
-	 */
-	private TreeNode getBest() {
-		if (openList.isEmpty()) {
-			return null;
-		}
-
-		final TreeNode first = openList.poll();
-		first.setOpen(false);
-
-		return first;
-	}
-
 	/**
 	 * Checks if the goal is reached.
 	 *
-	 * @param nodeBest
+	 * @param node
 	 *            the currently best node
 	 * @return true if the goal is reached
 	 */
-	private boolean reachedGoal(final TreeNode nodeBest) {
-		return goalArea.contains(nodeBest.getX(), nodeBest.getY());
+	private boolean reachedGoal(final int node) {
+		return goalArea.contains(nodeX(node), nodeY(node));
 	}
 
 	/**
@@ -251,7 +247,7 @@ public abstract class Pathfinder {
 		for (int i = 0; i <= w; i++) {
 			for (int j = 0; j <= h; j++) {
 				if ((i == 0) || (j == 0) || (i == w) || (j == h)) {
-					if (createNode(x + i, y + j).isValid()) {
+					if (isValid(x + i, y + j)) {
 						return false;
 					}
 				}
@@ -262,15 +258,38 @@ public abstract class Pathfinder {
 	}
 
 	/**
-	 * Create a new TreeNode
+	 * Checks if the entity could stand on the given by the coordinates.
+	 *
+	 * @param x coordinate of the position to be checked
+	 * @param y coordinate of the position to be checked
+	 * @return true if the the entity could stand on the position
+	 */
+	protected abstract boolean isValid(int x, int y);
+
+	/**
+	 * The cost of moving to a position.
+	 *
+	 * @param x x coordinate of the position
+	 * @param y y coordinate of the position
+	 * @return movement cost
+	 */
+	protected double getCost(final int x, final int y) {
+		return 1.0;
+	}
+
+	/**
+	 * Get the width of the searched map.
 	 *
-	 * @param x x coordinate of the node
-	 * @param y y coordinate of the node
-	 * @return TreeNode
+	 * @return map width
 	 */
-	// A workaround for java lacking proper generics
-	public abstract TreeNode createNode(final int x, final int y);
+	protected abstract int getMapWidth();
 
+	/**
+	 * Get the height of the searched map.
+	 *
+	 * @return map height
+	 */
+	protected abstract int getMapHeight();
 
 	/**
 	 * Calculates the manhattan distance between to positions.
@@ -306,334 +325,114 @@ public abstract class Pathfinder {
 		return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
 	}
 
-
 	/**
-	 * The pathfinder node.
+	 * Calculates the heuristic for the move from a position to the goal. <p> The right
+	 * heuristic is very important for A* - a over estimated heuristic will
+	 * turn A* in to bsf - a under estimated heuristic will turn A* in to
+	 * Dijkstra's so the manhattan distance seams to be the optimal
+	 * heuristic here. But it has one disadvantage. It will expand to much.
+	 * Several nodes will have the same f value It will search the area of
+	 * the size (abs(startX - goalX) + 1) * (abs(startY - goalY) + 1) So a
+	 * tie-breaker is needed. 1% square distace seems to work fine. A* will
+	 * prefer nodes closer to the goal.
+	 *
+	 * @param x x coordinate of the position
+	 * @param y y coordinate of the position
+	 * @return heuristic value for move
 	 */
-	protected abstract class TreeNode {
-
-		/**
-		 * The f-value.
-		 */
-		private double weight;
-
-		/**
-		 * The g-value.
-		 */
-		private double g;
-
-		/**
-		 * The x-position of the node.
-		 */
-		private final int x;
-
-		/**
-		 * The y-position of the node.
-		 */
-		private final int y;
-
-		/**
-		 * The number of children the node has.
-		 */
-		private int numChildren;
-
-		/**
-		 * The node identifier.
-		 */
-		private final Integer nodeNumber;
-
-		/**
-		 * The parent of the node.
-		 */
-		private TreeNode parent;
-
-		private final TreeNode[] children = new TreeNode[4];
+	private double getHeuristic(final int x, final int y) {
+		final double heuristic = manhattanDistance(x, y, goalX, goalY);
+		final double tieBreaking = 0.01 * squareDistance(x, y, goalX, goalY);
 
-		private boolean open = true;
-
-		/**
-		 * The default constructor with positional information.
-		 *
-		 * @param x
-		 *            the x-position of the node.
-		 * @param y
-		 *            the y-position of the node.
-		 */
-		protected TreeNode(final int x, final int y) {
-			this.x = x;
-			this.y = y;
-
-			this.nodeNumber = createNodeID(x, y);
-
-			init();
-		}
-
-		/**
-		 * Resets the node. This involves all f, g and h-values to 0 as well as
-		 * removing all children.
-		 */
-		private void init() {
-			this.weight = 0.0;
-			this.g = 0.0;
-			this.numChildren = 0;
-			for (int i = 0; i < 4; i++) {
-				this.children[i] = null;
-			}
-
-			this.open = true;
-		}
-
-		/**
-		 * Add a child to the node.
-		 *
-		 * @param child
-		 *            the child node.
-		 */
-		private void addChild(final TreeNode child) {
-			this.children[numChildren++] = child;
-
-			updateChild(child);
-		}
-
-		/**
-		 * Add a child to the node.
-		 *
-		 * @param child
-		 *            the child node.
-		 */
-		private void updateChild(final TreeNode child) {
-			child.parent = this;
-			child.g = this.g + child.getCost();
-
-			child.weight = calculateChildWeight(child);
-		}
-
-		/**
-		 * Calculate node weight for a child node.
-		 *
-		 * @param child the child to be calculated
-		 * @return weight for the child node
-		 */
-		private double calculateChildWeight(final TreeNode child) {
-			double childweight = child.g + child.getHeuristic(goalNode);
-
-			// Prefer nodes that do not result in direction change
-			if (parent != null) {
-				final int incx = parent.x - x;
-				final int incy = parent.y - y;
-
-				final int incx2 = x - child.x;
-				final int incy2 = y - child.y;
-
-				if ((incx == incx2) && (incy == incy2)) {
-					childweight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
-				}
-			}
-
-			return childweight;
-		}
-
-		/**
-		 * Return the x-position of the node.
-		 *
-		 * @return the x-position of the node.
-		 */
-		public int getX() {
-			return x;
-		}
-
-		/**
-		 * Return the y-position of the node.
-		 *
-		 * @return the y-position of the node.
-		 */
-		public int getY() {
-			return y;
-		}
-
-		/**
-		 * Return the parent node.
-		 *
-		 * @return the parent node.
-		 */
-		public TreeNode getParent() {
-			return parent;
-		}
-
-		/**
-		 * The cost of moving to this node.
-		 *
-		 * @return movement cost
-		 */
-		protected double getCost() {
-			return 1.0;
-		}
-
-		/**
-		 * Calculates the heuristic for the move form node1 to node2. <p> The right
-		 * heuristic is very important for A* - a over estimated heuristic will
-		 * turn A* in to bsf - a under estimated heuristic will turn A* in to
-		 * Dijkstra's so the manhattan distance seams to be the optimal
-		 * heuristic here. But it has one disadvantage. It will expand to much.
-		 * Several nodes will have the same f value It will search the area of
-		 * the size (abs(startX - goalX) + 1) * (abs(startY - goalY) + 1) So a
-		 * tie-breaker is needed. 1% square distace seems to work fine. A* will
-		 * prefer nodes closer to the goal.
-		 * @param nodeGoal
-		 * @return heuristic value for move
-		 */
-		public double getHeuristic(final TreeNode nodeGoal) {
-			final double heuristic = manhattanDistance(x, y, nodeGoal.x, nodeGoal.y);
-			final double tieBreaking = 0.01 * squareDistance(x, y, nodeGoal.x,
-					nodeGoal.y);
-
-			return heuristic + tieBreaking;
-		}
+		return heuristic + tieBreaking;
+	}
 
-		/**
-		 * Checks if the entity could stand on the position of this node.
-		 *
-		 * @return true if the the entity could stand on the position
-		 */
-		public boolean isValid() {
-			return isValid(x, y);
+	/**
+	 * Creates valid child nodes.
+	 * <p>
+	 * The child nodes have to be
+	 * <ul>
+	 * <li> a valid position
+	 * <li> a f value less than maxDistance (checked against the given node)
+	 * </ul>
+	 *
+	 * @param node parent node
+	 */
+	private void createChildren(final int node) {
+		if (workspace.getG(node) < maxDistance) {
+			final int x = nodeX(node);
+			final int y = nodeY(node);
+			linkChild(node, x, y, x - 1, y + 0);
+			linkChild(node, x, y, x + 1, y + 0);
+			linkChild(node, x, y, x + 0, y - 1);
+			linkChild(node, x, y, x + 0, y + 1);
 		}
+	}
 
-		/**
-		 * Checks if the entity could stand on the given by the coordinates.
-		 * @param x coordinate of the position to be checked
-		 * @param y coordinate of the position to be checked
-		 *
-		 * @return true if the the entity could stand on the position
-		 */
-		public abstract boolean isValid(int x, int y);
-
-		/**
-		 * Create a new <code>TreeNode</code>.
-		 *
-		 * @param x x coordinate of the created node
-		 * @param y y coordinate of the created node
-		 * @return a <code>TreeNode</code>
-		 */
-		// A workaround for java lacking proper generics
-		public abstract TreeNode createNode(int x, int y);
-
-		/**
-		 * Creates valid child nodes.
-		 * <p>
-		 * The child nodes have to be
-		 * <ul>
-		 * <li> a valid position
-		 * <li> a f value less than maxDistance (checked against the given node)
-		 * </ul>
-		 *
-		 */
-		public void createChildren() {
-			if (g < maxDistance) {
-				linkChild(x - 1, y + 0);
-				linkChild(x + 1, y + 0);
-				linkChild(x + 0, y - 1);
-				linkChild(x + 0, y + 1);
-			}
+	/**
+	 * Links a child to a parent node, and may also update the path of an
+	 * already visited child, if a shorter path is found.
+	 *
+	 * @param node parent node
+	 * @param x x coordinate of the parent node
+	 * @param y y coordinate of the parent node
+	 * @param x1 x coordinate of the child
+	 * @param y1 y coordinate of the child
+	 */
+	private void linkChild(final int node, final int x, final int y, final int x1, final int y1) {
+		if (!inBounds(x1, y1) || !isValid(x1, y1)) {
+			return;
 		}
 
-		/**
-		 * Links the children to this parent node  and may also update the
-		 * parent path, if a shorter path is found.
-		 * @param x1
-		 * @param y1
-		 */
-		private void linkChild(final int x1, final int y1) {
-			if (!isValid(x1, y1)) {
-				return;
-			}
-
-			// search for original child node
-			TreeNode child = nodeRegistry.get(createNodeID(x1, y1));
-			if (child == null) {
-				// if not found original child node then create a new one
-				child = createNode(x1, y1);
-
-				addChild(child);
-
-				openList.offer(child);
-				child.setOpen(true);
-
-				nodeRegistry.put(child.nodeNumber, child);
-			} else {
-				// note:
-				// - working on closed nodes is stopped but they may own a better
-				// parent
-				// so they will also be added to this node (parent)
-				if (child.g > (this.g + child.getCost())) {
-					updateChild(child);
-				}
-
-				// update parents for closed nodes only
-				if (!child.isOpen()) {
-					updateSubTree(child);
-				}
-			}
+		final int child = nodeIndex(x1, y1);
+		if (workspace.getState(child) == PathfinderWorkspace.UNVISITED) {
+			workspace.visit(child, getCost(x1, y1));
+		} else if (workspace.getG(child) <= workspace.getG(node) + workspace.getCost(child)) {
+			return;
 		}
 
-		/**
-		 * Update the parents for the new route.
-		 *
-		 * @param node
-		 *            the root node.
-		 */
-		private void updateSubTree(final TreeNode node) {
-			int c = node.numChildren;
-			final Stack<TreeNode> nodeStack = new Stack<TreeNode>();
-
-			nodeStack.push(node);
+		// New node, or a shorter path to an old one. Closed nodes get
+		// reopened so that the improvement propagates
+		final double childG = workspace.getG(node) + workspace.getCost(child);
+		double childWeight = childG + getHeuristic(x1, y1);
 
-			TreeNode parentTemp;
-			TreeNode child;
-			while (nodeStack.size() > 0) {
-				parentTemp = nodeStack.pop();
-				c = parentTemp.numChildren;
-				for (int i = 0; i < c; i++) {
-					child = parentTemp.children[i];
+		// Prefer nodes that do not result in direction change
+		final int parent = workspace.getParent(node);
+		if (parent >= 0) {
+			final int incx = nodeX(parent) - x;
+			final int incy = nodeY(parent) - y;
 
-					if (parentTemp.g + child.getCost() < child.g) {
-						parentTemp.updateChild(child);
+			final int incx2 = x - x1;
+			final int incy2 = y - y1;
 
-						nodeStack.push(child);
-					}
-				}
+			if ((incx == incx2) && (incy == incy2)) {
+				childWeight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
 			}
 		}
+		workspace.update(child, node, childG, childWeight);
+		workspace.open(child);
+	}
 
-		/**
-		 * Calculates the node id.
-		 * @param x of the node
-		 * @param y of the node
-		 *
-		 * @return the id of the node
-		 */
-		protected abstract int createNodeID(int x, int y);
-
-		public final boolean isOpen() {
-			return open;
-		}
+	/**
+	 * Check if a position is within the searched area.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return <code>true</code> if the position is inside the search bounds
+	 */
+	private boolean inBounds(final int x, final int y) {
+		return (x >= boundsX) && (y >= boundsY) && (x < boundsX + boundsWidth) && (y < boundsY + boundsHeight);
+	}
 
-		public final void setOpen(final boolean open) {
-			this.open = open;
-		}
+	private int nodeIndex(final int x, final int y) {
+		return (y - boundsY) * boundsWidth + (x - boundsX);
+	}
 
-		@Override
-		public boolean equals(final Object obj) {
-			if (obj instanceof TreeNode) {
-				final TreeNode treeN = (TreeNode) obj;
-				return this.nodeNumber.intValue() == treeN.nodeNumber.intValue();
-			}
-			return false;
-		}
+	private int nodeX(final int node) {
+		return boundsX + node % boundsWidth;
+	}
 
-		@Override
-		public int hashCode() {
-			return nodeNumber.hashCode();
-		}
+	private int nodeY(final int node) {
+		return boundsY + node / boundsWidth;
 	}
 }
@@ -0,0 +1,250 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Reusable node tables for the A* search in {@link Pathfinder}.
+ * <p>
+ * Nodes are identified by int indexes. Instead of clearing the tables
+ * between searches, every search gets a new generation number, and table
+ * entries stamped with an older generation count as unvisited. The open list
+ * is a binary heap of node indexes that supports decreasing the weight of a
+ * node that is already queued.
+ * <p>
+ * One workspace is kept per thread. A search that is started while the
+ * thread's workspace is already in use gets a temporary one.
+ */
+final class PathfinderWorkspace {
+	/** Node state: not visited in the current search. */
+	static final int UNVISITED = 0;
+	/** Node state: in the open list. */
+	static final int OPEN = 1;
+	/** Node state: expanded. */
+	static final int CLOSED = 2;
+
+	private static final ThreadLocal<PathfinderWorkspace> POOL = new ThreadLocal<PathfinderWorkspace>() {
+		@Override
+		protected PathfinderWorkspace initialValue() {
+			return new PathfinderWorkspace();
+		}
+	};
+
+	private boolean inUse;
+	private int generation;
+
+	private int[] stamp = new int[0];
+	private int[] state = new int[0];
+	private int[] parent = new int[0];
+	private double[] g = new double[0];
+	private double[] weight = new double[0];
+	private double[] cost = new double[0];
+
+	private int[] heap = new int[0];
+	private int[] heapPos = new int[0];
+	private int heapSize;
+
+	private int[] resistance = new int[0];
+
+	/**
+	 * Get a workspace for a new search. The workspace must be returned with
+	 * {@link #release()} when the search is done.
+	 *
+	 * @param nodes number of nodes the search may visit
+	 * @return prepared workspace
+	 */
+	static PathfinderWorkspace acquire(final int nodes) {
+		PathfinderWorkspace workspace = POOL.get();
+		if (workspace.inUse) {
+			workspace = new PathfinderWorkspace();
+		}
+		workspace.inUse = true;
+		workspace.reset(nodes);
+		return workspace;
+	}
+
+	/**
+	 * Return the workspace to the pool.
+	 */
+	void release() {
+		inUse = false;
+	}
+
+	private void reset(final int nodes) {
+		if (stamp.length < nodes) {
+			final int size = Math.max(nodes, stamp.length * 2);
+			stamp = new int[size];
+			state = new int[size];
+			parent = new int[size];
+			g = new double[size];
+			weight = new double[size];
+			cost = new double[size];
+			heap = new int[size];
+			heapPos = new int[size];
+			generation = 0;
+		}
+		generation++;
+		if (generation == 0) {
+			// wrapped around. Make sure old stamps can not match
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		heapSize = 0;
+	}
+
+	/**
+	 * Get a zeroed resistance table.
+	 *
+	 * @param size required size
+	 * @return resistance table with at least <code>size</code> entries
+	 */
+	int[] getResistanceTable(final int size) {
+		if (resistance.length < size) {
+			resistance = new int[Math.max(size, resistance.length * 2)];
+		} else {
+			Arrays.fill(resistance, 0, size, 0);
+		}
+		return resistance;
+	}
+
+	/**
+	 * Get the state of a node.
+	 *
+	 * @param node node index
+	 * @return {@link #UNVISITED}, {@link #OPEN} or {@link #CLOSED}
+	 */
+	int getState(final int node) {
+		if (stamp[node] != generation) {
+			return UNVISITED;
+		}
+		return state[node];
+	}
+
+	/**
+	 * Mark a node visited in the current search.
+	 *
+	 * @param node node index
+	 * @param nodeCost cost of moving to the node
+	 */
+	void visit(final int node, final double nodeCost) {
+		stamp[node] = generation;
+		state[node] = CLOSED;
+		parent[node] = -1;
+		cost[node] = nodeCost;
+		heapPos[node] = -1;
+	}
+
+	int getParent(final int node) {
+		return parent[node];
+	}
+
+	double getG(final int node) {
+		return g[node];
+	}
+
+	double getCost(final int node) {
+		return cost[node];
+	}
+
+	/**
+	 * Set the path data of a visited node.
+	 *
+	 * @param node node index
+	 * @param parentNode index of the parent node, or -1
+	 * @param nodeG cost of the path up to the node
+	 * @param nodeWeight estimated total path cost through the node
+	 */
+	void update(final int node, final int parentNode, final double nodeG, final double nodeWeight) {
+		parent[node] = parentNode;
+		g[node] = nodeG;
+		weight[node] = nodeWeight;
+	}
+
+	/**
+	 * Put a node to the open list, or move it to the correct position if it
+	 * is there already.
+	 *
+	 * @param node node index
+	 */
+	void open(final int node) {
+		if (state[node] == OPEN) {
+			siftUp(heapPos[node]);
+			return;
+		}
+		state[node] = OPEN;
+		heap[heapSize] = node;
+		heapPos[node] = heapSize;
+		heapSize++;
+		siftUp(heapSize - 1);
+	}
+
+	/**
+	 * Remove the node with the lowest weight from the open list, and mark it
+	 * closed.
+	 *
+	 * @return node index, or -1 if the open list is empty
+	 */
+	int poll() {
+		if (heapSize == 0) {
+			return -1;
+		}
+		final int node = heap[0];
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		heapPos[node] = -1;
+		state[node] = CLOSED;
+		return node;
+	}
+
+	private void siftUp(int pos) {
+		final int node = heap[pos];
+		final double w = weight[node];
+		while (pos > 0) {
+			final int parentPos = (pos - 1) >>> 1;
+			final int parentNode = heap[parentPos];
+			if (weight[parentNode] <= w) {
+				break;
+			}
+			heap[pos] = parentNode;
+			heapPos[parentNode] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int node = heap[pos];
+		final double w = weight[node];
+		final int half = heapSize >>> 1;
+		while (pos < half) {
+			int child = 2 * pos + 1;
+			final int right = child + 1;
+			if ((right < heapSize) && (weight[heap[right]] < weight[heap[child]])) {
+				child = right;
+			}
+			if (w <= weight[heap[child]]) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+}
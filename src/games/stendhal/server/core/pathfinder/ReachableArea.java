@@ -0,0 +1,232 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.Arrays;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+
+/**
+ * The positions an entity can walk to from a start position, considering
+ * only the collision map. The area is found with a single breadth first
+ * search, so checking many positions is much cheaper than searching a path
+ * to each of them. The search is incremental: it is expanded only until the
+ * checked position is reached, so positions close to the start are cheap to
+ * check even when the maximum path length is large.
+ * <p>
+ * The collision map must not change while the area is used.
+ * <p>
+ * The tables of the search are taken from the {@link Workspace} of the zone,
+ * so that checking a placement does not allocate zone sized arrays. The
+ * area must be released with {@link #release()} when it is no longer used.
+ */
+public final class ReachableArea {
+	private final Entity entity;
+	private final StendhalRPZone zone;
+	private final int maxSteps;
+	private final int boundsX;
+	private final int boundsY;
+	private final int boundsWidth;
+	private final int boundsHeight;
+	/** tables of the search */
+	private final Workspace workspace;
+	/** generation of the workspace used by this search */
+	private final int generation;
+	private int head;
+	private int tail;
+
+	/**
+	 * Reusable tables for the searches in one zone. Instead of clearing the
+	 * tables between searches, every search gets a new generation number,
+	 * and entries stamped with an older generation count as not reached.
+	 * <p>
+	 * A search that is started while the workspace is in use, for example
+	 * by a nested placement, gets a temporary one.
+	 */
+	public static final class Workspace {
+		private boolean inUse;
+		private int generation;
+		/** generation in which each position was reached */
+		private int[] stamp = new int[0];
+		/** steps from the start for each reached position */
+		private int[] steps = new int[0];
+		/** positions in the order they were reached */
+		private int[] queue = new int[0];
+
+		/**
+		 * Get the workspace for a new search.
+		 *
+		 * @param size number of positions the search may visit
+		 * @return prepared workspace
+		 */
+		private synchronized Workspace acquire(final int size) {
+			final Workspace workspace = inUse ? new Workspace() : this;
+			workspace.inUse = true;
+			workspace.reset(size);
+			return workspace;
+		}
+
+		/**
+		 * Return the workspace after the search is done.
+		 */
+		private synchronized void release() {
+			inUse = false;
+		}
+
+		private void reset(final int size) {
+			if (stamp.length < size) {
+				stamp = new int[size];
+				steps = new int[size];
+				queue = new int[size];
+				generation = 0;
+			}
+			generation++;
+			if (generation == 0) {
+				// wrapped around. Make sure old stamps can not match
+				Arrays.fill(stamp, 0);
+				generation = 1;
+			}
+		}
+	}
+
+	/**
+	 * Creates a new ReachableArea.
+	 *
+	 * @param entity entity that would walk
+	 * @param zone zone
+	 * @param startX x coordinate of the start
+	 * @param startY y coordinate of the start
+	 * @param maxSteps maximum length of the paths
+	 */
+	public ReachableArea(final Entity entity, final StendhalRPZone zone,
+			final int startX, final int startY, final int maxSteps) {
+		this.entity = entity;
+		this.zone = zone;
+		this.maxSteps = maxSteps;
+		final int reach = maxSteps + 1;
+		boundsX = Math.max(0, startX - reach);
+		boundsY = Math.max(0, startY - reach);
+		boundsWidth = Math.max(0, Math.min(zone.getWidth(), startX + reach + 1) - boundsX);
+		boundsHeight = Math.max(0, Math.min(zone.getHeight(), startY + reach + 1) - boundsY);
+		workspace = zone.getReachableAreaWorkspace().acquire(boundsWidth * boundsHeight);
+		generation = workspace.generation;
+		if (contains(startX, startY)) {
+			final int start = index(startX, startY);
+			reach(start, 0);
+		}
+	}
+
+	/**
+	 * Return the tables of the search to the zone. The area can not be used
+	 * afterwards.
+	 */
+	public void release() {
+		workspace.release();
+	}
+
+	/**
+	 * Mark a position reached.
+	 *
+	 * @param node position index
+	 * @param step steps from the start
+	 */
+	private void reach(final int node, final int step) {
+		workspace.stamp[node] = generation;
+		workspace.steps[node] = step;
+		workspace.queue[tail++] = node;
+	}
+
+	/**
+	 * Check if a position has been reached.
+	 *
+	 * @param node position index
+	 * @return <code>true</code> if the position has been reached
+	 */
+	private boolean isReached(final int node) {
+		return workspace.stamp[node] == generation;
+	}
+
+	/**
+	 * Visits the neighbours of the next position in the queue.
+	 *
+	 * @return <code>false</code> if the whole area has been searched
+	 */
+	private boolean expand() {
+		if (head == tail) {
+			return false;
+		}
+		final int node = workspace.queue[head++];
+		final int step = workspace.steps[node];
+		if (step >= maxSteps) {
+			return true;
+		}
+		final double w = entity.getWidth();
+		final double h = entity.getHeight();
+		final int x = boundsX + node % boundsWidth;
+		final int y = boundsY + node / boundsWidth;
+		for (int dir = 0; dir < 4; dir++) {
+			final int nx = x + ((dir == 0) ? -1 : ((dir == 1) ? 1 : 0));
+			final int ny = y + ((dir == 2) ? -1 : ((dir == 3) ? 1 : 0));
+			if (!contains(nx, ny)) {
+				continue;
+			}
+			final int child = index(nx, ny);
+			if (!isReached(child) && !zone.simpleCollides(entity, nx, ny, w, h)) {
+				reach(child, step + 1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if a position can be reached.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return <code>true</code> if there is a path from the start to the
+	 * 	position
+	 */
+	public boolean isReachable(final int x, final int y) {
+		if (!contains(x, y)) {
+			return false;
+		}
+		final int target = index(x, y);
+		while (!isReached(target) && expand()) {
+			// breadth first, so the target has its final distance once it
+			// has been found
+		}
+		return isReached(target);
+	}
+
+	/**
+	 * Gets the length of the shortest path to a position.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return number of steps, or -1 if the position can not be reached
+	 */
+	public int getDistance(final int x, final int y) {
+		if (!isReachable(x, y)) {
+			return -1;
+		}
+		return workspace.steps[index(x, y)];
+	}
+
+	private boolean contains(final int x, final int y) {
+		return (x >= boundsX) && (y >= boundsY) && (x < boundsX + boundsWidth) && (y < boundsY + boundsHeight);
+	}
+
+	private int index(final int x, final int y) {
+		return (y - boundsY) * boundsWidth + (x - boundsX);
+	}
+}
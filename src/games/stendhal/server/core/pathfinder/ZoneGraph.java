@@ -0,0 +1,366 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+
+/**
+ * Abstract navigation graph of a single zone, in the style of HPA*.
+ * <p>
+ * The collision map is divided into square clusters. Entrances between
+ * neighbouring clusters become graph nodes. Nodes within the same cluster
+ * are connected with the walking distance between them, and neighbouring
+ * cluster entrances with a single step.
+ * <p>
+ * The graph only depends on the collision map of its own zone, and is not
+ * changed after it has been built.
+ */
+final class ZoneGraph {
+	/** Width and height of a cluster in tiles. */
+	static final int CLUSTER_SIZE = 16;
+	/** Entrances longer than this get a node at both ends instead of the middle. */
+	private static final int LONG_ENTRANCE = 6;
+
+	/** The zone the graph belongs to. */
+	final StendhalRPZone zone;
+	/** Navigation revision of the zone when the graph was built. */
+	private final int revision;
+
+	private final int width;
+	private final int height;
+	private final int clusterColumns;
+
+	/** Node positions. */
+	private int[] nodeX;
+	private int[] nodeY;
+	private int nodeCount;
+	/** Node index by position (y * width + x). */
+	private final Map<Integer, Integer> nodeByPosition = new HashMap<Integer, Integer>();
+
+	/** Intra zone edges in compressed row form. */
+	private int[] edgeStart;
+	private int[] edgeTarget;
+	private int[] edgeCost;
+
+	/** Nodes of each cluster in compressed row form. */
+	private int[] clusterStart;
+	private int[] clusterNodes;
+
+	/**
+	 * Create the graph for a zone.
+	 *
+	 * @param zone zone
+	 */
+	ZoneGraph(final StendhalRPZone zone) {
+		this.zone = zone;
+		this.revision = zone.getNavigationRevision();
+		this.width = zone.getWidth();
+		this.height = zone.getHeight();
+		this.clusterColumns = (width + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+		nodeX = new int[16];
+		nodeY = new int[16];
+
+		final List<int[]> edges = new ArrayList<int[]>();
+		createClusterEntrances(edges);
+		createClusterEdges(edges);
+	}
+
+	/**
+	 * Check if the graph still matches the collision map of the zone.
+	 *
+	 * @return <code>true</code> if the graph is up to date
+	 */
+	boolean isValid() {
+		return zone.getNavigationRevision() == revision;
+	}
+
+	int getNodeCount() {
+		return nodeCount;
+	}
+
+	int getX(final int node) {
+		return nodeX[node];
+	}
+
+	int getY(final int node) {
+		return nodeY[node];
+	}
+
+	int getEdgeStart(final int node) {
+		return edgeStart[node];
+	}
+
+	int getEdgeEnd(final int node) {
+		return edgeStart[node + 1];
+	}
+
+	int getEdgeTarget(final int edge) {
+		return edgeTarget[edge];
+	}
+
+	int getEdgeCost(final int edge) {
+		return edgeCost[edge];
+	}
+
+	/**
+	 * Calculate the walking distances from a position to the nodes in the
+	 * same cluster.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param distances distance for each node index. Nodes that can not be
+	 * 	reached are set to -1
+	 * @param targetX x coordinate of an additional target in the same cluster
+	 * @param targetY y coordinate of an additional target in the same cluster
+	 * @return distance to the additional target, or -1 if it can not be
+	 * 	reached within the cluster
+	 */
+	int getClusterDistances(final int x, final int y, final int[] distances, final int targetX, final int targetY) {
+		Arrays.fill(distances, -1);
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+			return -1;
+		}
+		final int cluster = getCluster(x, y);
+		final int[] dist = distanceField(x, y);
+		final int cx = (x / CLUSTER_SIZE) * CLUSTER_SIZE;
+		final int cy = (y / CLUSTER_SIZE) * CLUSTER_SIZE;
+		final int cw = Math.min(CLUSTER_SIZE, width - cx);
+		for (int i = clusterStart[cluster]; i < clusterStart[cluster + 1]; i++) {
+			final int node = clusterNodes[i];
+			distances[node] = dist[(nodeY[node] - cy) * cw + (nodeX[node] - cx)];
+		}
+		if ((targetX >= cx) && (targetY >= cy) && (targetX < cx + cw) && (targetY < cy + CLUSTER_SIZE)
+				&& (targetY < height)) {
+			return dist[(targetY - cy) * cw + (targetX - cx)];
+		}
+		return -1;
+	}
+
+	private int getCluster(final int x, final int y) {
+		return (y / CLUSTER_SIZE) * clusterColumns + (x / CLUSTER_SIZE);
+	}
+
+	private boolean isFree(final int x, final int y) {
+		return !zone.collisionMap.collides(x, y);
+	}
+
+	/**
+	 * Get the node at a position, creating it if needed.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return node index
+	 */
+	private int addNode(final int x, final int y) {
+		final int key = y * width + x;
+		final Integer old = nodeByPosition.get(key);
+		if (old != null) {
+			return old.intValue();
+		}
+		if (nodeCount == nodeX.length) {
+			nodeX = Arrays.copyOf(nodeX, nodeCount * 2);
+			nodeY = Arrays.copyOf(nodeY, nodeCount * 2);
+		}
+		nodeX[nodeCount] = x;
+		nodeY[nodeCount] = y;
+		nodeByPosition.put(key, nodeCount);
+		return nodeCount++;
+	}
+
+	/**
+	 * Create nodes for the open segments between neighbouring clusters.
+	 *
+	 * @param edges list for the created edges
+	 */
+	private void createClusterEntrances(final List<int[]> edges) {
+		// vertical cluster borders
+		for (int x = CLUSTER_SIZE - 1; x + 1 < width; x += CLUSTER_SIZE) {
+			int segmentStart = -1;
+			for (int y = 0; y <= height; y++) {
+				final boolean open = (y < height) && (y % CLUSTER_SIZE != 0 || segmentStart < 0)
+						&& isFree(x, y) && isFree(x + 1, y);
+				if (open && (segmentStart < 0)) {
+					segmentStart = y;
+				} else if (!open && (segmentStart >= 0)) {
+					for (final int entrance : entrancePositions(segmentStart, y - 1)) {
+						addEntrance(edges, addNode(x, entrance), addNode(x + 1, entrance));
+					}
+					segmentStart = -1;
+					if ((y < height) && isFree(x, y) && isFree(x + 1, y)) {
+						// segment split at a cluster corner
+						segmentStart = y;
+					}
+				}
+			}
+		}
+
+		// horizontal cluster borders
+		for (int y = CLUSTER_SIZE - 1; y + 1 < height; y += CLUSTER_SIZE) {
+			int segmentStart = -1;
+			for (int x = 0; x <= width; x++) {
+				final boolean open = (x < width) && (x % CLUSTER_SIZE != 0 || segmentStart < 0)
+						&& isFree(x, y) && isFree(x, y + 1);
+				if (open && (segmentStart < 0)) {
+					segmentStart = x;
+				} else if (!open && (segmentStart >= 0)) {
+					for (final int entrance : entrancePositions(segmentStart, x - 1)) {
+						addEntrance(edges, addNode(entrance, y), addNode(entrance, y + 1));
+					}
+					segmentStart = -1;
+					if ((x < width) && isFree(x, y) && isFree(x, y + 1)) {
+						segmentStart = x;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Connect the two sides of an entrance in both directions.
+	 *
+	 * @param edges edge list
+	 * @param a node on one side
+	 * @param b node on the other side
+	 */
+	private static void addEntrance(final List<int[]> edges, final int a, final int b) {
+		edges.add(new int[] {a, b, 1});
+		edges.add(new int[] {b, a, 1});
+	}
+
+	/**
+	 * Choose the entrance node positions of an open segment.
+	 *
+	 * @param first first open position
+	 * @param last last open position
+	 * @return positions
+	 */
+	private static int[] entrancePositions(final int first, final int last) {
+		if (last - first + 1 > LONG_ENTRANCE) {
+			return new int[] {first, last};
+		}
+		return new int[] {(first + last) / 2};
+	}
+
+	/**
+	 * Group the nodes by cluster and connect the nodes within each cluster.
+	 *
+	 * @param edges entrance edges. The cluster edges are added to the list
+	 */
+	private void createClusterEdges(final List<int[]> edges) {
+		final int clusterRows = (height + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+		final int clusters = clusterColumns * clusterRows;
+		clusterStart = new int[clusters + 1];
+		for (int node = 0; node < nodeCount; node++) {
+			clusterStart[getCluster(nodeX[node], nodeY[node]) + 1]++;
+		}
+		for (int i = 0; i < clusters; i++) {
+			clusterStart[i + 1] += clusterStart[i];
+		}
+		clusterNodes = new int[nodeCount];
+		final int[] fill = Arrays.copyOf(clusterStart, clusters);
+		for (int node = 0; node < nodeCount; node++) {
+			clusterNodes[fill[getCluster(nodeX[node], nodeY[node])]++] = node;
+		}
+
+		for (int cluster = 0; cluster < clusters; cluster++) {
+			final int cx = (cluster % clusterColumns) * CLUSTER_SIZE;
+			final int cy = (cluster / clusterColumns) * CLUSTER_SIZE;
+			final int cw = Math.min(CLUSTER_SIZE, width - cx);
+			for (int i = clusterStart[cluster]; i < clusterStart[cluster + 1]; i++) {
+				final int from = clusterNodes[i];
+				if (!isFree(nodeX[from], nodeY[from])) {
+					continue;
+				}
+				final int[] dist = distanceField(nodeX[from], nodeY[from]);
+				for (int j = clusterStart[cluster]; j < clusterStart[cluster + 1]; j++) {
+					final int to = clusterNodes[j];
+					final int d = dist[(nodeY[to] - cy) * cw + (nodeX[to] - cx)];
+					if ((to != from) && (d > 0)) {
+						edges.add(new int[] {from, to, d});
+					}
+				}
+			}
+		}
+
+		edgeStart = new int[nodeCount + 1];
+		for (final int[] edge : edges) {
+			edgeStart[edge[0] + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			edgeStart[i + 1] += edgeStart[i];
+		}
+		edgeTarget = new int[edges.size()];
+		edgeCost = new int[edges.size()];
+		final int[] fillEdges = Arrays.copyOf(edgeStart, nodeCount);
+		for (final int[] edge : edges) {
+			final int pos = fillEdges[edge[0]]++;
+			edgeTarget[pos] = edge[1];
+			edgeCost[pos] = edge[2];
+		}
+	}
+
+	/**
+	 * Breadth first search of walking distances within the cluster of a
+	 * position.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return distances in the cluster, row major. Unreachable positions
+	 * 	are -1
+	 */
+	private int[] distanceField(final int x, final int y) {
+		final int cx = (x / CLUSTER_SIZE) * CLUSTER_SIZE;
+		final int cy = (y / CLUSTER_SIZE) * CLUSTER_SIZE;
+		final int cw = Math.min(CLUSTER_SIZE, width - cx);
+		final int ch = Math.min(CLUSTER_SIZE, height - cy);
+		final int[] dist = new int[cw * ch];
+		Arrays.fill(dist, -1);
+		if (!isFree(x, y)) {
+			return dist;
+		}
+		final int[] queue = new int[cw * ch];
+		int head = 0;
+		int tail = 0;
+		final int start = (y - cy) * cw + (x - cx);
+		dist[start] = 0;
+		queue[tail++] = start;
+		while (head < tail) {
+			final int pos = queue[head++];
+			final int px = pos % cw;
+			final int py = pos / cw;
+			final int d = dist[pos] + 1;
+			if ((px > 0) && (dist[pos - 1] < 0) && isFree(cx + px - 1, cy + py)) {
+				dist[pos - 1] = d;
+				queue[tail++] = pos - 1;
+			}
+			if ((px + 1 < cw) && (dist[pos + 1] < 0) && isFree(cx + px + 1, cy + py)) {
+				dist[pos + 1] = d;
+				queue[tail++] = pos + 1;
+			}
+			if ((py > 0) && (dist[pos - cw] < 0) && isFree(cx + px, cy + py - 1)) {
+				dist[pos - cw] = d;
+				queue[tail++] = pos - cw;
+			}
+			if ((py + 1 < ch) && (dist[pos + cw] < 0) && isFree(cx + px, cy + py + 1)) {
+				dist[pos + cw] = d;
+				queue[tail++] = pos + cw;
+			}
+		}
+		return dist;
+	}
+}
@@ -0,0 +1,223 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
+import marauroa.common.game.IRPZone;
+
+/**
+ * Hierarchical path finder for long routes within a zone.
+ * <p>
+ * The search runs on the abstract {@link ZoneGraph} of the zone, which is
+ * precomputed at server start. The found waypoints are refined to tile level
+ * by {@link Path} with short A* searches between them.
+ * <p>
+ * The graphs are not changed after they have been built, so searches in
+ * different zones do not need any locking. When the collision layer of a
+ * zone changes, its graph is replaced. During the parallel phase of the zone
+ * logic the new graph is built in the commit phase, and until then searches
+ * in that zone return no waypoints, so that the callers fall back to the
+ * ordinary path finder.
+ * <p>
+ * Only the collision maps are considered. Entities that block the way have
+ * to be handled when the path is followed.
+ */
+public class ZonePathfinder {
+	private static final Logger logger = Logger.getLogger(ZonePathfinder.class);
+
+	/** The singleton instance. */
+	private static ZonePathfinder instance;
+
+	/** Abstract graphs of the zones. */
+	private final ConcurrentMap<StendhalRPZone, ZoneGraph> graphs = new ConcurrentHashMap<StendhalRPZone, ZoneGraph>();
+	/** Zones whose graph is rebuilt in the commit phase. */
+	private final Set<StendhalRPZone> pendingRebuilds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Get the path finder instance.
+	 *
+	 * @return ZonePathfinder
+	 */
+	public static synchronized ZonePathfinder get() {
+		if (instance == null) {
+			instance = new ZonePathfinder();
+		}
+		return instance;
+	}
+
+	/**
+	 * Build the abstract graphs of all zones of the world.
+	 *
+	 * @param world the world
+	 */
+	public void precompute(final StendhalRPWorld world) {
+		final long start = System.currentTimeMillis();
+		graphs.clear();
+		int nodes = 0;
+		for (final IRPZone zone : world) {
+			nodes += buildGraph((StendhalRPZone) zone).getNodeCount();
+		}
+		logger.info("Built navigation graphs for " + graphs.size() + " zones with " + nodes
+				+ " nodes in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Find the abstract waypoints of a route within a single zone.
+	 *
+	 * @param zone zone
+	 * @param x start x coordinate
+	 * @param y start y coordinate
+	 * @param destX destination x coordinate
+	 * @param destY destination y coordinate
+	 * @return waypoints, starting with the start position and ending with the
+	 * 	destination, or <code>null</code> if no route was found, or the graph
+	 * 	of the zone is not available yet
+	 */
+	List<Node> searchZoneWaypoints(final StendhalRPZone zone, final int x, final int y,
+			final int destX, final int destY) {
+		if (zone == null) {
+			return null;
+		}
+		final ZoneGraph graph = getGraph(zone);
+		if (graph == null) {
+			return null;
+		}
+
+		// connect the start and the goal to the nodes of their clusters
+		final int nodes = graph.getNodeCount();
+		final int[] startDistances = new int[nodes];
+		int best = graph.getClusterDistances(x, y, startDistances, destX, destY);
+		if (best < 0) {
+			best = Integer.MAX_VALUE;
+		}
+		final int[] goalDistances = new int[nodes];
+		graph.getClusterDistances(destX, destY, goalDistances, -1, -1);
+
+		final int[] dist = new int[nodes];
+		Arrays.fill(dist, Integer.MAX_VALUE);
+		final int[] prev = new int[nodes];
+		Arrays.fill(prev, -1);
+		final PriorityQueue<Entry> open = new PriorityQueue<Entry>();
+		for (int node = 0; node < nodes; node++) {
+			if (startDistances[node] >= 0) {
+				dist[node] = startDistances[node];
+				open.add(new Entry(node, startDistances[node]));
+			}
+		}
+
+		int bestNode = -1;
+		while (!open.isEmpty()) {
+			final Entry entry = open.poll();
+			if (entry.dist >= best) {
+				break;
+			}
+			if (entry.dist > dist[entry.node]) {
+				// outdated queue entry
+				continue;
+			}
+			if ((goalDistances[entry.node] >= 0) && (entry.dist + goalDistances[entry.node] < best)) {
+				best = entry.dist + goalDistances[entry.node];
+				bestNode = entry.node;
+			}
+			for (int edge = graph.getEdgeStart(entry.node); edge < graph.getEdgeEnd(entry.node); edge++) {
+				final int target = graph.getEdgeTarget(edge);
+				final int d = entry.dist + graph.getEdgeCost(edge);
+				if (d < dist[target]) {
+					dist[target] = d;
+					prev[target] = entry.node;
+					open.add(new Entry(target, d));
+				}
+			}
+		}
+
+		if (best == Integer.MAX_VALUE) {
+			return null;
+		}
+
+		final LinkedList<Node> waypoints = new LinkedList<Node>();
+		waypoints.add(new Node(destX, destY));
+		for (int node = bestNode; node >= 0; node = prev[node]) {
+			waypoints.addFirst(new Node(graph.getX(node), graph.getY(node)));
+		}
+		waypoints.addFirst(new Node(x, y));
+
+		return waypoints;
+	}
+
+	/**
+	 * Get the up to date graph of a zone. An outdated graph is rebuilt
+	 * immediately, or in the commit phase if called from parallel zone
+	 * logic.
+	 *
+	 * @param zone zone
+	 * @return graph, or <code>null</code> if it is rebuilt in the commit phase
+	 */
+	private ZoneGraph getGraph(final StendhalRPZone zone) {
+		final ZoneGraph graph = graphs.get(zone);
+		if ((graph != null) && graph.isValid()) {
+			return graph;
+		}
+		final ZoneLogicExecutor executor = ZoneLogicExecutor.get();
+		if (executor.isInParallelPhase()) {
+			if (pendingRebuilds.add(zone)) {
+				executor.defer(() -> {
+					pendingRebuilds.remove(zone);
+					buildGraph(zone);
+				});
+			}
+			return null;
+		}
+		return buildGraph(zone);
+	}
+
+	/**
+	 * Build the graph of a zone and replace the old one.
+	 *
+	 * @param zone zone
+	 * @return the new graph
+	 */
+	private ZoneGraph buildGraph(final StendhalRPZone zone) {
+		final ZoneGraph graph = new ZoneGraph(zone);
+		graphs.put(zone, graph);
+		return graph;
+	}
+
+	/**
+	 * Open list entry.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		final int node;
+		final int dist;
+
+		Entry(final int node, final int dist) {
+			this.node = node;
+			this.dist = dist;
+		}
+
+		@Override
+		public int compareTo(final Entry other) {
+			return Integer.compare(dist, other.dist);
+		}
+	}
+}
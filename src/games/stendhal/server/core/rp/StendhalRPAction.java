@@ -29,11 +29,12 @@ import games.stendhal.server.core.engine.DataProvider;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
 import games.stendhal.server.core.events.TutorialNotifier;
 import games.stendhal.server.core.events.ZoneNotifier;
-import games.stendhal.server.core.pathfinder.Node;
 import games.stendhal.server.core.pathfinder.Path;
+import games.stendhal.server.core.pathfinder.ReachableArea;
 import games.stendhal.server.core.rp.group.Group;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
@@ -453,7 +454,9 @@ public class StendhalRPAction {
 			if (breakable.isContained()) {
 				final RPObject slot = breakable.getContainer();
 				if (breakable.getContainerSlot().remove(breakable.getID()) != null) {
-					if (slot instanceof Entity) {
+					if (slot instanceof RPEntity) {
+						((RPEntity) slot).updateItemAtkDef();
+					} else if (slot instanceof Entity) {
 						((Entity) slot).notifyWorldAboutChanges();
 					}
 
@@ -624,6 +627,11 @@ public class StendhalRPAction {
 	 *     new position.
 	 * @return
 	 *     <code>true</code> if it was possible to place the entity, false otherwise.
+	 *     Zone changes requested by parallel zone logic are delayed to the
+	 *     commit phase, so their result is not known yet. They return
+	 *     <code>true</code>, and failures are only logged. Callers that need
+	 *     to react to the result have to defer the whole operation, like
+	 *     {@link Player#teleport(StendhalRPZone, int, int, games.stendhal.common.Direction, Player)}.
 	 */
 	public static boolean placeat(final StendhalRPZone zone, final Entity entity,
 			int x, int y, final Shape allowedArea) {
@@ -631,6 +639,21 @@ public class StendhalRPAction {
 			return false;
 		}
 
+		final ZoneLogicExecutor executor = ZoneLogicExecutor.get();
+		if ((entity.getZone() != zone) && executor.isInParallelPhase()) {
+			// zone changes from parallel zone logic are done in the commit
+			// phase
+			final int targetX = x;
+			final int targetY = y;
+			executor.defer(() -> {
+				if (!placeat(zone, entity, targetX, targetY, allowedArea)) {
+					logger.warn("Deferred placing of " + entity + " at " + zone.getName()
+							+ " [" + targetX + "," + targetY + "] failed");
+				}
+			});
+			return true;
+		}
+
 		Player player = null;
 		if (entity instanceof Player) {
 			player = (Player) entity;
@@ -789,7 +812,29 @@ public class StendhalRPAction {
 	 */
 	private static Point findLocation(final StendhalRPZone zone, final Entity entity,
 			final Shape allowedArea, final int x, final int y, final boolean checkPath) {
+		final PlacementSearch search = new PlacementSearch(zone, entity, allowedArea, x, y, checkPath);
+		try {
+			return findLocation(search, x, y);
+		} finally {
+			search.release();
+		}
+	}
 
+	/**
+	 * Checks the positions around the search center in the order of their
+	 * distance.
+	 *
+	 * @param search
+	 *     Search state.
+	 * @param x
+	 *     The x coordinate of the search center.
+	 * @param y
+	 *     The y coordinate of the search center.
+	 * @return
+	 *     The first valid location, or <code>null</code> if no suitable
+	 *     place was found.
+	 */
+	private static Point findLocation(final PlacementSearch search, final int x, final int y) {
 		// Minimum Euclidean distance within minimum walking distance
 		for (int totalShift = 1; totalShift <= maxDisplacement; totalShift++) {
 			for (int tilt = (totalShift + 1) / 2; tilt > 0; tilt--) {
@@ -797,19 +842,19 @@ public class StendhalRPAction {
 
 				int tmpx = x - tilt;
 				int tmpy = y - spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 				tmpx = x + tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 				tmpy = y + spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 				tmpx = x - tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 
@@ -820,19 +865,19 @@ public class StendhalRPAction {
 
 				tmpx = x - spread;
 				tmpy = y - tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 				tmpx = x + spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 				tmpy = y + tilt;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 				tmpx = x - spread;
-				if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+				if (search.isValid(tmpx, tmpy)) {
 					return new Point(tmpx, tmpy);
 				}
 			}
@@ -840,20 +885,20 @@ public class StendhalRPAction {
 			// Do tilt = 0 case here, since it takes only 4 checks
 			int tmpx = x;
 			int tmpy = y - totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+			if (search.isValid(tmpx, tmpy)) {
 				return new Point(tmpx, tmpy);
 			}
 			tmpy = y + totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+			if (search.isValid(tmpx, tmpy)) {
 				return new Point(tmpx, tmpy);
 			}
 			tmpy = y;
 			tmpx = x - totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+			if (search.isValid(tmpx, tmpy)) {
 				return new Point(tmpx, tmpy);
 			}
 			tmpx = x + totalShift;
-			if (isValidPlacement(zone, entity, allowedArea, x, y, tmpx, tmpy, checkPath)) {
+			if (search.isValid(tmpx, tmpy)) {
 				return new Point(tmpx, tmpy);
 			}
 		}
@@ -862,45 +907,80 @@ public class StendhalRPAction {
 	}
 
 	/**
-	 * Checks if a new placement for an entity is valid.
-	 *
-	 * @param zone
-	 *     Zone to place the entity in.
-	 * @param entity
-	 *     The entity to place.
-	 * @param allowedArea
-	 *     Only search within this area for a possible new position,
-	 *     or <code>null</code> if the whole normal search area should
-	 *     be used.
-	 * @param oldX
-	 *     The X coordinate from where the entity was displaced.
-	 * @param oldY
-	 *     The Y coordinate from where the entity was displaced.
-	 * @param newX
-	 *     The X coordinate of the new placement.
-	 * @param newY
-	 *     The Y coordinate of the new placement.
-	 * @param checkPath
-	 *     If <code>true</code>, check that there is a path from
-	 *     <code>(newX, newY)</code> to <code>(oldX, oldY)</code>.
-	 * @return
-	 *     <code>true</code> if placing is possible,
-	 *     <code>false</code> otherwise.
+	 * State of a search for a new placement for an entity. The positions
+	 * reachable from the search center are searched once, starting when the
+	 * first free position needs a path check, and only as far as needed for
+	 * the checked positions.
 	 */
-	private static boolean isValidPlacement(final StendhalRPZone zone, final Entity entity,
-			final Shape allowedArea, final int oldX, final int oldY,
-			final int newX, final int newY, final boolean checkPath) {
+	private static final class PlacementSearch {
+		/**
+		 * maximum length of the path from the search center to the new
+		 * placement
+		 */
+		private static final int MAX_PATH_LENGTH = 400;
+
+		private final StendhalRPZone zone;
+		private final Entity entity;
+		private final Shape allowedArea;
+		private final int x;
+		private final int y;
+		private final boolean checkPath;
+		/** positions reachable from the center, or <code>null</code> if not computed yet */
+		private ReachableArea reachable;
+
+		/**
+		 * Creates a new PlacementSearch.
+		 *
+		 * @param zone
+		 *     Zone to place the entity in.
+		 * @param entity
+		 *     The entity to place.
+		 * @param allowedArea
+		 *     Only search within this area for a possible new position,
+		 *     or <code>null</code> if the whole normal search area should
+		 *     be used.
+		 * @param x
+		 *     The X coordinate from where the entity was displaced.
+		 * @param y
+		 *     The Y coordinate from where the entity was displaced.
+		 * @param checkPath
+		 *     If <code>true</code>, check that there is a path from
+		 *     the new placement to <code>(x, y)</code>.
+		 */
+		PlacementSearch(final StendhalRPZone zone, final Entity entity,
+				final Shape allowedArea, final int x, final int y, final boolean checkPath) {
+			this.zone = zone;
+			this.entity = entity;
+			this.allowedArea = allowedArea;
+			this.x = x;
+			this.y = y;
+			this.checkPath = checkPath;
+		}
 
-		// allow admins in ghostmode to teleport to collision tiles
-		if (entity instanceof Player) {
-			if (((Player) entity).isGhost()) {
-				return true;
+		/**
+		 * Checks if a new placement for the entity is valid.
+		 *
+		 * @param newX
+		 *     The X coordinate of the new placement.
+		 * @param newY
+		 *     The Y coordinate of the new placement.
+		 * @return
+		 *     <code>true</code> if placing is possible,
+		 *     <code>false</code> otherwise.
+		 */
+		boolean isValid(final int newX, final int newY) {
+			// allow admins in ghostmode to teleport to collision tiles
+			if (entity instanceof Player) {
+				if (((Player) entity).isGhost()) {
+					return true;
+				}
 			}
-		}
 
-		if (!zone.collides(entity, newX, newY)) {
-			// Check the possibleArea now. This is a performance
-			// optimization because the pathfinding is very expensive.
+			if (zone.collides(entity, newX, newY)) {
+				return false;
+			}
+			// Check the possibleArea now, before the more expensive
+			// path check.
 			if ((allowedArea != null) && (!allowedArea.contains(newX, newY))) {
 				return false;
 			}
@@ -912,16 +992,20 @@ public class StendhalRPAction {
 			// spot and the new destination. This is to prevent players to
 			// enter not allowed places by logging in on top of other players.
 			// Or monsters to spawn on the other side of a wall.
-			final List<Node> path = Path.searchPath(entity, zone,
-					oldX, oldY, new Rectangle(newX, newY, 1, 1),
-					400 /* maxDestination * maxDestination */, false);
-			if (!path.isEmpty()) {
-				// We found a place!
-				return true;
+			if (reachable == null) {
+				reachable = new ReachableArea(entity, zone, x, y, MAX_PATH_LENGTH);
 			}
+			return reachable.isReachable(newX, newY);
 		}
 
-		return false;
+		/**
+		 * Releases the resources of the search.
+		 */
+		void release() {
+			if (reachable != null) {
+				reachable.release();
+			}
+		}
 	}
 
 	/**
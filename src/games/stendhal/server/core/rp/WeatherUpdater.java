@@ -275,7 +275,7 @@ public class WeatherUpdater implements TurnListener {
 				attr.remove(WEATHER);
 			}
 			// Notify resident players about the changed weather
-			attr.getZone().notifyOnlinePlayers();
+			attr.notifyOnlinePlayers();
 		}
 	}
 
@@ -114,6 +114,13 @@ public class Achievement {
 		return active;
 	}
 
+	/**
+	 * @return the condition a player has to fulfill
+	 */
+	ChatCondition getCondition() {
+		return condition;
+	}
+
 	/**
 	 * Check if a player has fulfilled this achievement
 	 * @param p the player to check
@@ -33,6 +33,7 @@ import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.db.AchievementDAO;
 import games.stendhal.server.core.engine.dbcommand.WriteReachedAchievementCommand;
 import games.stendhal.server.core.rp.achievement.factory.AbstractAchievementFactory;
+import games.stendhal.server.entity.npc.condition.DependencyAwareCondition;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.entity.player.ReadAchievementsOnLogin;
 import games.stendhal.server.entity.player.UpdatePendingAchievementsOnLogin;
@@ -53,10 +54,29 @@ public final class AchievementNotifier {
 	/** The singleton instance. */
 	private static AchievementNotifier instance;
 
+	/** Categories that are checked when the state of a quest changes. */
+	private static final Category[] QUEST_CATEGORIES = {
+		Category.QUEST, Category.QUEST_ADOS_ITEMS, Category.QUEST_SEMOS_MONSTER,
+		Category.QUEST_KIRDNEH_ITEM, Category.FRIEND, Category.OBTAIN, Category.PRODUCTION,
+		Category.QUEST_MITHRILBOURGH_ENEMY_ARMY, Category.QUEST_KILL_BLORDROUGHS
+	};
+
 	final private Map<Category, List<Achievement>> achievements;
 
 	final private Map<String, Integer> identifiersToIds;
 
+	/** Achievements of the quest categories by the quest slots they read. */
+	final private Map<String, List<Achievement>> byQuestSlot;
+
+	/** Achievements of the quest categories that may depend on anything. */
+	final private List<Achievement> onAnyQuestChange;
+
+	/** Fighting achievements by the creatures whose kills they count. */
+	final private Map<String, List<Achievement>> byKilledCreature;
+
+	/** Fighting achievements that may depend on anything. */
+	final private List<Achievement> onAnyKill;
+
 
 	/**
 	 * singleton accessor method
@@ -78,6 +98,10 @@ public final class AchievementNotifier {
 	private AchievementNotifier() {
 		achievements = new EnumMap<Category, List<Achievement>>(Category.class);
 		identifiersToIds = new HashMap<String, Integer>();
+		byQuestSlot = new HashMap<String, List<Achievement>>();
+		onAnyQuestChange = new ArrayList<Achievement>();
+		byKilledCreature = new HashMap<String, List<Achievement>>();
+		onAnyKill = new ArrayList<Achievement>();
 	}
 
 	/**
@@ -93,6 +117,7 @@ public final class AchievementNotifier {
 			}
 			achievements.get(a.getCategory()).add(a);
 		}
+		indexDependencies();
 		//collect all identifiers from database
 		final Map<String, Integer> allIdentifiersInDatabase = collectAllIdentifiersFromDatabase();
 		//update stored data with configured achievements
@@ -130,6 +155,73 @@ public final class AchievementNotifier {
 		SingletonRepository.getLoginNotifier().addListener(new ReadAchievementsOnLogin());
 	}
 
+	/**
+	 * Builds the indexes that map changed quest slots and killed creatures to
+	 * the achievements that need to be checked.
+	 */
+	private void indexDependencies() {
+		for (final Category category : QUEST_CATEGORIES) {
+			final List<Achievement> list = achievements.get(category);
+			if (list == null) {
+				continue;
+			}
+			for (final Achievement achievement : list) {
+				final Collection<String> slots = DependencyAwareCondition.getQuestSlots(achievement.getCondition());
+				final Collection<String> creatures = DependencyAwareCondition.getKilledCreatures(achievement.getCondition());
+				if (isIndexable(slots) && (creatures != null) && creatures.isEmpty()) {
+					for (final String slot : slots) {
+						addToIndex(byQuestSlot, slot, achievement);
+					}
+				} else {
+					onAnyQuestChange.add(achievement);
+				}
+			}
+		}
+
+		final List<Achievement> fighting = achievements.get(Category.FIGHTING);
+		if (fighting != null) {
+			for (final Achievement achievement : fighting) {
+				final Collection<String> slots = DependencyAwareCondition.getQuestSlots(achievement.getCondition());
+				final Collection<String> creatures = DependencyAwareCondition.getKilledCreatures(achievement.getCondition());
+				if (isIndexable(creatures) && (slots != null) && slots.isEmpty()) {
+					for (final String creature : creatures) {
+						addToIndex(byKilledCreature, creature, achievement);
+					}
+				} else {
+					onAnyKill.add(achievement);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if an achievement can be indexed by its dependencies. Names with
+	 * placeholders like quest slots that contain the year can not.
+	 *
+	 * @param names names the achievement depends on
+	 * @return <code>true</code> if the names are known and fixed
+	 */
+	private static boolean isIndexable(final Collection<String> names) {
+		if ((names == null) || names.isEmpty()) {
+			return false;
+		}
+		for (final String name : names) {
+			if (name.contains("[")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void addToIndex(final Map<String, List<Achievement>> index, final String key, final Achievement achievement) {
+		List<Achievement> list = index.get(key);
+		if (list == null) {
+			list = new ArrayList<Achievement>();
+			index.put(key, list);
+		}
+		list.add(achievement);
+	}
+
 	/**
 	 * Checks if the achievement list has already been populated.
 	 */
@@ -182,21 +274,40 @@ public final class AchievementNotifier {
 		getAndCheckAchievementsInCategory(player, Category.FIGHTING);
 	}
 
+	/**
+	 * checks the achievements for a player that can be affected by killing a creature
+	 *
+	 * @param player
+	 * @param creature name of the killed creature
+	 */
+	public void onKill(final Player player, final String creature) {
+		if (creature == null) {
+			onKill(player);
+			return;
+		}
+		checkAndNotify(player, byKilledCreature.get(creature), onAnyKill);
+	}
+
 	/**
 	 * check all achievements for a player that are relevant on finishing a quest
 	 *
 	 * @param player
 	 */
 	public void onFinishQuest(final Player player) {
-		getAndCheckAchievementsInCategory(player, Category.QUEST);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_ADOS_ITEMS);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_SEMOS_MONSTER);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_KIRDNEH_ITEM);
-		getAndCheckAchievementsInCategory(player, Category.FRIEND);
-		getAndCheckAchievementsInCategory(player, Category.OBTAIN);
-		getAndCheckAchievementsInCategory(player, Category.PRODUCTION);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_MITHRILBOURGH_ENEMY_ARMY);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_KILL_BLORDROUGHS);
+		for (final Category category : QUEST_CATEGORIES) {
+			getAndCheckAchievementsInCategory(player, category);
+		}
+	}
+
+	/**
+	 * check the achievements for a player that can be affected by a change of
+	 * a quest slot
+	 *
+	 * @param player
+	 * @param questSlot name of the changed quest slot
+	 */
+	public void onQuestChange(final Player player, final String questSlot) {
+		checkAndNotify(player, byQuestSlot.get(questSlot), onAnyQuestChange);
 	}
 
 	/**
@@ -334,6 +445,21 @@ public final class AchievementNotifier {
 		}
 	}
 
+	/**
+	 * check the achievements of an index entry, and the ones that may depend
+	 * on anything
+	 *
+	 * @param player
+	 * @param indexed achievements found in the index, or <code>null</code>
+	 * @param always achievements with unknown dependencies
+	 */
+	private void checkAndNotify(final Player player, final List<Achievement> indexed, final List<Achievement> always) {
+		if (indexed != null) {
+			notifyPlayerAboutReachedAchievements(player, checkAchievements(player, indexed));
+		}
+		notifyPlayerAboutReachedAchievements(player, checkAchievements(player, always));
+	}
+
 	/**
 	 * Checks for each achievement if the player has reached it. in case of reaching
 	 * an achievement it starts logging and notifying about reaching.
@@ -352,7 +478,8 @@ public final class AchievementNotifier {
 		}
 
 		for (Achievement achievement : toCheck) {
-			if(achievement.isFulfilled(player) && !player.hasReachedAchievement(achievement.getIdentifier())) {
+			// the reached check is cheap, so do it before evaluating the condition
+			if(!player.hasReachedAchievement(achievement.getIdentifier()) && achievement.isFulfilled(player)) {
 				logReachingOfAnAchievement(player, achievement);
 				if (achievement.isActive()) {
 					reached.add(achievement);
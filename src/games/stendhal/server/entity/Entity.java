@@ -30,13 +30,17 @@ import games.stendhal.common.ItemTools;
 import games.stendhal.common.constants.Events;
 import games.stendhal.common.grammar.Grammar;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.profiler.ModificationStatistics;
 import games.stendhal.server.core.pathfinder.Node;
 import games.stendhal.server.entity.slot.EntitySlot;
 import games.stendhal.server.entity.slot.SlotNameInList;
 import games.stendhal.server.entity.slot.Slots;
+import marauroa.common.game.Attributes;
 import marauroa.common.game.Definition;
 import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
+import marauroa.common.game.RPEvent;
+import marauroa.common.game.RPLink;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
 
@@ -46,6 +50,12 @@ public abstract class Entity extends RPObject implements Killer {
 	 */
 	private static final Logger logger = Logger.getLogger(Entity.class);
 
+	/**
+	 * Skip notifications of entities that have not changed. Can be disabled
+	 * with the <code>stendhal.changetracking</code> system property.
+	 */
+	private static final boolean CHANGE_TRACKING = Boolean.parseBoolean(
+			System.getProperty("stendhal.changetracking", "true"));
 
 	protected Rectangle2D.Double area = new Rectangle2D.Double();
 
@@ -64,6 +74,12 @@ public abstract class Entity extends RPObject implements Killer {
 	private StendhalRPZone zone;
 	private StendhalRPZone lastZone;
 
+	/**
+	 * <code>true</code> if the entity, or an object in its slots, has changed
+	 * since the last {@link #notifyWorldAboutChanges()}.
+	 */
+	private boolean changed = true;
+
 	public Entity(final RPObject object) {
 		super(object);
 
@@ -200,6 +216,9 @@ public abstract class Entity extends RPObject implements Killer {
 			resistance = getInt("resistance");
 		}
 
+		if (zone != null) {
+			zone.onEntityAreaChanged(this);
+		}
 	}
 
 	public boolean hasDescription() {
@@ -485,6 +504,7 @@ public abstract class Entity extends RPObject implements Killer {
 
 		this.zone = zone;
 		this.lastZone = zone;
+		changed = true;
 	}
 
 	/**
@@ -532,10 +552,120 @@ public abstract class Entity extends RPObject implements Killer {
 		 * recognize.
 		 */
 		if (zone != null) {
+			final RPObject base = getBaseContainer();
+			if (CHANGE_TRACKING && !changed
+					&& (!(base instanceof Entity) || !((Entity) base).changed)) {
+				ModificationStatistics.recordSuppressed();
+				return;
+			}
+			changed = false;
+			if (base instanceof Entity) {
+				// the zone sends the changes of the whole base container
+				((Entity) base).changed = false;
+			}
+			ModificationStatistics.recordModified();
 			zone.modify(this);
 		}
 	}
 
+	/**
+	 * Marks the entity as changed, so that the next call of
+	 * {@link #notifyWorldAboutChanges()} is not skipped. Changes of the
+	 * attributes, slots, links, maps and events of entities are tracked
+	 * automatically. This needs to be called only when an object that is not
+	 * an entity, but contained in a slot of this entity, is modified directly.
+	 */
+	public void markChanged() {
+		changed = true;
+		final RPObject base = getBaseContainer();
+		if ((base != this) && (base instanceof Entity)) {
+			((Entity) base).changed = true;
+		}
+	}
+
+	@Override
+	public void put(final String attribute, final String value) {
+		super.put(attribute, value);
+		markChanged();
+	}
+
+	@Override
+	public String remove(final String attribute) {
+		final String res = super.remove(attribute);
+		markChanged();
+		return res;
+	}
+
+	@Override
+	public void put(final String map, final String key, final String value) {
+		super.put(map, key, value);
+		markChanged();
+	}
+
+	@Override
+	public String remove(final String map, final String key) {
+		final String res = super.remove(map, key);
+		markChanged();
+		return res;
+	}
+
+	@Override
+	public void addMap(final String map) {
+		super.addMap(map);
+		markChanged();
+	}
+
+	@Override
+	public Attributes removeMap(final String map) {
+		final Attributes res = super.removeMap(map);
+		markChanged();
+		return res;
+	}
+
+	@Override
+	public void addSlot(final String name) {
+		super.addSlot(name);
+		markChanged();
+	}
+
+	@Override
+	public void addSlot(final RPSlot slot) {
+		super.addSlot(slot);
+		markChanged();
+	}
+
+	@Override
+	public RPSlot removeSlot(final String name) {
+		final RPSlot res = super.removeSlot(name);
+		markChanged();
+		return res;
+	}
+
+	@Override
+	public void addLink(final String name, final RPObject object) {
+		super.addLink(name, object);
+		markChanged();
+	}
+
+	@Override
+	public void addLink(final RPLink link) {
+		super.addLink(link);
+		markChanged();
+	}
+
+	@Override
+	public RPLink removeLink(final String name) {
+		final RPLink res = super.removeLink(name);
+		markChanged();
+		return res;
+	}
+
+	@Override
+	public void addEvent(final RPEvent event) {
+		super.addEvent(event);
+		markChanged();
+	}
+
 	/**
 	 * Describes the entity (if a players looks at it).
 	 *
@@ -658,6 +788,7 @@ public abstract class Entity extends RPObject implements Killer {
 		}
 
 		if (moved && (zone != null)) {
+			zone.onEntityAreaChanged(this);
 			onMoved(oldX, oldY, x, y);
 		}
 	}
@@ -695,6 +826,10 @@ public abstract class Entity extends RPObject implements Killer {
 
 		this.area.height = height;
 		put("height", height);
+
+		if (zone != null) {
+			zone.onEntityAreaChanged(this);
+		}
 	}
 
 	/**
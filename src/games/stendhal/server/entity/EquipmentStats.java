@@ -0,0 +1,46 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+/**
+ * The attack and defense values an entity gets from its equipment.
+ * <p>
+ * Instances are cached by the RPEntity and thrown away when the equipped
+ * items change. The defense value depends on the level of the entity
+ * because of the minimum level of items, so the level it was calculated
+ * for is kept, too.
+ */
+final class EquipmentStats {
+	/** attack of held weapons, ammunition and ring */
+	final float atk;
+	/** ranged attack of held weapon and ammunition */
+	final float ratk;
+	/** defense of all equipped items */
+	final float def;
+	/** level of the entity the values were calculated for */
+	final int level;
+
+	/**
+	 * Creates a new EquipmentStats.
+	 *
+	 * @param atk attack of held weapons, ammunition and ring
+	 * @param ratk ranged attack of held weapon and ammunition
+	 * @param def defense of all equipped items
+	 * @param level level of the entity the values were calculated for
+	 */
+	EquipmentStats(final float atk, final float ratk, final float def, final int level) {
+		this.atk = atk;
+		this.ratk = ratk;
+		this.def = def;
+		this.level = level;
+	}
+}
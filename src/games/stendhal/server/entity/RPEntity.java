@@ -42,6 +42,7 @@ import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.ItemLogger;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
 import games.stendhal.server.core.engine.dbcommand.LogKillEventCommand;
 import games.stendhal.server.core.events.TurnListener;
@@ -121,6 +122,9 @@ public abstract class RPEntity extends CombatEntity {
 	protected CounterMap<Entity> damageReceived;
 	protected int totalDamageReceived;
 
+	/** cached attack and defense values of the equipment */
+	private EquipmentStats equipmentStats;
+
 	/**
 	 * To avoid using karma for damage calculations when the natural ability of
 	 * the fighters would mean they need no luck, we only use karma when the
@@ -1464,7 +1468,19 @@ public abstract class RPEntity extends CombatEntity {
 		final int taken = damage(amount);
 
 		if (hp <= 0) {
-			onDead(attacker);
+			final ZoneLogicExecutor executor = ZoneLogicExecutor.get();
+			if (executor.isInParallelPhase()) {
+				// dying changes global state, such as the statistics and
+				// the killer's quests. Skip it if the entity was healed or
+				// died in another way before the commit phase.
+				executor.defer(() -> {
+					if ((hp <= 0) && (getZone() != null)) {
+						onDead(attacker);
+					}
+				});
+			} else {
+				onDead(attacker);
+			}
 		}
 
 		return taken;
@@ -1625,7 +1641,7 @@ public abstract class RPEntity extends CombatEntity {
 				}
 			}
 
-			SingletonRepository.getAchievementNotifier().onKill(killer);
+			SingletonRepository.getAchievementNotifier().onKill(killer, killedName);
 
 			killer.notifyWorldAboutChanges();
 		}
@@ -2753,45 +2769,93 @@ public abstract class RPEntity extends CombatEntity {
 	 * Retrieves total ATK value of held weapons.
 	 */
 	public float getItemAtk() {
-		int weapon = 0;
-		int ring = 0;
+		return getEquipmentStats().atk;
+	}
 
-		final List<Item> weapons = getWeapons();
-		for (final Item weaponItem : weapons) {
-			weapon += weaponItem.getAttack();
-		}
+	/**
+	 * Retrieves total range attack value of held weapon & ammunition.
+	 */
+	public float getItemRatk() {
+		return getEquipmentStats().ratk;
+	}
 
-		// calculate ammo when not using RATK stat
-		if (!Testing.COMBAT && weapons.size() > 0) {
-			if (getWeapons().get(0).isOfClass("ranged")) {
-				weapon += getAmmoAtk();
-			}
-		}
+	public float getItemDef() {
+		return getEquipmentStats().def;
+	}
 
-		if (hasRing()) {
-			ring = getRing().getAttack();
-		}
+	/**
+	 * Forgets the cached attack and defense values of the equipment. This
+	 * needs to be called whenever an item is put into or removed from an
+	 * equipment slot, or the stats of an equipped item change.
+	 */
+	public void invalidateEquipmentStats() {
+		equipmentStats = null;
+	}
 
-		return weapon + ring;
+	/**
+	 * Gets the attack and defense values of the equipment, calculating them
+	 * if the equipment or the level of the entity has changed since the last
+	 * call.
+	 *
+	 * @return equipment stats
+	 */
+	private EquipmentStats getEquipmentStats() {
+		EquipmentStats res = equipmentStats;
+		if ((res == null) || (res.level != level)) {
+			res = calculateEquipmentStats();
+			equipmentStats = res;
+		}
+		return res;
 	}
 
 	/**
-	 * Retrieves total range attack value of held weapon & ammunition.
+	 * Calculates the attack and defense values of the equipment.
+	 *
+	 * @return equipment stats
 	 */
-	public float getItemRatk() {
-		float ratk = 0;
+	private EquipmentStats calculateEquipmentStats() {
 		final List<Item> weapons = getWeapons();
+		final float ammo = getAmmoAtk();
+		final Item ring = getRing();
+
+		int weapon = 0;
+		for (final Item weaponItem : weapons) {
+			weapon += weaponItem.getAttack();
+		}
 
+		float ratk = 0;
 		if (weapons.size() > 0) {
-			final Item held = getWeapons().get(0);
+			final Item held = weapons.get(0);
 			ratk += held.getRangedAttack();
 
 			if (held.isOfClass("ranged")) {
-				ratk += getAmmoAtk();
+				ratk += ammo;
+				// calculate ammo when not using RATK stat
+				if (!Testing.COMBAT) {
+					weapon += ammo;
+				}
 			}
 		}
 
-		return ratk;
+		int atk = weapon;
+		if (ring != null) {
+			atk += ring.getAttack();
+		}
+
+		float def = 0;
+		for (final Item item : getDefenseItems()) {
+			def += (int) (item.getDefense() / getItemLevelModifier(item));
+		}
+		if (ring != null) {
+			def += (int) (ring.getDefense() / getItemLevelModifier(ring));
+		}
+		int weaponDef = 0;
+		for (final Item weaponItem : weapons) {
+			weaponDef += weaponItem.getDefense() / getItemLevelModifier(weaponItem);
+		}
+		def += weaponDef;
+
+		return new EquipmentStats(atk, ratk, def, level);
 	}
 
 	/**
@@ -2812,61 +2876,6 @@ public abstract class RPEntity extends CombatEntity {
 		return ammo;
 	}
 
-	public float getItemDef() {
-		int shield = 0;
-		int armor = 0;
-		int helmet = 0;
-		int legs = 0;
-		int boots = 0;
-		int cloak = 0;
-		int weapon = 0;
-		int ring = 0;
-
-		Item item;
-
-		if (hasShield()) {
-			item = getShield();
-			shield = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		if (hasArmor()) {
-			item = getArmor();
-			armor = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		if (hasHelmet()) {
-			item = getHelmet();
-			helmet = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		if (hasLegs()) {
-			item = getLegs();
-			legs = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		if (hasBoots()) {
-			item = getBoots();
-			boots = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		if (hasCloak()) {
-			item = getCloak();
-			cloak = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		if (hasRing()) {
-			item = getRing();
-			ring = (int) (item.getDefense() / getItemLevelModifier(item));
-		}
-
-		final List<Item> targetWeapons = getWeapons();
-		for (final Item weaponItem : targetWeapons) {
-			weapon += weaponItem.getDefense() / getItemLevelModifier(weaponItem);
-		}
-
-		return shield + armor + cloak + helmet + legs + boots + weapon + ring;
-	}
-
 	/**
 	 * get all items that affect a player's defensive value except the weapon
 	 *
@@ -2900,6 +2909,7 @@ public abstract class RPEntity extends CombatEntity {
 	 * Recalculates item based atk and def.
 	 */
 	public void updateItemAtkDef() {
+		invalidateEquipmentStats();
 		put("atk_item", ((int) getItemAtk()));
 		if (Testing.COMBAT) {
 			put("ratk_item", ((int) getItemRatk()));
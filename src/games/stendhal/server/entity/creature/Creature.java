@@ -911,6 +911,17 @@ public class Creature extends NPC {
 		// do nothing
 	}
 
+	@Override
+	public boolean isActiveInEmptyZone() {
+		// only healing is done in empty zones, and that can be caught up with
+		return false;
+	}
+
+	@Override
+	public void onZoneWakeUp(final int fromTurn, final int toTurn) {
+		healer.healSkippedTurns(this, fromTurn, toTurn);
+	}
+
 	@Override
 	public void logic() {
 		healer.heal(this);
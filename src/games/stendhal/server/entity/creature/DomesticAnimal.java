@@ -145,6 +145,12 @@ public abstract class DomesticAnimal extends Creature {
 		}
 	}
 
+	@Override
+	public boolean isActiveInEmptyZone() {
+		// animals get hungry and move around without players, too
+		return true;
+	}
+
 	public void setWeight(final int weight) {
 		this.weight = weight;
 		put("weight", weight);
@@ -40,4 +40,13 @@ class Healer implements HealerBehavior {
 
 	}
 
+	@Override
+	public void healSkippedTurns(final Creature creature, final int fromTurn, final int toTurn) {
+		// number of turns that are a multiple of frequency
+		final int times = toTurn / frequency - fromTurn / frequency;
+		if ((times > 0) && (creature.getHP() > 0)) {
+			creature.heal((int) Math.min((long) amount * times, Integer.MAX_VALUE));
+		}
+	}
+
 }
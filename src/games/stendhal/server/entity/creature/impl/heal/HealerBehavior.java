@@ -18,4 +18,14 @@ public interface HealerBehavior {
 	void init(String healingProfile);
 	void heal(Creature creature);
 
+	/**
+	 * Applies the healing of turns in which the logic of the creature was
+	 * skipped because its zone was asleep.
+	 *
+	 * @param creature creature to heal
+	 * @param fromTurn last turn before the skipped turns
+	 * @param toTurn last skipped turn
+	 */
+	void healSkippedTurns(Creature creature, int fromTurn, int toTurn);
+
 }
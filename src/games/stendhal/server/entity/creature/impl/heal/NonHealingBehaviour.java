@@ -22,6 +22,11 @@ final class NonHealingBehaviour implements HealerBehavior {
 		// does not heal;
 	}
 
+	@Override
+	public void healSkippedTurns(final Creature creature, final int fromTurn, final int toTurn) {
+		// does not heal;
+	}
+
 	@Override
 	public void init(final String healingProfile) {
 		// does not need init
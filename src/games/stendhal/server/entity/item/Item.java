@@ -427,6 +427,17 @@ public class Item extends PassiveEntity implements TurnListener, EquipListener,
 	public void repair() {
 		if(has("deterioration")) {
 			put("deterioration", DEFAULT_DETERIORATION);
+			onStatsChanged();
+		}
+	}
+
+	/**
+	 * Tells the entity holding this item that its attack or defense values
+	 * have changed.
+	 */
+	protected void onStatsChanged() {
+		if (isContained() && (getContainer() instanceof RPEntity)) {
+			((RPEntity) getContainer()).invalidateEquipmentStats();
 		}
 	}
 
@@ -1018,6 +1029,9 @@ public class Item extends PassiveEntity implements TurnListener, EquipListener,
 		// this.prevEntity = equipper;
 		// this.prevSlot   = slot;
 
+		if (equipper != null) {
+			equipper.invalidateEquipmentStats();
+		}
 		return false;
 	}
 
@@ -16,7 +16,6 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 
 import games.stendhal.common.grammar.Grammar;
-import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.item.Item;
@@ -85,8 +84,7 @@ public class MessagingUseBehavior implements UseBehavior {
 		if (publicMessage != null) {
 			if (user instanceof Player) {
 				Player player = (Player) user;
-				player.put("text", publicMessage);
-				SingletonRepository.getRuleProcessor().removePlayerText(player);
+				player.say(publicMessage);
 			} else if (user instanceof NPC) {
 				((NPC) user).say(publicMessage);
 			}
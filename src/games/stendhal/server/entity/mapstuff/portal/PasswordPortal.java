@@ -16,6 +16,7 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.player.Player;
 
@@ -112,7 +113,9 @@ public class PasswordPortal extends Portal {
 				if (acceptedMessage != null) {
 					player.sendPrivateText(acceptedMessage);
 				}
-				usePortal(player);
+				// portal logic runs in the parallel phase. Using the portal
+				// changes the zone, and the follow up depends on the result
+				ZoneLogicExecutor.get().defer(() -> usePortal(player));
 			} else if (rejectedMessage != null) {
 				player.sendPrivateText(rejectedMessage);
 			}
@@ -320,6 +320,28 @@ public abstract class NPC extends DressedEntity {
 		}
 	}
 
+	/**
+	 * Checks whether the NPC has to run its logic even if there are no
+	 * players in its zone. Zones without players and without such NPCs are
+	 * put to sleep, and their logic is skipped.
+	 *
+	 * @return <code>true</code> if the zone must stay awake for this NPC
+	 */
+	public boolean isActiveInEmptyZone() {
+		return true;
+	}
+
+	/**
+	 * Called when the zone of the NPC wakes up, so that the NPC can catch up
+	 * with the turns in which its logic was skipped.
+	 *
+	 * @param fromTurn last turn in which the logic of the zone was run
+	 * @param toTurn last turn in which the logic was skipped
+	 */
+	public void onZoneWakeUp(final int fromTurn, final int toTurn) {
+		// nothing to catch up with by default
+	}
+
 	@Override
 	public void logic() {
 		if (idler != null) {
@@ -11,6 +11,7 @@
  ***************************************************************************/
 package games.stendhal.server.entity.npc;
 
+import games.stendhal.server.entity.npc.behaviour.impl.idle.WanderIdleBehaviour;
 
 /**
  * A stripped down SpeakerNPC that does not interact with players
@@ -36,6 +37,12 @@ public class SilentNPC extends PassiveNPC {
 		updateModifiedAttributes();
 	}
 
+	@Override
+	public boolean isActiveInEmptyZone() {
+		// wandering is only done when there are players around
+		return (idler != null) && !(idler instanceof WanderIdleBehaviour);
+	}
+
 	@Override
 	public void logic() {
 		if (this.getZone().getPlayerAndFriends().isEmpty()) {
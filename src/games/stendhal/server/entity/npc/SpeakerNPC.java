@@ -11,8 +11,11 @@
  ***************************************************************************/
 package games.stendhal.server.entity.npc;
 
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -31,6 +34,7 @@ import games.stendhal.common.parser.ExpressionType;
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.CollisionAction;
 import games.stendhal.server.entity.Killer;
 import games.stendhal.server.entity.RPEntity;
@@ -161,6 +165,9 @@ public class SpeakerNPC extends PassiveNPC {
 	 */
 	private long lastMessageTurn;
 
+	/** Players who said something near this NPC since its last pre-logic. */
+	private final List<Player> speakers = new ArrayList<Player>(2);
+
 	/**
 	 * The player who is currently talking to the NPC, or null if the NPC is
 	 * currently not taking part in a conversation.
@@ -252,28 +259,41 @@ public class SpeakerNPC extends PassiveNPC {
 	}
 
 	/**
-	 * Gets all players that have recently (this turn?) talked and are standing
-	 * nearby the NPC. Nearby means that they are standing less than <i>range</i>
-	 * squares away horizontally and less than <i>range</i> squares away
-	 * vertically.
+	 * Called by the zone when a player nearby said something. The NPC reacts
+	 * to it in its next pre-logic.
+	 *
+	 * @param player player who spoke
+	 */
+	public void onPlayerSpoke(final Player player) {
+		if (!speakers.contains(player)) {
+			speakers.add(player);
+		}
+	}
+
+	/**
+	 * Gets the players that have talked since the last pre-logic and are
+	 * still standing nearby the NPC. Nearby means that they are standing less
+	 * than <i>range</i> squares away horizontally and less than <i>range</i>
+	 * squares away vertically.
 	 *
-	 * @param npc
 	 * @param range
 	 * @return A list of nearby players who have recently talked.
 	 */
-	private List<Player> getNearbyPlayersThatHaveSpoken(final NPC npc, final double range) {
-		final int x = npc.getX();
-		final int y = npc.getY();
+	private List<Player> getNearbyPlayersThatHaveSpoken(final double range) {
+		if (speakers.isEmpty()) {
+			return Collections.emptyList();
+		}
 
-		final List<Player> players = new LinkedList<Player>();
+		final int x = getX();
+		final int y = getY();
 
-		for (final Player player : getZone().getPlayers()) {
-			final int px = player.getX();
-			final int py = player.getY();
+		final List<Player> players = new LinkedList<Player>();
 
-			if (player.has("text")) {
-				int dx = px - x;
-				int dy = py - y;
+		for (final Player player : speakers) {
+			// the text is removed at the end of the turn
+			if (player.has("text") && (player.getZone() == getZone())) {
+				int dx = player.getX() - x;
+				int dy = player.getY() - y;
 
 				if (Math.abs(dx)<range && Math.abs(dy)<range) { // check rectangular area
 //				if (dx*dx + dy*dy < range*range) { // optionally we could check a circular area
@@ -281,6 +301,7 @@ public class SpeakerNPC extends PassiveNPC {
 				}
 			}
 		}
+		speakers.clear();
 
 		return players;
 	}
@@ -304,7 +325,8 @@ public class SpeakerNPC extends PassiveNPC {
 
 		int squaredDistanceOfNearestPlayer = Integer.MAX_VALUE;
 
-		for (final Player player : getZone().getPlayers()) {
+		final Rectangle2D area = new Rectangle2D.Double(x - range, y - range, 2 * range + 1, 2 * range + 1);
+		for (final Player player : getZone().getEntitiesIn(area, Player.class)) {
 			final int px = player.getX();
 			final int py = player.getY();
 
@@ -406,6 +428,10 @@ public class SpeakerNPC extends PassiveNPC {
 	public void setPerceptionRange(int perceptionRange) {
 		super.setPerceptionRange(perceptionRange);
 		squaredGoodByeRange = getSquaredGoodByeRange();
+		final StendhalRPZone zone = getZone();
+		if (zone != null) {
+			zone.updateSpeechRange(perceptionRange);
+		}
 	}
 
 	private long secondsToTurns(final long seconds) {
@@ -424,10 +450,16 @@ public class SpeakerNPC extends PassiveNPC {
 		// respond to player in the chat log before the player says something.
 	}
 
+	@Override
+	public boolean isActiveInEmptyZone() {
+		return actingAlone || isTalking();
+	}
+
 	@Override
 	public void preLogic() {
 
 		if (this.getZone().getPlayerAndFriends().isEmpty() && !isTalking() && !actingAlone) {
+			speakers.clear();
 			return;
 		}
 
@@ -476,8 +508,7 @@ public class SpeakerNPC extends PassiveNPC {
 		}
 
 		// and finally react on anybody talking to us
-		final List<Player> speakers = getNearbyPlayersThatHaveSpoken(this, getPerceptionRange());
-		for (final Player speaker : speakers) {
+		for (final Player speaker : getNearbyPlayersThatHaveSpoken(getPerceptionRange())) {
 			tell(speaker, speaker.get("text"));
 		}
 
@@ -886,7 +917,7 @@ public class SpeakerNPC extends PassiveNPC {
 		// If we are attending another player make this one wait.
 		if (attending != null && !player.equals(attending)) {
 			if (ConversationPhrases.GREETING_MESSAGES.contains(
-					ConversationParser.parse(text).getTriggerExpression().getNormalized())) {
+					ConversationParser.parseCached(text).getTriggerExpression().getNormalized())) {
 				logger.debug("Already attending a player");
 
 				if (waitMessage != null) {
@@ -894,7 +925,7 @@ public class SpeakerNPC extends PassiveNPC {
 				}
 
 				if (waitAction != null) {
-					final Sentence sentence = ConversationParser.parse(text);
+					final Sentence sentence = ConversationParser.parseCached(text);
 					// Note: sentence is currently not yet used in
 					// the called handler functions.
 					waitAction.fire(player, sentence, new EventRaiser(this));
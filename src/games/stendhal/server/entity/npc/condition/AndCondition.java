@@ -13,6 +13,7 @@
 package games.stendhal.server.entity.npc.condition;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import com.google.common.collect.ImmutableList;
@@ -29,7 +30,7 @@ import games.stendhal.server.entity.player.Player;
  * It evaluates to <code>true</code>, iff each condition evaluates to true.
  */
 @Dev(category=Category.LOGIC, label="And")
-public class AndCondition implements ChatCondition {
+public class AndCondition implements DependencyAwareCondition {
 
 	private final List<ChatCondition> conditions;
 
@@ -62,6 +63,16 @@ public class AndCondition implements ChatCondition {
 		this.conditions = ImmutableList.copyOf(conditions);
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return DependencyAwareCondition.getQuestSlots(conditions);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return DependencyAwareCondition.getKilledCreatures(conditions);
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		for (final ChatCondition condition : conditions) {
@@ -0,0 +1,108 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.condition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import games.stendhal.server.entity.npc.ChatCondition;
+
+/**
+ * A condition that can tell which player data its result depends on. This
+ * is used to re-evaluate achievements only when data they read has changed.
+ * <p>
+ * Conditions that do not implement this interface may depend on anything.
+ */
+public interface DependencyAwareCondition extends ChatCondition {
+
+	/**
+	 * Gets the quest slots this condition reads.
+	 *
+	 * @return names of the quest slots, or <code>null</code> if the
+	 * 	condition may depend on any quest slot
+	 */
+	Collection<String> getQuestSlots();
+
+	/**
+	 * Gets the creatures whose kill counts this condition reads.
+	 *
+	 * @return names of the creatures, or <code>null</code> if the condition
+	 * 	may depend on the kills of any creature
+	 */
+	Collection<String> getKilledCreatures();
+
+	/**
+	 * Gets the quest slots a condition reads.
+	 *
+	 * @param condition condition
+	 * @return names of the quest slots, or <code>null</code> if they are not known
+	 */
+	static Collection<String> getQuestSlots(final ChatCondition condition) {
+		if (condition instanceof DependencyAwareCondition) {
+			return ((DependencyAwareCondition) condition).getQuestSlots();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the creatures whose kill counts a condition reads.
+	 *
+	 * @param condition condition
+	 * @return names of the creatures, or <code>null</code> if they are not known
+	 */
+	static Collection<String> getKilledCreatures(final ChatCondition condition) {
+		if (condition instanceof DependencyAwareCondition) {
+			return ((DependencyAwareCondition) condition).getKilledCreatures();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the quest slots read by any of the conditions.
+	 *
+	 * @param conditions conditions
+	 * @return names of the quest slots, or <code>null</code> if they are not
+	 * 	known for one of the conditions
+	 */
+	static Collection<String> getQuestSlots(final Iterable<ChatCondition> conditions) {
+		final Set<String> res = new LinkedHashSet<String>();
+		for (final ChatCondition condition : conditions) {
+			final Collection<String> slots = getQuestSlots(condition);
+			if (slots == null) {
+				return null;
+			}
+			res.addAll(slots);
+		}
+		return Collections.unmodifiableSet(res);
+	}
+
+	/**
+	 * Gets the creatures whose kill counts are read by any of the conditions.
+	 *
+	 * @param conditions conditions
+	 * @return names of the creatures, or <code>null</code> if they are not
+	 * 	known for one of the conditions
+	 */
+	static Collection<String> getKilledCreatures(final Iterable<ChatCondition> conditions) {
+		final Set<String> res = new LinkedHashSet<String>();
+		for (final ChatCondition condition : conditions) {
+			final Collection<String> creatures = getKilledCreatures(condition);
+			if (creatures == null) {
+				return null;
+			}
+			res.addAll(creatures);
+		}
+		return Collections.unmodifiableSet(res);
+	}
+}
@@ -14,6 +14,8 @@ package games.stendhal.server.entity.npc.condition;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.config.annotations.Dev;
 import games.stendhal.server.core.config.annotations.Dev.Category;
@@ -26,7 +28,7 @@ import games.stendhal.server.entity.player.Player;
  * An inverse condition.
  */
 @Dev(category=Category.LOGIC, label="Not")
-public class NotCondition implements ChatCondition {
+public class NotCondition implements DependencyAwareCondition {
 
 	private final ChatCondition condition;
 
@@ -40,6 +42,16 @@ public class NotCondition implements ChatCondition {
 		this.condition = checkNotNull(condition);
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return DependencyAwareCondition.getQuestSlots(condition);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return DependencyAwareCondition.getKilledCreatures(condition);
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		return !condition.fire(player, sentence, entity);
@@ -13,6 +13,7 @@
 package games.stendhal.server.entity.npc.condition;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import com.google.common.collect.ImmutableList;
@@ -28,7 +29,7 @@ import games.stendhal.server.entity.player.Player;
  * An or condition.
  */
 @Dev(category=Category.LOGIC, label="Or")
-public class OrCondition implements ChatCondition {
+public class OrCondition implements DependencyAwareCondition {
 
 	private final List<ChatCondition> conditions;
 
@@ -52,6 +53,16 @@ public class OrCondition implements ChatCondition {
 		this.conditions = ImmutableList.copyOf(conditions);
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return DependencyAwareCondition.getQuestSlots(conditions);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return DependencyAwareCondition.getKilledCreatures(conditions);
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		for (final ChatCondition condition : conditions) {
@@ -13,6 +13,8 @@
 package games.stendhal.server.entity.npc.condition;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +25,6 @@ import games.stendhal.server.constants.KillType;
 import games.stendhal.server.core.config.annotations.Dev;
 import games.stendhal.server.core.config.annotations.Dev.Category;
 import games.stendhal.server.entity.Entity;
-import games.stendhal.server.entity.npc.ChatCondition;
 import games.stendhal.server.entity.player.Player;
 
 /**
@@ -34,7 +35,7 @@ import games.stendhal.server.entity.player.Player;
  * @author madmetzger
  */
 @Dev(category=Category.KILLS, label="Kills?")
-public class PlayerHasKilledNumberOfCreaturesCondition implements ChatCondition {
+public class PlayerHasKilledNumberOfCreaturesCondition implements DependencyAwareCondition {
 
 	private final Map<String, Integer> creatures;
 
@@ -130,6 +131,16 @@ public class PlayerHasKilledNumberOfCreaturesCondition implements ChatCondition
 		this.killType = killType;
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return Collections.unmodifiableSet(creatures.keySet());
+	}
+
 	@Override
 	public boolean fire(Player player, Sentence sentence, Entity npc) {
 		for (Entry<String, Integer> entry : creatures.entrySet()) {
@@ -14,18 +14,20 @@ package games.stendhal.server.entity.npc.condition;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.config.annotations.Dev;
 import games.stendhal.server.core.config.annotations.Dev.Category;
 import games.stendhal.server.entity.Entity;
-import games.stendhal.server.entity.npc.ChatCondition;
 import games.stendhal.server.entity.player.Player;
 
 /**
  * Is this quest not completed?
  */
 @Dev(category=Category.IGNORE, label="NotCompleted?")
-public class QuestNotCompletedCondition implements ChatCondition {
+public class QuestNotCompletedCondition implements DependencyAwareCondition {
 
 	private final String questname;
 
@@ -39,6 +41,16 @@ public class QuestNotCompletedCondition implements ChatCondition {
 		this.questname = checkNotNull(questname);
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return Collections.singletonList(questname);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return Collections.emptyList();
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		return (!player.isQuestCompleted(questname));
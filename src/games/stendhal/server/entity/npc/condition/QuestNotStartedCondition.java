@@ -14,11 +14,13 @@ package games.stendhal.server.entity.npc.condition;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.config.annotations.Dev;
 import games.stendhal.server.core.config.annotations.Dev.Category;
 import games.stendhal.server.entity.Entity;
-import games.stendhal.server.entity.npc.ChatCondition;
 import games.stendhal.server.entity.npc.ConditionBuilder;
 import games.stendhal.server.entity.player.Player;
 
@@ -26,7 +28,7 @@ import games.stendhal.server.entity.player.Player;
  * Was this quest not started yet?
  */
 @Dev(category=Category.IGNORE, label="NotStarted?")
-public class QuestNotStartedCondition implements ChatCondition {
+public class QuestNotStartedCondition implements DependencyAwareCondition {
 
 	private final String questname;
 
@@ -40,6 +42,16 @@ public class QuestNotStartedCondition implements ChatCondition {
 		this.questname = checkNotNull(questname);
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return Collections.singletonList(questname);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return Collections.emptyList();
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		return (!player.hasQuest(questname) || "rejected".equals(player.getQuest(questname, 0)));
@@ -14,12 +14,14 @@ package games.stendhal.server.entity.npc.condition;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import games.stendhal.common.MathHelper;
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.config.annotations.Dev;
 import games.stendhal.server.core.config.annotations.Dev.Category;
 import games.stendhal.server.entity.Entity;
-import games.stendhal.server.entity.npc.ChatCondition;
 import games.stendhal.server.entity.player.Player;
 /**
  * Condition to check if the value in a quest slot is greater than an expected value. If the value is not a number, it is treated as 0.
@@ -27,7 +29,7 @@ import games.stendhal.server.entity.player.Player;
  * @author madmetzger
  */
 @Dev(category=Category.QUEST_SLOT, label="State?")
-public class QuestStateGreaterThanCondition implements ChatCondition {
+public class QuestStateGreaterThanCondition implements DependencyAwareCondition {
 
 	/**
 	 * expected value to compare against
@@ -56,6 +58,16 @@ public class QuestStateGreaterThanCondition implements ChatCondition {
 		this.index = index;
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return Collections.singletonList(questname);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return Collections.emptyList();
+	}
+
 	@Override
 	public boolean fire(Player player, Sentence sentence, Entity npc) {
 		if(player.hasQuest(questname)) {
@@ -14,11 +14,13 @@ package games.stendhal.server.entity.npc.condition;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.config.annotations.Dev;
 import games.stendhal.server.core.config.annotations.Dev.Category;
 import games.stendhal.server.entity.Entity;
-import games.stendhal.server.entity.npc.ChatCondition;
 import games.stendhal.server.entity.npc.ConditionBuilder;
 import games.stendhal.server.entity.player.Player;
 
@@ -26,7 +28,7 @@ import games.stendhal.server.entity.player.Player;
  * Does the quest state start with the specified String?
  */
 @Dev(category=Category.CHAT, label="State?")
-public class QuestStateStartsWithCondition implements ChatCondition {
+public class QuestStateStartsWithCondition implements DependencyAwareCondition {
 
 	private final String questname;
 	private final String state;
@@ -44,6 +46,16 @@ public class QuestStateStartsWithCondition implements ChatCondition {
 		this.state = checkNotNull(state);
 	}
 
+	@Override
+	public Collection<String> getQuestSlots() {
+		return Collections.singletonList(questname);
+	}
+
+	@Override
+	public Collection<String> getKilledCreatures() {
+		return Collections.emptyList();
+	}
+
 	@Override
 	public boolean fire(final Player player, final Sentence sentence, final Entity entity) {
 		return (player.hasQuest(questname) && player.getQuest(questname).startsWith(state));
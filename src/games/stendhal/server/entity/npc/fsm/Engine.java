@@ -48,6 +48,9 @@ public class Engine {
 	// FSM state transition table
 	private final List<Transition> stateTransitionTable = new LinkedList<Transition>();
 
+	// index of the transition table, null if it has to be rebuilt
+	private TransitionIndex transitionIndex;
+
 	// current FSM state
 	private ConversationStates currentState = ConversationStates.IDLE;
 
@@ -289,6 +292,7 @@ public class Engine {
 			boolean secondary, final ConversationStates nextState, final String reply, final ChatAction action, final String label) {
 		if (triggerExpressions!=null && !triggerExpressions.isEmpty()) {
 			stateTransitionTable.add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action, label));
+			transitionIndex = null;
 		}
 	}
 
@@ -314,6 +318,7 @@ public class Engine {
 			boolean secondary, final ConversationStates nextState, final String reply, final ChatAction action) {
 		if (triggerExpressions!=null && !triggerExpressions.isEmpty()) {
 			stateTransitionTable.add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action));
+			transitionIndex = null;
 		}
 	}
 
@@ -336,6 +341,7 @@ public class Engine {
 			if (transition.checkLabel(label)) {
 				itr.remove();
 				res = true;
+				transitionIndex = null;
 			}
 		}
 		return res;
@@ -355,6 +361,7 @@ public class Engine {
 		Transition transition = get(state, trigger, condition);
 		while (transition != null) {
 			stateTransitionTable.remove(transition);
+			transitionIndex = null;
 			transition = get(state, trigger, condition);
 		}
 		return stateTransitionTable.indexOf(transition) < 0;
@@ -442,7 +449,7 @@ public class Engine {
 	 * @return true if a transition was made, false otherwise
 	 */
 	public boolean step(final Player player, final String text) {
-		final Sentence sentence = ConversationParser.parse(text);
+		final Sentence sentence = ConversationParser.parseCached(text);
 
 		if (sentence.hasError()) {
 			logger.warn("problem parsing the sentence '" + text + "': "
@@ -501,7 +508,7 @@ public class Engine {
 		logger.debug(">>> " + text);
 		speakerNPC.remove("text");
 
-		final Sentence sentence = ConversationParser.parse(text);
+		final Sentence sentence = ConversationParser.parseCached(text);
 
 		if (sentence.hasError()) {
 			logger.warn("problem parsing the sentence '" + text + "': "
@@ -549,8 +556,10 @@ public class Engine {
 		final TransitionSet preferredTransitions = new TransitionSet();
 		final TransitionSet secondaryTransitions = new TransitionSet();
 
-		// match with all the registered transitions
-		for (final Transition transition : stateTransitionTable) {
+		// match with the registered transitions that can match the input
+		final List<Transition> candidates = getTransitionIndex().getCandidates(type,
+				currentState, sentence.getTriggerExpression());
+		for (final Transition transition : candidates) {
 			if (matchesTransition(type, sentence, transition)) {
 				if (transition.isConditionFulfilled(player, sentence, speakerNPC)) {
 					if (transition.isPreferred()) {
@@ -601,6 +610,19 @@ public class Engine {
 		}
 	}
 
+	/**
+	 * Gets the index of the transition table, rebuilding it if the table has
+	 * been changed.
+	 *
+	 * @return index
+	 */
+	private TransitionIndex getTransitionIndex() {
+		if (transitionIndex == null) {
+			transitionIndex = new TransitionIndex(stateTransitionTable);
+		}
+		return transitionIndex;
+	}
+
 	/**
 	 * Look for a match between given sentence and transition in the current state.
 	 * TODO mf - refactor match type handling
@@ -0,0 +1,176 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.common.parser.Expression;
+import games.stendhal.server.entity.npc.ConversationStates;
+
+/**
+ * Index of the transition table of an {@link Engine} by state and trigger
+ * text.
+ * <p>
+ * Triggers without an ExpressionMatcher can only be matched exactly or by
+ * their normalized form by input with the same text, so they are looked up in
+ * hash maps. Transitions with a matcher trigger are always candidates for
+ * these match types. Similarity matching still has to check all transitions
+ * of the state. The index only selects candidates, which still have to be
+ * checked with {@link MatchType#match}. Candidates are returned in the order
+ * of the transition table, so that the result is the same as when checking
+ * the whole table.
+ */
+final class TransitionIndex {
+
+	/** transitions of one state */
+	private static final class StateTransitions {
+		/** all transitions */
+		final List<Transition> all = new ArrayList<Transition>();
+		/** transitions by original trigger text */
+		final Map<String, List<Transition>> byOriginal = new HashMap<String, List<Transition>>();
+		/** transitions by normalized trigger text */
+		final Map<String, List<Transition>> byNormalized = new HashMap<String, List<Transition>>();
+		/** transitions with at least one trigger using an ExpressionMatcher */
+		final List<Transition> withMatcher = new ArrayList<Transition>();
+	}
+
+	private final Map<ConversationStates, StateTransitions> states =
+			new EnumMap<ConversationStates, StateTransitions>(ConversationStates.class);
+	/** position of each transition in the transition table */
+	private final Map<Transition, Integer> positions = new IdentityHashMap<Transition, Integer>();
+
+	/**
+	 * Creates a new index.
+	 *
+	 * @param transitions transition table
+	 */
+	TransitionIndex(final List<Transition> transitions) {
+		int position = 0;
+		for (final Transition transition : transitions) {
+			positions.put(transition, Integer.valueOf(position++));
+			StateTransitions entry = states.get(transition.getState());
+			if (entry == null) {
+				entry = new StateTransitions();
+				states.put(transition.getState(), entry);
+			}
+			entry.all.add(transition);
+			boolean matcher = false;
+			for (final Expression trigger : transition.getTriggers()) {
+				if (trigger.getMatcher() != null) {
+					matcher = true;
+				} else {
+					addTo(entry.byOriginal, trigger.getOriginal(), transition);
+					addTo(entry.byNormalized, trigger.getNormalized(), transition);
+				}
+			}
+			if (matcher) {
+				entry.withMatcher.add(transition);
+			}
+		}
+	}
+
+	private static void addTo(final Map<String, List<Transition>> map, final String key,
+			final Transition transition) {
+		List<Transition> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<Transition>(1);
+			map.put(key, list);
+		}
+		// a transition may have several triggers with the same text
+		if (list.isEmpty() || (list.get(list.size() - 1) != transition)) {
+			list.add(transition);
+		}
+	}
+
+	/**
+	 * Gets the transitions that may match the input.
+	 *
+	 * @param type match type
+	 * @param currentState current state of the engine
+	 * @param trigger trigger expression of the input
+	 * @return candidates in the order of the transition table
+	 */
+	List<Transition> getCandidates(final MatchType type, final ConversationStates currentState,
+			final Expression trigger) {
+		final StateTransitions entry;
+		switch (type) {
+		case EXACT_MATCH:
+		case NORMALIZED_MATCH:
+		case SIMILAR_MATCH:
+			entry = states.get(currentState);
+			break;
+		default:
+			if (currentState == ConversationStates.IDLE) {
+				return Collections.emptyList();
+			}
+			entry = states.get(ConversationStates.ANY);
+			break;
+		}
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+
+		switch (type) {
+		case EXACT_MATCH:
+		case ABSOLUTE_JUMP:
+			return merge(entry.byOriginal.get(trigger.getOriginal()), entry.withMatcher);
+		case NORMALIZED_MATCH:
+		case NORMALIZED_JUMP:
+			return merge(entry.byNormalized.get(trigger.getNormalized()), entry.withMatcher);
+		default:
+			return entry.all;
+		}
+	}
+
+	/**
+	 * Merges two lists of transitions ordered by their position in the table.
+	 *
+	 * @param a first list, may be <code>null</code>
+	 * @param b second list
+	 * @return merged list without duplicates
+	 */
+	private List<Transition> merge(final List<Transition> a, final List<Transition> b) {
+		if ((a == null) || a.isEmpty()) {
+			return b;
+		}
+		if (b.isEmpty()) {
+			return a;
+		}
+		final List<Transition> result = new ArrayList<Transition>(a.size() + b.size());
+		int i = 0;
+		int j = 0;
+		while ((i < a.size()) && (j < b.size())) {
+			final Transition ta = a.get(i);
+			final Transition tb = b.get(j);
+			if (ta == tb) {
+				result.add(ta);
+				i++;
+				j++;
+			} else if (positions.get(ta).intValue() < positions.get(tb).intValue()) {
+				result.add(ta);
+				i++;
+			} else {
+				result.add(tb);
+				j++;
+			}
+		}
+		result.addAll(a.subList(i, a.size()));
+		result.addAll(b.subList(j, b.size()));
+		return result;
+	}
+}
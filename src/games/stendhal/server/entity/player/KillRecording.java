@@ -12,24 +12,151 @@
  ***************************************************************************/
 package games.stendhal.server.entity.player;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import games.stendhal.common.MathHelper;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
 
 /**
  * recording of killings.
+ * <p>
+ * The kill counts are kept in arrays indexed by a number assigned to each
+ * killed creature name, so that checking and counting kills does not need
+ * to parse the strings stored in the <code>!kills</code> slot. The arrays
+ * are loaded from the slot when they are first needed, and every change is
+ * also written to the slot, so that the slot is always ready to be saved.
+ * All changes of the kill counts must be done through this class.
  *
  * @author hendrik
  */
 class KillRecording {
-	private static final String KILL_SLOT_NAME = "!kills";
-	private static final String PREFIX_SHARED = "shared.";
-	private static final String PREFIX_SOLO = "solo.";
+	static final String KILL_SLOT_NAME = "!kills";
+	private static final String SOLO = "solo";
+	private static final String SHARED = "shared";
+	private static final String PREFIX_SHARED = SHARED + ".";
+	private static final String PREFIX_SOLO = SOLO + ".";
+
+	/** Numbers of the killed creature names, shared by all players. */
+	private static final Map<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
 
 	private final Player player;
 
+	/** Slot the kill counts were loaded from. */
+	private RPSlot slot;
+	/** Object the kill counts were loaded from. */
+	private RPObject source;
+	/** Solo kills by creature number, or <code>null</code> if not loaded. */
+	private int[] solo;
+	/** Shared kills by creature number. */
+	private int[] shared;
+
 	public KillRecording(final Player player) {
 		this.player = player;
 	}
 
+	/**
+	 * Gets the number of a creature name, assigning a new one if needed.
+	 *
+	 * @param name creature name
+	 * @return number of the name
+	 */
+	private static int getId(final String name) {
+		final Integer id = ids.get(name);
+		if (id != null) {
+			return id.intValue();
+		}
+		synchronized (ids) {
+			Integer newId = ids.get(name);
+			if (newId == null) {
+				newId = Integer.valueOf(ids.size());
+				ids.put(name, newId);
+			}
+			return newId.intValue();
+		}
+	}
+
+	/**
+	 * Gets the number of a creature name, without assigning a new one.
+	 *
+	 * @param name creature name
+	 * @return number of the name, or -1 if no kills of it were ever counted
+	 */
+	private static int findId(final String name) {
+		final Integer id = ids.get(name);
+		if (id == null) {
+			return -1;
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Loads the kill counts from the slot, if they have not been loaded or
+	 * the object in the slot has been replaced.
+	 */
+	private void load() {
+		if ((solo != null) && isCurrent()) {
+			return;
+		}
+		slot = null;
+		source = null;
+		solo = new int[Math.max(16, ids.size())];
+		shared = new int[solo.length];
+		if (player.hasSlot(KILL_SLOT_NAME) && (player.getSlot(KILL_SLOT_NAME).size() > 0)) {
+			slot = player.getSlot(KILL_SLOT_NAME);
+			source = slot.getFirst();
+			for (final String key : source) {
+				store(key, source.get(key));
+			}
+		}
+	}
+
+	/**
+	 * Checks if the loaded kill counts are from the current object of the
+	 * kill slot.
+	 *
+	 * @return <code>false</code> if the counts need to be loaded again
+	 */
+	private boolean isCurrent() {
+		if (source == null) {
+			return !player.hasSlot(KILL_SLOT_NAME) || (player.getSlot(KILL_SLOT_NAME).size() == 0);
+		}
+		return (slot.size() > 0) && (slot.getFirst() == source);
+	}
+
+	/**
+	 * Gets the kill count array of a mode.
+	 *
+	 * @param mode "solo" or "shared"
+	 * @return counts, or <code>null</code> for other modes
+	 */
+	private int[] getCounts(final String mode) {
+		load();
+		if (SOLO.equals(mode)) {
+			return solo;
+		} else if (SHARED.equals(mode)) {
+			return shared;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets a kill count.
+	 *
+	 * @param counts kill count array
+	 * @param name creature name
+	 * @return number of kills
+	 */
+	private static int get(final int[] counts, final String name) {
+		final int id = findId(name);
+		if ((id < 0) || (id >= counts.length)) {
+			return 0;
+		}
+		return counts[id];
+	}
+
 	/**
 	 * Checks if the player has ever killed a creature with the given name
 	 * without the help of any other player.
@@ -38,8 +165,8 @@ class KillRecording {
 	 * @return true if this player has ever killed this creature on his own.
 	 */
 	public boolean hasKilledSolo(final String name) {
-		final String count = player.getKeyedSlot(KILL_SLOT_NAME, PREFIX_SOLO + name);
-		return MathHelper.parseIntDefault(count, 0) > 0;
+		load();
+		return get(solo, name) > 0;
 	}
 
 	/**
@@ -50,8 +177,8 @@ class KillRecording {
 	 * @return true if this player has ever killed this creature in a team.
 	 */
 	public boolean hasKilledShared(final String name) {
-		final String count = player.getKeyedSlot(KILL_SLOT_NAME, PREFIX_SHARED + name);
-		return MathHelper.parseIntDefault(count, 0) > 0;
+		load();
+		return get(shared, name) > 0;
 	}
 	/**
 	 * Checks if the player has ever killed a creature, with or without the help
@@ -72,10 +199,7 @@ class KillRecording {
 	 *            either "solo", "shared", or null.
 	 */
 	private void setKill(final String name, final String mode) {
-		final String key = mode + "." + name;
-		final String count = player.getKeyedSlot(KILL_SLOT_NAME, key);
-		final int oldValue = MathHelper.parseIntDefault(count, 0);
-		player.setKeyedSlot(KILL_SLOT_NAME, key, Integer.toString(oldValue + 1));
+		setKillCount(name, mode, getKill(name, mode) + 1);
 	}
 
 	/**
@@ -85,7 +209,7 @@ class KillRecording {
 	 *
 	 */
 	public void setSoloKill(final String name) {
-		setKill(name, "solo");
+		setKill(name, SOLO);
 	}
 
 	/**
@@ -94,7 +218,7 @@ class KillRecording {
 	 * @param name of the killed entity
 	 */
 	public void setSharedKill(final String name) {
-		setKill(name, "shared");
+		setKill(name, SHARED);
 	}
 
 	/**
@@ -109,6 +233,46 @@ class KillRecording {
 		player.setKeyedSlot(KILL_SLOT_NAME, key, Integer.toString(count));
 	}
 
+	/**
+	 * Updates the loaded kill counts after a value of the kill slot has been
+	 * changed.
+	 *
+	 * @param key changed key
+	 * @param value new value, or <code>null</code> if it was removed
+	 */
+	void onSlotChanged(final String key, final String value) {
+		if ((solo == null) || !isCurrent()) {
+			// loaded again when needed
+			return;
+		}
+		store(key, value);
+	}
+
+	/**
+	 * Stores a value of the kill slot in the loaded kill counts.
+	 *
+	 * @param key key in the kill slot
+	 * @param value value, or <code>null</code>
+	 */
+	private void store(final String key, final String value) {
+		final boolean isSolo = key.startsWith(PREFIX_SOLO);
+		if (!isSolo && !key.startsWith(PREFIX_SHARED)) {
+			return;
+		}
+		final int id = getId(key.substring(isSolo ? PREFIX_SOLO.length() : PREFIX_SHARED.length()));
+		if (id >= solo.length) {
+			final int length = Math.max(id + 1, solo.length * 2);
+			solo = Arrays.copyOf(solo, length);
+			shared = Arrays.copyOf(shared, length);
+		}
+		final int count = MathHelper.parseIntDefault(value, 0);
+		if (isSolo) {
+			solo[id] = count;
+		} else {
+			shared[id] = count;
+		}
+	}
+
 	/**
 	 * Changes solo kill count to specified value.
 	 *
@@ -116,7 +280,7 @@ class KillRecording {
 	 * @param count value to set
 	 */
 	public void setSoloKillCount(final String name, final int count) {
-		setKillCount(name, "solo", count);
+		setKillCount(name, SOLO, count);
 	}
 
 	/**
@@ -126,7 +290,7 @@ class KillRecording {
 	 * @param count value to set
 	 */
 	public void setSharedKillCount(final String name, final int count) {
-		setKillCount(name, "shared", count);
+		setKillCount(name, SHARED, count);
 	}
 
 	/**
@@ -136,9 +300,12 @@ class KillRecording {
 	 * @return number of killed creatures
 	 */
 	public int getKill(final String name, final String mode) {
-		final String key = mode + "." + name;
-		final int kills = MathHelper.parseIntDefault(player.getKeyedSlot(KILL_SLOT_NAME, key),0);
-		return(kills);
+		final int[] counts = getCounts(mode);
+		if (counts == null) {
+			final String key = mode + "." + name;
+			return MathHelper.parseIntDefault(player.getKeyedSlot(KILL_SLOT_NAME, key), 0);
+		}
+		return get(counts, name);
 	}
 
 	/**
@@ -147,7 +314,7 @@ class KillRecording {
 	 * @return number of killed creatures
 	 */
 	public int getSoloKill(final String name) {
-		return(getKill(name, "solo"));
+		return(getKill(name, SOLO));
 	}
 
 	/**
@@ -156,7 +323,7 @@ class KillRecording {
 	 * @return number of killed creatures
 	 */
 	public int getSharedKill(final String name) {
-		return(getKill(name, "shared"));
+		return(getKill(name, SHARED));
 	}
 
 }
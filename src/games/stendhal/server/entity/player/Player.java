@@ -51,6 +51,7 @@ import games.stendhal.common.parser.WordList;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 import games.stendhal.server.core.events.TurnListener;
 import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.events.TutorialNotifier;
@@ -912,7 +913,15 @@ public class Player extends DressedEntity implements UseListener {
 	 */
 	public boolean setKeyedSlot(final String name, final String key,
 			final String value) {
-		return KeyedSlotUtil.setKeyedSlot(this, name, key, value);
+		// the slot object is not an entity, so its changes are not tracked
+		markChanged();
+		if (!KeyedSlotUtil.setKeyedSlot(this, name, key, value)) {
+			return false;
+		}
+		if (KillRecording.KILL_SLOT_NAME.equals(name)) {
+			killRec.onSlotChanged(key, value);
+		}
+		return true;
 	}
 
 	/**
@@ -1003,6 +1012,22 @@ public class Player extends DressedEntity implements UseListener {
 		}
 	}
 
+	/**
+	 * Says something in public. The text is shown until the end of the next
+	 * turn, and the NPCs nearby are told about it.
+	 *
+	 * @param text
+	 *            the text to say
+	 */
+	public void say(final String text) {
+		put("text", text);
+		final StendhalRPZone zone = getZone();
+		if (zone != null) {
+			zone.onPlayerSpoke(this);
+		}
+		SingletonRepository.getRuleProcessor().removePlayerText(this);
+	}
+
 	/**
 	 * Sends a message that only this player can read. Used for messages that
 	 * should not appear as sent by another player. For messages from other
@@ -1682,10 +1707,18 @@ public class Player extends DressedEntity implements UseListener {
 	 *            The player who initiated the teleporting, or null if no player
 	 *            is responsible. This is only to give feedback if something
 	 *            goes wrong. If no feedback is wanted, use null.
-	 * @return <code>true</code> if teleporting was successful.
+	 * @return <code>true</code> if teleporting was successful. Teleports to
+	 * 	another zone requested by parallel zone logic are done in the commit
+	 * 	phase, including the feedback if they fail, and return
+	 * 	<code>true</code>.
 	 */
 	public boolean teleport(final StendhalRPZone zone, final int x,
 			final int y, final Direction dir, final Player teleporter) {
+		final ZoneLogicExecutor executor = ZoneLogicExecutor.get();
+		if ((zone != null) && (getZone() != zone) && executor.isInParallelPhase()) {
+			executor.defer(() -> teleport(zone, x, y, dir, teleporter));
+			return true;
+		}
 		if (StendhalRPAction.placeat(zone, this, x, y)) {
 			if (dir != null) {
 				this.setDirection(dir);
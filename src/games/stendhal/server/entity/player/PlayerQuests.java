@@ -11,8 +11,11 @@
  ***************************************************************************/
 package games.stendhal.server.entity.player;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -29,10 +32,34 @@ import marauroa.common.game.RPSlot;
  * @author hendrik
  */
 class PlayerQuests {
+	private static final String QUESTS_SLOT_NAME = "!quests";
+
 	private final Player player;
 
 	private static Logger logger = Logger.getLogger(PlayerQuests.class);
 
+	/**
+	 * Quest states split into their sub states, by quest slot. The slot
+	 * string stays the stored form, and an entry is only used while the
+	 * slot still contains the state it was split from, so changes made
+	 * without this class are noticed.
+	 */
+	private final Map<String, SplitState> splitStates = new HashMap<String, SplitState>();
+
+	/**
+	 * A quest state split into sub states.
+	 */
+	private static final class SplitState {
+		/** the state the sub states were split from */
+		final String state;
+		/** the sub states, as returned by <code>state.split(";")</code> */
+		final String[] elements;
+
+		SplitState(final String state, final String[] elements) {
+			this.state = state;
+			this.elements = elements;
+		}
+	}
 
 	public PlayerQuests(final Player player) {
 		this.player = player;
@@ -65,7 +92,7 @@ class PlayerQuests {
 	 * @return true iff the player has made any progress in the quest
 	 */
 	public boolean hasQuest(final String name) {
-		return (player.getKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name)) != null);
+		return (player.getKeyedSlot(QUESTS_SLOT_NAME, QuestUtils.evaluateQuestSlotName(name)) != null);
 	}
 
 	/**
@@ -76,7 +103,7 @@ class PlayerQuests {
 	 * @return the player's status in the quest
 	 */
 	public String getQuest(final String name) {
-		return player.getKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name));
+		return player.getKeyedSlot(QUESTS_SLOT_NAME, QuestUtils.evaluateQuestSlotName(name));
 	}
 
 	/**
@@ -93,13 +120,44 @@ class PlayerQuests {
 	 *            reset the player's status for the quest.
 	 */
 	public void setQuest(final String name, final String status) {
-		final String oldStatus = player.getKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name));
-		player.setKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name), status);
+		setQuestInSlot(QuestUtils.evaluateQuestSlotName(name), status);
+	}
+
+	/**
+	 * Stores the player's status in a quest.
+	 *
+	 * @param slot
+	 *            evaluated quest slot name
+	 * @param status
+	 *            the player's status in the quest, or <code>null</code>
+	 */
+	private void setQuestInSlot(final String slot, final String status) {
+		final String oldStatus = player.getKeyedSlot(QUESTS_SLOT_NAME, slot);
+		player.setKeyedSlot(QUESTS_SLOT_NAME, slot, status);
 		if ((status == null) || !status.equals(oldStatus)) {
-			new GameEvent(player.getName(), "quest", QuestUtils.evaluateQuestSlotName(name), status).raise();
+			new GameEvent(player.getName(), "quest", slot, status).raise();
 		}
 		// check for reached achievements
-		SingletonRepository.getAchievementNotifier().onFinishQuest(player);
+		SingletonRepository.getAchievementNotifier().onQuestChange(player, slot);
+	}
+
+	/**
+	 * Gets the sub states of a quest state.
+	 *
+	 * @param slot
+	 *            evaluated quest slot name
+	 * @param state
+	 *            current state of the quest
+	 * @return sub states. The array must not be modified
+	 */
+	private String[] split(final String slot, final String state) {
+		final SplitState cached = splitStates.get(slot);
+		if ((cached != null) && cached.state.equals(state)) {
+			return cached.elements;
+		}
+		final String[] elements = state.split(";");
+		splitStates.put(slot, new SplitState(state, elements));
+		return elements;
 	}
 
 
@@ -113,7 +171,8 @@ class PlayerQuests {
 	 * @return the player's status in the quest
 	 */
 	public String getQuest(final String name, final int index) {
-		String state = getQuest(name);
+		final String slot = QuestUtils.evaluateQuestSlotName(name);
+		final String state = player.getKeyedSlot(QUESTS_SLOT_NAME, slot);
 		if (state == null) {
 			return null;
 		}
@@ -122,7 +181,7 @@ class PlayerQuests {
 			return state;
 		}
 
-		String[] elements = state.split(";");
+		final String[] elements = split(slot, state);
 		if (index < elements.length) {
 			return elements[index];
 		}
@@ -145,16 +204,13 @@ class PlayerQuests {
 	 *            reset the player's status for the quest.
 	 */
 	public void setQuest(final String name, final int index, final String subStatus) {
-		String state = getQuest(name);
+		final String slot = QuestUtils.evaluateQuestSlotName(name);
+		String state = player.getKeyedSlot(QUESTS_SLOT_NAME, slot);
 		if (state == null) {
 			state = "";
 		}
-		String[] elements = state.split(";");
-		if (elements.length <= index) {
-			String[] temp = new String[index + 1];
-			System.arraycopy(elements, 0, temp, 0, elements.length);
-			elements = temp;
-		}
+		final String[] current = split(slot, state);
+		final String[] elements = Arrays.copyOf(current, Math.max(current.length, index + 1));
 
 		elements[index] = subStatus;
 		StringBuilder res = new StringBuilder();
@@ -166,11 +222,11 @@ class PlayerQuests {
 				res.append(elements[i]);
 			}
 		}
-		setQuest(name, res.toString());
+		setQuestInSlot(slot, res.toString());
 	}
 
 	public List<String> getQuests() {
-		final RPSlot slot = player.getSlot("!quests");
+		final RPSlot slot = player.getSlot(QUESTS_SLOT_NAME);
 		final RPObject quests = slot.iterator().next();
 
 		final List<String> questsList = new LinkedList<String>();
@@ -183,7 +239,7 @@ class PlayerQuests {
 	}
 
 	public void removeQuest(final String name) {
-		player.setKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name), null);
+		player.setKeyedSlot(QUESTS_SLOT_NAME, QuestUtils.evaluateQuestSlotName(name), null);
 	}
 
 	/**
@@ -13,6 +13,8 @@
 package games.stendhal.server.entity.slot;
 
 import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.RPEntity;
+import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
 
 /**
@@ -106,4 +108,39 @@ public class EntitySlot extends RPSlot implements Slot {
 	public String getSlotType() {
 		return "slot";
 	}
+
+	@Override
+	protected int add(final RPObject object, final boolean assignId) {
+		final int res = super.add(object, assignId);
+		onContentChanged();
+		return res;
+	}
+
+	@Override
+	public RPObject remove(final RPObject.ID id) {
+		final RPObject res = super.remove(id);
+		if (res != null) {
+			onContentChanged();
+		}
+		return res;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		onContentChanged();
+	}
+
+	/**
+	 * Tells the owning entity that the content has changed, so that the change
+	 * is sent to the clients, and that it recalculates the stats of its items.
+	 */
+	private void onContentChanged() {
+		if (getOwner() instanceof Entity) {
+			((Entity) getOwner()).markChanged();
+		}
+		if (getOwner() instanceof RPEntity) {
+			((RPEntity) getOwner()).invalidateEquipmentStats();
+		}
+	}
 }
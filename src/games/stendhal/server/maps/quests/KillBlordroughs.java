@@ -221,19 +221,8 @@ public class KillBlordroughs extends AbstractQuest {
 				recshared = Integer.parseInt(temp);
 			}
 
-			temp = player.getKeyedSlot("!kills", "solo."+tempName);
-			if (temp==null) {
-				solo = 0;
-			} else {
-				solo = Integer.parseInt(temp);
-			}
-
-			temp = player.getKeyedSlot("!kills", "shared."+tempName);
-			if (temp==null) {
-				shared = 0;
-			} else {
-				shared = Integer.parseInt(temp);
-			}
+			solo = player.getSoloKill(tempName);
+			shared = player.getSharedKill(tempName);
 
 			count = count + solo - recsolo + shared - recshared;
 		}
@@ -249,23 +238,9 @@ public class KillBlordroughs extends AbstractQuest {
 		LinkedList<Creature> sortedcreatures = getBlordroughs();
 		sb.append("given");
 		for (int i=0; i<sortedcreatures.size(); i++) {
-			String temp;
-			int solo;
-			int shared;
-			temp = player.getKeyedSlot("!kills", "solo."+sortedcreatures.get(i).getName());
-			if (temp==null) {
-				solo = 0;
-			} else {
-				solo = Integer.parseInt(temp);
-			}
-
-			temp = player.getKeyedSlot("!kills", "shared."+sortedcreatures.get(i).getName());
-			if (temp==null) {
-				shared = 0;
-			} else {
-				shared = Integer.parseInt(temp);
-			}
-
+			final String name = sortedcreatures.get(i).getName();
+			final int solo = player.getSoloKill(name);
+			final int shared = player.getSharedKill(name);
 			sb.append(";" + solo);
 			sb.append(";" + shared);
 		}
@@ -282,19 +282,8 @@ public class KillEnemyArmy extends AbstractQuest {
 				recshared = Integer.parseInt(temp);
 			}
 
-			temp = player.getKeyedSlot("!kills", "solo."+tempName);
-			if (temp==null) {
-				solo = 0;
-			} else {
-				solo = Integer.parseInt(temp);
-			}
-
-			temp = player.getKeyedSlot("!kills", "shared."+tempName);
-			if (temp==null) {
-				shared = 0;
-			} else {
-				shared = Integer.parseInt(temp);
-			}
+			solo = player.getSoloKill(tempName);
+			shared = player.getSharedKill(tempName);
 
 			count = count + solo - recsolo + shared - recshared;
 		}
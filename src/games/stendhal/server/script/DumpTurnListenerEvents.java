@@ -45,6 +45,8 @@ public class DumpTurnListenerEvents extends ScriptImpl {
 		// send result
 		admin.sendPrivateText("Statistics: " + "\n" + counter.getMap()
 				+ "\nCounted turn events:" + events.size()
-				+ "\nOutdated turn events: " + outdated);
+				+ "\nOutdated turn events: " + outdated
+				+ "\nQueued notifications: " + turnNotifier.getQueueSize()
+				+ "\nNotifications fired last turn: " + turnNotifier.getFiredInLastTurn());
 	}
 }
@@ -14,7 +14,6 @@ package games.stendhal.server.script;
 
 import java.util.List;
 
-import games.stendhal.common.KeyedSlotUtil;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.scripting.ScriptImpl;
@@ -49,11 +48,11 @@ public class RemoveVisitedZone extends ScriptImpl {
 		}
 
 		String zoneName = args.get(1).replaceAll(" ", "_");
-		if (KeyedSlotUtil.getKeyedSlot(player, "!visited", zoneName) == null) {
+		if (player.getKeyedSlot("!visited", zoneName) == null) {
 			admin.sendPrivateText("Player has not visited that zone");
 			return;
 		}
-		KeyedSlotUtil.setKeyedSlot(player, "!visited", zoneName, null);
+		player.setKeyedSlot("!visited", zoneName, null);
 
 		final String msg = "Admin " + admin.getName() + " removed zone " + zoneName
 				+ " from player " + player.getName();
@@ -341,9 +341,14 @@ export class Client {
 				zoneName = name.substring(0, name.indexOf("."));
 				name = name.substring(name.indexOf(".") + 1);
 				data[name] = items[i]["data"];
-				if (name === "data_map") {
-					this.onDataMap(items[i]["data"]);
-				}
+			}
+			// attributes only updates have no tile layers. Ignore those
+			// that were sent for the previous zone.
+			if (!data["tilesets"] && zoneName !== stendhal.data.map.currentZoneName) {
+				return;
+			}
+			if (data["data_map"]) {
+				this.onDataMap(data["data_map"]);
 			}
 			stendhal.data.map.onTransfer(zoneName, data);
 		};
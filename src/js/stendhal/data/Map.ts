@@ -107,6 +107,10 @@ export class Map {
 	}
 
 	onTransfer(zoneName: string, content: any) {
+		// only the attributes changed, keep the current map layers
+		if (!content["tilesets"]) {
+			return;
+		}
 		this.currentZoneName = zoneName;
 		this.firstgids = [];
 		this.layers = [];
@@ -0,0 +1,144 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.stendhal.common.CRC;
+import games.stendhal.common.IO;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * Tests for Cache.
+ */
+public class CacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String gameFolder;
+
+	@Before
+	public void setUp() {
+		gameFolder = folder.getRoot().getPath() + File.separator;
+	}
+
+	/**
+	 * Tests storing and reading small and memory mapped items, and reading
+	 * them with a new cache using the stored index.
+	 */
+	@Test
+	public void testStoreAndGet() throws IOException {
+		byte[] small = data(100);
+		byte[] large = data(100000);
+		Cache cache = new Cache(gameFolder);
+		cache.init();
+		assertNull(cache.getItem(item("zone.0_floor", small)));
+		cache.store(item("zone.0_floor", small), small);
+		cache.store(item("zone.1_terrain", large), large);
+
+		assertArrayEquals(small, read(cache.getItem(item("zone.0_floor", small))));
+		assertArrayEquals(large, read(cache.getItem(item("zone.1_terrain", large))));
+		// different content offered by the server
+		assertNull(cache.getItem(item("zone.0_floor", data(101))));
+		// the index is written only when the transfer is complete
+		File index = new File(gameFolder + "cache/cache.index");
+		assertFalse(index.exists());
+		cache.saveIndex();
+		assertTrue(index.isFile());
+
+		Cache reloaded = new Cache(gameFolder);
+		reloaded.init();
+		File file = new File(reloaded.getFilename("zone.1_terrain"));
+		assertNotNull(reloaded.getEntry("zone.1_terrain", file));
+		assertArrayEquals(large, read(reloaded.getItem(item("zone.1_terrain", large))));
+	}
+
+	/**
+	 * Tests that files changed outside the cache are checked again.
+	 */
+	@Test
+	public void testChangedFile() throws IOException {
+		byte[] original = data(200);
+		// no init(), so that the background validation does not interfere
+		new File(gameFolder + "cache").mkdirs();
+		Cache cache = new Cache(gameFolder);
+		cache.store(item("zone.0_floor", original), original);
+
+		byte[] changed = data(300);
+		File file = new File(cache.getFilename("zone.0_floor"));
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(changed);
+		} finally {
+			out.close();
+		}
+		assertNull(cache.getEntry("zone.0_floor", file));
+		assertNull(cache.getItem(item("zone.0_floor", original)));
+		assertArrayEquals(changed, read(cache.getItem(item("zone.0_floor", changed))));
+	}
+
+	/**
+	 * Tests indexing files that were not in the index.
+	 */
+	@Test
+	public void testValidateAll() throws IOException {
+		byte[] content = data(1000);
+		new File(gameFolder + "cache").mkdirs();
+		File file = new File(gameFolder + "cache/zone.0_floor");
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		Cache cache = new Cache(gameFolder);
+		assertNull(cache.getEntry("zone.0_floor", file));
+		cache.validateAll();
+		assertNotNull(cache.getEntry("zone.0_floor", file));
+		assertArrayEquals(content, read(cache.getItem(item("zone.0_floor", content))));
+	}
+
+	private static TransferContent item(String name, byte[] data) {
+		return new TransferContent(name, CRC.cmpCRC(data), data);
+	}
+
+	private static byte[] data(int size) {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		assertNotNull(in);
+		try {
+			return IO.readStreamContent(in);
+		} finally {
+			in.close();
+		}
+	}
+}
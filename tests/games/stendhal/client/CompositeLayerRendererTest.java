@@ -0,0 +1,81 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.AnimatedSprite;
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+import games.stendhal.client.sprite.Tileset;
+
+/**
+ * Tests for CompositeLayerRenderer.
+ */
+public class CompositeLayerRendererTest {
+	private static final int SIZE = 4;
+
+	private static Sprite createTile(Object reference) {
+		// Animated tiles do not need copying of images when composited
+		return new AnimatedSprite(new Sprite[] { new ImageSprite(new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB), reference) }, 100, true);
+	}
+
+	private static TileRenderer createLayer(Tileset tileset, int[] map) {
+		TileRenderer layer = new TileRenderer();
+		layer.width = SIZE;
+		layer.height = SIZE;
+		layer.map = map;
+		layer.tileset = tileset;
+		return layer;
+	}
+
+	/**
+	 * Tests that identical tile stacks share the composite.
+	 */
+	@Test
+	public void testUniqueStacks() {
+		final Sprite[] tiles = { new EmptySprite(32, 32, null),
+				createTile("red"), createTile("blue") };
+		Tileset tileset = new Tileset() {
+			@Override
+			public int getSize() {
+				return tiles.length;
+			}
+
+			@Override
+			public Sprite getSprite(int index) {
+				return tiles[index];
+			}
+		};
+		int[] floor = new int[SIZE * SIZE];
+		Arrays.fill(floor, 1);
+		int[] objects = new int[SIZE * SIZE];
+		for (int i = 0; i < objects.length; i += 2) {
+			objects[i] = 2;
+		}
+
+		CompositeLayerRenderer renderer = new CompositeLayerRenderer(Arrays.asList(
+				createLayer(tileset, floor), createLayer(tileset, objects)), null, null, false);
+		assertEquals(2, renderer.getUniqueStacks());
+		assertSame(tiles[1], renderer.spriteMap[1]);
+		assertSame(renderer.spriteMap[0], renderer.spriteMap[2]);
+		assertNotSame(renderer.spriteMap[0], renderer.spriteMap[1]);
+	}
+}
@@ -0,0 +1,228 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import games.stendhal.client.entity.ActionType;
+import games.stendhal.client.entity.Entity;
+import games.stendhal.client.entity.IEntity;
+import games.stendhal.client.entity.Inspector;
+import games.stendhal.client.gui.j2d.entity.EntityView;
+import games.stendhal.client.gui.styled.cursor.StendhalCursor;
+import marauroa.common.game.RPObject;
+
+/**
+ * Tests for EntityViewManager.
+ */
+public class EntityViewManagerTest {
+	private static final Rectangle SCREEN = new Rectangle(0, 0, 640, 480);
+
+	private EntityViewManager manager;
+	/** Views in the order they were drawn. */
+	private final List<TestView> drawn = new ArrayList<TestView>();
+	private int nextId = 1;
+
+	@Before
+	public void setUp() {
+		new MockStendhalClient();
+		manager = new EntityViewManager();
+		drawn.clear();
+	}
+
+	@After
+	public void tearDown() {
+		StendhalClient.resetClient();
+	}
+
+	/**
+	 * Tests that only the views on the screen are drawn, in the right order,
+	 * and that the order follows the views when they move.
+	 */
+	@Test
+	public void testVisibleViews() {
+		TestView a = add(100, 100, 0);
+		TestView b = add(200, 50, 0);
+		TestView c = add(300, 150, 0);
+		TestView far = add(5000, 5000, 0);
+		TestView ground = add(400, 400, -1);
+
+		assertEquals(list(ground, b, a, c), draw(SCREEN));
+		assertEquals(0, far.drawCount);
+
+		// Moving a view re-sorts it
+		b.move(200, 200);
+		assertEquals(list(ground, a, c, b), draw(SCREEN));
+
+		// Moving off screen removes it, and moving back on adds it
+		a.move(2000, 2000);
+		assertEquals(list(ground, c, b), draw(SCREEN));
+		far.move(10, 10);
+		assertEquals(list(ground, far, c, b), draw(SCREEN));
+
+		// Views found from a different part of the world
+		assertEquals(list(a), draw(new Rectangle(1900, 1900, 640, 480)));
+
+		manager.removeEntityView(c.entity, c);
+		assertEquals(list(ground, far, b), draw(SCREEN));
+	}
+
+	/**
+	 * Tests that views with the same sorting values are ordered by their ID.
+	 */
+	@Test
+	public void testSameRow() {
+		TestView first = add(100, 100, 0);
+		TestView second = add(50, 100, 0);
+		TestView third = add(300, 100, 0);
+		assertEquals(list(first, second, third), draw(SCREEN));
+		second.move(60, 100);
+		assertEquals(list(first, second, third), draw(SCREEN));
+	}
+
+	private List<TestView> draw(Rectangle area) {
+		drawn.clear();
+		manager.prepareViews(area, true);
+		manager.draw(null);
+		return new ArrayList<TestView>(drawn);
+	}
+
+	private static List<TestView> list(TestView... views) {
+		List<TestView> list = new ArrayList<TestView>();
+		for (TestView view : views) {
+			list.add(view);
+		}
+		return list;
+	}
+
+	private TestView add(int x, int y, int z) {
+		RPObject object = new RPObject();
+		object.setID(new RPObject.ID(nextId++, "test"));
+		Entity entity = new Entity();
+		entity.initialize(object);
+		TestView view = new TestView(entity, x, y, z);
+		manager.addEntityView(entity, view);
+		return view;
+	}
+
+	/**
+	 * A view with a fixed size that can be moved.
+	 */
+	private class TestView implements EntityView<IEntity> {
+		private final Entity entity;
+		private final Rectangle area;
+		private final int zIndex;
+		private int drawCount;
+
+		TestView(Entity entity, int x, int y, int zIndex) {
+			this.entity = entity;
+			area = new Rectangle(x, y, 32, 32);
+			this.zIndex = zIndex;
+		}
+
+		void move(int x, int y) {
+			area.setLocation(x, y);
+			entity.fireChange(IEntity.PROP_POSITION);
+		}
+
+		@Override
+		public void draw(Graphics2D g2d) {
+			drawCount++;
+			drawn.add(this);
+		}
+
+		@Override
+		public Rectangle getArea() {
+			return area;
+		}
+
+		@Override
+		public int getZIndex() {
+			return zIndex;
+		}
+
+		@Override
+		public IEntity getEntity() {
+			return entity;
+		}
+
+		@Override
+		public void setInspector(Inspector inspector) {
+		}
+
+		@Override
+		public String[] getActions() {
+			return new String[0];
+		}
+
+		@Override
+		public boolean isMovable() {
+			return false;
+		}
+
+		@Override
+		public void onAction() {
+		}
+
+		@Override
+		public void onAction(ActionType at) {
+		}
+
+		@Override
+		public boolean onHarmlessAction() {
+			return false;
+		}
+
+		@Override
+		public void release() {
+		}
+
+		@Override
+		public void drawTop(Graphics2D g2d) {
+		}
+
+		@Override
+		public void setContained(boolean b) {
+		}
+
+		@Override
+		public void setVisibleScreenArea(Rectangle area) {
+		}
+
+		@Override
+		public void initialize(IEntity entity) {
+		}
+
+		@Override
+		public boolean isInteractive() {
+			return false;
+		}
+
+		@Override
+		public StendhalCursor getCursor() {
+			return null;
+		}
+
+		@Override
+		public void applyChanges() {
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.AnimatedSprite;
+import games.stendhal.client.sprite.EmptySprite;
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * Tests for TileChunkCache.
+ */
+public class TileChunkCacheTest {
+	private static final int SIZE = 20;
+
+	private static Sprite createTile(Color color) {
+		BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		g.fillRect(0, 0, 32, 32);
+		g.dispose();
+		return new ImageSprite(image);
+	}
+
+	private static TileChunkCache createCache() {
+		Sprite[] map = new Sprite[SIZE * SIZE];
+		Arrays.fill(map, new EmptySprite(32, 32, null));
+		map[1 * SIZE + 1] = createTile(Color.RED);
+		map[17 * SIZE + 17] = new AnimatedSprite(new Sprite[] {
+				createTile(Color.GREEN), createTile(Color.BLUE) }, 100, true);
+		return new TileChunkCache(map, SIZE, SIZE);
+	}
+
+	/**
+	 * Tests splitting the layer to constant and changing tiles.
+	 */
+	@Test
+	public void testChunks() {
+		TileChunkCache cache = createCache();
+		TileChunkCache.Chunk chunk = cache.getChunk(0, 0);
+		assertFalse(chunk.empty);
+		assertEquals(0, chunk.changing.length);
+
+		chunk = cache.getChunk(1, 0);
+		assertTrue(chunk.empty);
+		assertEquals(0, chunk.changing.length);
+
+		chunk = cache.getChunk(1, 1);
+		assertTrue(chunk.empty);
+		assertArrayEquals(new int[] { 17 * SIZE + 17 }, chunk.changing);
+	}
+
+	/**
+	 * Tests drawing the constant and changing tiles.
+	 */
+	@Test
+	public void testDraw() {
+		TileChunkCache cache = createCache();
+		BufferedImage screen = new BufferedImage(SIZE * 32, SIZE * 32, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = screen.createGraphics();
+		cache.draw(g, 0, 0, SIZE, SIZE);
+		g.dispose();
+
+		// only the chunk with a constant tile needs an image
+		assertEquals(1, cache.getCachedCount());
+		assertEquals(Color.RED.getRGB(), screen.getRGB(40, 40));
+		assertEquals(0, screen.getRGB(8, 8));
+		int animated = screen.getRGB(17 * 32 + 8, 17 * 32 + 8);
+		assertTrue((animated == Color.GREEN.getRGB()) || (animated == Color.BLUE.getRGB()));
+	}
+}
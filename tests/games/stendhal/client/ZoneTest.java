@@ -0,0 +1,90 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import games.stendhal.client.gui.wt.core.WtWindowManager;
+import marauroa.common.game.RPObject;
+import marauroa.common.net.OutputSerializer;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * Tests for Zone.
+ */
+public class ZoneTest {
+	/**
+	 * Create a data layer stream.
+	 *
+	 * @param obj zone attributes
+	 * @return layer data
+	 * @throws IOException
+	 */
+	private static InputStream createDataLayer(RPObject obj) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		obj.writeObject(new OutputSerializer(out));
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	/**
+	 * Tests that attributes missing from a data layer update are cleared.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRemovedAttributes() throws Exception {
+		WtWindowManager.getInstance().setProperty("ui.draw_weather", "false");
+		Zone zone = new Zone("test");
+
+		RPObject attributes = new RPObject();
+		attributes.put("weather", "rain");
+		attributes.put("danger_level", "0.5");
+		zone.addLayer("data_map", createDataLayer(attributes));
+		assertEquals("rain", zone.getWeatherName());
+		assertEquals(0.5, zone.getDangerLevel(), 0.001);
+
+		zone.addLayer("data_map", createDataLayer(new RPObject()));
+		assertNull(zone.getWeatherName());
+		assertTrue(zone.getWeather() instanceof EmptyLayerRenderer);
+		assertEquals(0, zone.getDangerLevel(), 0.001);
+	}
+
+	/**
+	 * Tests recognizing attributes only transfers.
+	 */
+	@Test
+	public void testIsAttributeUpdate() {
+		TransferContent data = new TransferContent("test.data_map", 0, new byte[0]);
+		TransferContent floor = new TransferContent("test.0_floor", 0, new byte[0]);
+		assertTrue(StendhalClient.isAttributeUpdate(Arrays.asList(data)));
+		assertFalse(StendhalClient.isAttributeUpdate(Arrays.asList(data, floor)));
+		assertFalse(StendhalClient.isAttributeUpdate(Arrays.asList(new TransferContent("data.jar", 0, new byte[0]))));
+		assertFalse(StendhalClient.isAttributeUpdate(Collections.<TransferContent>emptyList()));
+
+		Zone zone = new Zone("test");
+		assertTrue(StendhalClient.isForZone(data, zone));
+		assertFalse(StendhalClient.isForZone(new TransferContent("test2.data_map", 0, new byte[0]), zone));
+		assertFalse(StendhalClient.isForZone(data, null));
+	}
+}
@@ -12,12 +12,14 @@
 package games.stendhal.common;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.geom.Rectangle2D;
 import java.util.BitSet;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -353,4 +355,60 @@ public class CollisionMapTest {
 				.getWidth(), (int) bob.getHeight()));
 	}
 
+
+	/**
+	 * Tests rectangle checks against checking every node, for maps wider
+	 * than a word and rectangles using the summed-area table.
+	 */
+	@Test
+	public void testCollidesRandom() {
+		final Random random = new Random(42);
+		final CollisionMap map = new CollisionMap(150, 40);
+		for (int i = 0; i < 60; i++) {
+			map.set(random.nextInt(150), random.nextInt(40));
+		}
+		for (int i = 0; i < 5000; i++) {
+			final int x = random.nextInt(150);
+			final int y = random.nextInt(40);
+			final int w = 1 + random.nextInt(Math.min(80, 150 - x));
+			final int h = 1 + random.nextInt(Math.min(20, 40 - y));
+			boolean expected = false;
+			for (int i2 = x; i2 < x + w; i2++) {
+				for (int j = y; j < y + h; j++) {
+					expected |= map.get(i2, j);
+				}
+			}
+			assertEquals(x + "," + y + " " + w + "x" + h, expected, map.collides(x, y, w, h));
+			if (i == 2500) {
+				// the summed-area table must follow changes
+				map.unset(x, y);
+				map.set(149, 39);
+				assertTrue(map.collides(100, 30, 50, 10));
+			}
+		}
+	}
+
+	/**
+	 * Tests that nodes outside the map are not stored in the padding bits
+	 * or in the next row.
+	 */
+	@Test
+	public void testSetOutside() {
+		final CollisionMap map = new CollisionMap(10, 3);
+		map.set(10, 0);
+		map.set(63, 0);
+		map.set(64, 0);
+		map.set(-1, 1);
+		map.set(0, 3);
+		map.set(0, -1);
+		map.unset(10, 0);
+		assertFalse(map.collides(0, 0, 10, 3));
+		assertFalse(map.get(10, 0));
+		assertFalse(map.get(0, 1));
+
+		map.set(9, 1);
+		map.unset(73, 0);
+		assertTrue(map.get(9, 1));
+		assertTrue(map.collides(0, 0, 10, 3));
+	}
 }
@@ -0,0 +1,65 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for SentenceCache.
+ */
+public class SentenceCacheTest {
+
+	/**
+	 * Tests that sentences are parsed once, and the least recently used ones
+	 * are dropped.
+	 */
+	@Test
+	public void testCache() {
+		final SentenceCache cache = new SentenceCache(2);
+		final Sentence hello = cache.parse("hello");
+		assertEquals("hello", hello.getNormalized());
+		assertSame(hello, cache.parse(" hello "));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		final Sentence buy = cache.parse("buy 3 apples");
+		assertEquals("buy apple", buy.getNormalized());
+		// use hello, so that buy is the eldest entry
+		assertSame(hello, cache.parse("hello"));
+		cache.parse("bye");
+		assertEquals(2, cache.size());
+		assertSame(hello, cache.parse("hello"));
+		assertNotSame(buy, cache.parse("buy 3 apples"));
+		assertEquals(3, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	/**
+	 * Tests that registering words invalidates the cached sentences.
+	 */
+	@Test
+	public void testWordListChange() {
+		final SentenceCache cache = new SentenceCache(10);
+		final Sentence sentence = cache.parse("hi Zalmaranthor");
+		final WordList wordList = WordList.getInstance();
+		wordList.registerSubjectName("Zalmaranthor");
+		try {
+			assertNotSame(sentence, cache.parse("hi Zalmaranthor"));
+		} finally {
+			wordList.unregisterSubjectName("Zalmaranthor");
+		}
+	}
+}
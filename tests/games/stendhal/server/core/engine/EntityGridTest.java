@@ -0,0 +1,128 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.mapstuff.area.AreaEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.RPClass;
+import utilities.RPClass.EntityTestHelper;
+
+/**
+ * Tests for the spatial entity index of zones.
+ */
+public class EntityGridTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		EntityTestHelper.generateRPClasses();
+		if (!RPClass.hasRPClass("area")) {
+			AreaEntity.generateRPClass();
+		}
+	}
+
+	/**
+	 * Tests that the indexed queries follow moving and resized entities.
+	 */
+	@Test
+	public void testQueriesFollowEntity() {
+		for (final boolean indexed : new boolean[] { true, false }) {
+			final StendhalRPZone zone = new StendhalRPZone("test", 40, 40);
+			zone.setEntityGridEnabled(indexed);
+			final Entity blocker = new Entity() {};
+			blocker.setPosition(3, 3);
+			zone.add(blocker);
+			final Entity mover = new Entity() {};
+			mover.setPosition(20, 20);
+			zone.add(mover);
+
+			assertSame(blocker, zone.getEntityAt(3.5, 3.5));
+			assertTrue(zone.collides(mover, 3, 3));
+			assertFalse(zone.collides(mover, 4, 3));
+
+			// move across a cell border
+			blocker.setPosition(9, 17);
+			assertNull(zone.getEntityAt(3, 3));
+			assertSame(blocker, zone.getEntityAt(9, 17));
+			assertTrue(zone.collides(mover, 9, 17));
+
+			// grow into the neighbouring cells
+			blocker.setSize(10, 2);
+			assertSame(blocker, zone.getEntityAt(18, 18));
+			assertThat(zone.getEntitiesAt(18, 18), containsInAnyOrder(blocker));
+			assertTrue(zone.collides(mover, 17.5, 16.5));
+
+			zone.remove(blocker);
+			assertNull(zone.getEntityAt(9, 17));
+			assertFalse(zone.collides(mover, 9, 17));
+		}
+	}
+
+	/**
+	 * Tests entities outside the zone bounds and zones resized after entities
+	 * have been added.
+	 */
+	@Test
+	public void testOutsideAndResize() {
+		final StendhalRPZone zone = new StendhalRPZone("test");
+		final Entity entity = new Entity() {};
+		entity.setPosition(30, 30);
+		zone.add(entity);
+		assertSame(entity, zone.getEntityAt(30, 30));
+
+		zone.collisionMap.init(64, 64);
+		assertSame(entity, zone.getEntityAt(30, 30));
+		entity.setPosition(-2, 70);
+		assertSame(entity, zone.getEntityAt(-2, 70));
+		assertEquals(1, zone.getEntitiesAt(-2, 70, Entity.class).size());
+		assertNull(zone.getEntityAt(30, 30));
+	}
+
+	/**
+	 * Tests finding the entities in an area.
+	 */
+	@Test
+	public void testEntitiesIn() {
+		for (final boolean indexed : new boolean[] { true, false }) {
+			final StendhalRPZone zone = new StendhalRPZone("test", 40, 40);
+			zone.setEntityGridEnabled(indexed);
+			final Entity large = new Entity() {};
+			large.setPosition(5, 5);
+			large.setSize(12, 12);
+			zone.add(large);
+			final Entity small = new Entity() {};
+			small.setPosition(30, 30);
+			zone.add(small);
+
+			// the large entity spans several cells, but is found once
+			assertThat(zone.getEntitiesIn(new Rectangle2D.Double(0, 0, 40, 40), Entity.class),
+					containsInAnyOrder(large, small));
+			assertThat(zone.getEntitiesIn(new Rectangle2D.Double(10, 10, 3, 3), Entity.class),
+					containsInAnyOrder(large));
+			assertTrue(zone.getEntitiesIn(new Rectangle2D.Double(20, 20, 5, 5), Entity.class).isEmpty());
+		}
+	}
+}
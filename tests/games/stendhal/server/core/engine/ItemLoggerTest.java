@@ -0,0 +1,67 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for ItemLogger.
+ */
+public class ItemLoggerTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		ItemLogger.flush();
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that item events are collected and written in batches.
+	 */
+	@Test
+	public void testBatching() {
+		ItemLogger.flush();
+		final ItemLogger itemLogger = new ItemLogger();
+		final Item item = SingletonRepository.getEntityManager().getItem("dagger");
+
+		LogSimpleItemEventCommand command = null;
+		for (int i = 1; i < ItemLogger.BATCH_SIZE; i++) {
+			command = new LogSimpleItemEventCommand(item, null, "test", null, null, null, null);
+			itemLogger.addLogItemEventCommand(command);
+			assertEquals(i, ItemLogger.getPendingCount());
+		}
+		// the time of the event is kept
+		assertNotNull(command.getEnqueueTime());
+
+		itemLogger.addLogItemEventCommand(new LogSimpleItemEventCommand(item, null, "test", null, null, null, null));
+		assertEquals(0, ItemLogger.getPendingCount());
+
+		itemLogger.addLogItemEventCommand(new LogSimpleItemEventCommand(item, null, "test", null, null, null, null));
+		assertEquals(1, ItemLogger.getPendingCount());
+		ItemLogger.flush();
+		assertEquals(0, ItemLogger.getPendingCount());
+	}
+}
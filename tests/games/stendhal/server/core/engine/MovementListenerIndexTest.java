@@ -0,0 +1,164 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.MovementListener;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for MovementListenerIndex and the movement notifications of
+ * StendhalRPZone.
+ */
+public class MovementListenerIndexTest {
+	/** Events received by the test listeners. */
+	private final List<String> events = new ArrayList<String>();
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * A listener recording the events.
+	 */
+	private class TestListener implements MovementListener {
+		private final String name;
+		private final Rectangle2D area;
+
+		TestListener(String name, double x, double y, double w, double h) {
+			this.name = name;
+			area = new Rectangle2D.Double(x, y, w, h);
+		}
+
+		@Override
+		public Rectangle2D getArea() {
+			return area;
+		}
+
+		@Override
+		public void onEntered(ActiveEntity entity, StendhalRPZone zone, int newX, int newY) {
+			events.add(name + " entered " + newX + "," + newY);
+		}
+
+		@Override
+		public void onExited(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY) {
+			events.add(name + " exited " + oldX + "," + oldY);
+		}
+
+		@Override
+		public void beforeMove(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY,
+				int newX, int newY) {
+			events.add(name + " before " + newX + "," + newY);
+		}
+
+		@Override
+		public void onMoved(ActiveEntity entity, StendhalRPZone zone, int oldX, int oldY,
+				int newX, int newY) {
+			events.add(name + " moved " + newX + "," + newY);
+		}
+	}
+
+	private static List<String> list(String... items) {
+		List<String> list = new ArrayList<String>();
+		for (String item : items) {
+			list.add(item);
+		}
+		return list;
+	}
+
+	/**
+	 * Tests notifications for listeners in different cells, and their order.
+	 */
+	@Test
+	public void testNotifications() {
+		final StendhalRPZone zone = new StendhalRPZone("listener_test", 40, 40);
+		final ActiveEntity entity = new ActiveEntity() {
+			// just to create an instance
+		};
+		// spans several cells
+		zone.addMovementListener(new TestListener("big", 5, 5, 20, 20));
+		zone.addMovementListener(new TestListener("small", 15, 15, 2, 2));
+		zone.addMovementListener(new TestListener("far", 35, 35, 5, 5));
+
+		zone.notifyEntered(entity, 16, 16);
+		assertEquals(list("big entered 16,16", "small entered 16,16"), events);
+		events.clear();
+
+		zone.notifyMovement(entity, 16, 16, 17, 16);
+		assertEquals(list("big moved 17,16", "small exited 16,16"), events);
+		events.clear();
+
+		zone.notifyBeforeMovement(entity, 17, 16, 16, 16);
+		assertEquals(list("big before 16,16", "small before 16,16"), events);
+		events.clear();
+
+		zone.notifyMovement(entity, 24, 10, 25, 10);
+		assertEquals(list("big exited 24,10"), events);
+		events.clear();
+
+		zone.notifyExited(entity, 37, 37);
+		assertEquals(list("far exited 37,37"), events);
+		events.clear();
+
+		zone.notifyEntered(entity, 0, 0);
+		assertEquals(list(), events);
+	}
+
+	/**
+	 * Tests removing listeners and updating listener areas.
+	 */
+	@Test
+	public void testRemoveAndUpdate() {
+		final MovementListenerIndex index = new MovementListenerIndex(40, 40);
+		final TestListener a = new TestListener("a", 0, 0, 2, 2);
+		final TestListener b = new TestListener("b", 30, 30, 2, 2);
+		index.add(a);
+		index.add(b);
+		index.add(a);
+		assertEquals(3, index.size());
+
+		List<MovementListenerIndex.Entry> result = new ArrayList<MovementListenerIndex.Entry>();
+		index.collect(30, 30, 30, 30, 1, 1, result);
+		assertEquals(1, result.size());
+
+		b.area.setRect(0, 1, 2, 2);
+		index.update(b);
+		result.clear();
+		index.collect(0, 0, 0, 0, 1, 1, result);
+		assertEquals(3, result.size());
+		assertEquals(a, result.get(0).listener);
+		assertEquals(b, result.get(1).listener);
+		assertEquals(a, result.get(2).listener);
+
+		index.remove(a);
+		result.clear();
+		index.collect(0, 0, 0, 0, 1, 1, result);
+		assertEquals(2, result.size());
+		assertEquals(b, result.get(0).listener);
+	}
+}
@@ -0,0 +1,109 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for ResourceCache.
+ */
+public class ResourceCacheTest {
+	/**
+	 * A class loader serving fixed resources and counting the lookups.
+	 */
+	private static class TestLoader extends ClassLoader {
+		private final Map<String, byte[]> content = new HashMap<String, byte[]>();
+		private int lookups;
+
+		@Override
+		public InputStream getResourceAsStream(String name) {
+			lookups++;
+			byte[] data = content.get(name);
+			return (data == null) ? null : new ByteArrayInputStream(data);
+		}
+	}
+
+	private static byte[] text(int size) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) ('a' + (i % 7));
+		}
+		return data;
+	}
+
+	/**
+	 * Tests that resources are loaded once, and that missing resources are
+	 * not cached.
+	 */
+	@Test
+	public void testGet() {
+		TestLoader loader = new TestLoader();
+		loader.content.put("tiled/map.tmx", text(1000));
+		ResourceCache cache = new ResourceCache(loader, 100000);
+
+		byte[] map = cache.get("tiled/map.tmx");
+		assertArrayEquals(text(1000), map);
+		assertSame(map, cache.get("tiled/map.tmx"));
+		assertEquals(1, loader.lookups);
+
+		assertNull(cache.get("missing"));
+		assertNull(cache.get("missing"));
+		assertEquals(3, loader.lookups);
+		assertEquals(1000, cache.getSize());
+	}
+
+	/**
+	 * Tests dropping the least recently used resources.
+	 */
+	@Test
+	public void testEviction() {
+		TestLoader loader = new TestLoader();
+		loader.content.put("a.png", new byte[200]);
+		loader.content.put("b.png", new byte[200]);
+		loader.content.put("c.png", new byte[200]);
+		loader.content.put("d.png", new byte[200]);
+		loader.content.put("big.png", new byte[300]);
+		ResourceCache cache = new ResourceCache(loader, 800);
+
+		cache.get("a.png");
+		cache.get("b.png");
+		cache.get("c.png");
+		cache.get("d.png");
+		assertEquals(800, cache.getSize());
+		// larger than a quarter of the cache
+		cache.get("big.png");
+		assertEquals(800, cache.getSize());
+		assertEquals(5, loader.lookups);
+
+		cache.get("a.png");
+		loader.content.put("e.png", new byte[200]);
+		cache.get("e.png");
+		assertEquals(800, cache.getSize());
+		assertEquals(6, loader.lookups);
+		// b was the least recently used
+		cache.get("a.png");
+		cache.get("c.png");
+		assertEquals(6, loader.lookups);
+		cache.get("b.png");
+		assertEquals(7, loader.lookups);
+	}
+}
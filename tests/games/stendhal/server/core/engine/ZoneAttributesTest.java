@@ -0,0 +1,93 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * Tests for ZoneAttributes.
+ */
+public class ZoneAttributesTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that changes during a turn are sent once, with only the
+	 * attributes.
+	 */
+	@Test
+	public void testCoalescedNotification() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("attributes_test", 10, 10);
+		zone.addTilesets("attributes_test.tilesets", Collections.emptyList());
+		final ZoneAttributes attr = new ZoneAttributes(zone);
+		zone.setAttributes(attr);
+		ZoneAttributes.sendChanges();
+
+		attr.put("color", "0x102030");
+		attr.notifyOnlinePlayers();
+		attr.put("blend_method", "bleach");
+		attr.notifyOnlinePlayers();
+		assertEquals(1, ZoneAttributes.getPendingCount());
+		ZoneAttributes.sendChanges();
+		assertEquals(0, ZoneAttributes.getPendingCount());
+
+		final List<TransferContent> contents = zone.getAttributeContents();
+		assertEquals(1, contents.size());
+		assertEquals("attributes_test.data_map", contents.get(0).name);
+	}
+
+	/**
+	 * Tests that only the attributes layer is sent, unless the coloring
+	 * changed.
+	 */
+	@Test
+	public void testChangedContents() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("attributes_test3", 10, 10);
+		zone.addTilesets("attributes_test3.tilesets", Collections.emptyList());
+		final ZoneAttributes attr = new ZoneAttributes(zone);
+		zone.setAttributes(attr);
+
+		attr.put("weather", "rain");
+		List<TransferContent> contents = attr.takeChangedContents();
+		assertEquals(1, contents.size());
+		assertEquals("attributes_test3.data_map", contents.get(0).name);
+
+		attr.put("color", "0x102030");
+		attr.remove("weather");
+		contents = attr.takeChangedContents();
+		assertTrue(contents.size() > 1);
+		assertTrue(contents.contains(attr.getContents()));
+
+		// the coloring flag is cleared after sending
+		attr.put("weather", "snow");
+		assertEquals(1, attr.takeChangedContents().size());
+	}
+}
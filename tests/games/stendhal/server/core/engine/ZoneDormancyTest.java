@@ -0,0 +1,93 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.npc.SpeakerNPC;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for putting zones without players to sleep.
+ */
+public class ZoneDormancyTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendhalRPRuleProcessor.get().setTurn(0);
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that an empty zone goes to sleep, and wakes up when a player
+	 * enters it.
+	 */
+	@Test
+	public void testSleepAndWakeUp() {
+		final StendhalRPZone zone = new StendhalRPZone("dormancy_test", 20, 20);
+		final Creature creature = new Creature();
+		creature.setHealer("5,10");
+		creature.setBaseHP(1000);
+		creature.setHP(100);
+		zone.add(creature);
+
+		assertFalse(zone.updateDormancy(10));
+		assertFalse(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY - 1));
+		assertTrue(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY));
+		assertTrue(zone.isDormant());
+		assertTrue(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY + 1));
+
+		// the creature catches up with the healing it missed
+		MockStendhalRPRuleProcessor.get().setTurn(StendhalRPZone.DORMANCY_DELAY + 200);
+		final Player player = PlayerTestHelper.createPlayer("bob");
+		zone.add(player);
+		assertFalse(zone.isDormant());
+		assertEquals(100 + 5 * 20, creature.getHP());
+
+		// stays awake while there are players
+		assertFalse(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY * 5));
+		zone.remove(player);
+		assertFalse(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY * 6 - 1));
+		assertTrue(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY * 6));
+	}
+
+	/**
+	 * Tests that NPCs acting without players keep their zone awake.
+	 */
+	@Test
+	public void testActiveNPC() {
+		final StendhalRPZone zone = new StendhalRPZone("dormancy_test_npc", 20, 20);
+		final SpeakerNPC npc = new SpeakerNPC("dormancy test npc");
+		npc.setAllowToActAlone(true);
+		zone.add(npc);
+
+		assertFalse(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY * 2));
+		npc.setAllowToActAlone(false);
+		assertFalse(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY * 3 - 1));
+		assertTrue(zone.updateDormancy(StendhalRPZone.DORMANCY_DELAY * 3));
+	}
+}
@@ -0,0 +1,205 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.server.core.rp.StendhalRPAction;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.npc.SpeakerNPC;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.IRPZone;
+import utilities.PlayerTestHelper;
+import utilities.RPClass.EntityTestHelper;
+
+/**
+ * Tests for ZoneLogicExecutor.
+ */
+public class ZoneLogicExecutorTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		EntityTestHelper.generateRPClasses();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	private static List<IRPZone> createZones(final int count) {
+		final List<IRPZone> zones = new ArrayList<IRPZone>();
+		for (int i = 0; i < count; i++) {
+			zones.add(new StendhalRPZone("zone" + i, 10, 10));
+		}
+		return zones;
+	}
+
+	/**
+	 * Tests that deferred actions are committed in zone order.
+	 */
+	@Test
+	public void testCommitOrder() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(4);
+		assertTrue(executor.isParallel());
+		final List<IRPZone> zones = createZones(100);
+		final AtomicInteger processed = new AtomicInteger();
+		final List<String> committed = new ArrayList<String>();
+
+		executor.execute(zones, zone -> {
+			assertTrue(executor.isInParallelPhase());
+			processed.incrementAndGet();
+			executor.defer(() -> committed.add(zone.getName() + "-1"));
+			executor.defer(() -> committed.add(zone.getName() + "-2"));
+		});
+
+		assertEquals(100, processed.get());
+		assertEquals(200, committed.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("zone" + i + "-1", committed.get(2 * i));
+			assertEquals("zone" + i + "-2", committed.get(2 * i + 1));
+		}
+		assertFalse(executor.isInParallelPhase());
+	}
+
+	/**
+	 * Tests that serial execution runs deferred actions immediately.
+	 */
+	@Test
+	public void testSerial() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(0);
+		assertFalse(executor.isParallel());
+		final List<String> log = new ArrayList<String>();
+
+		executor.execute(createZones(3), zone -> {
+			assertFalse(executor.isInParallelPhase());
+			executor.defer(() -> log.add("deferred " + zone.getName()));
+			log.add(zone.getName());
+		});
+		assertEquals("[deferred zone0, zone0, deferred zone1, zone1, deferred zone2, zone2]",
+				log.toString());
+	}
+
+	/**
+	 * Tests that an exception in one zone does not stop the other zones.
+	 */
+	@Test
+	public void testException() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(2);
+		final AtomicInteger processed = new AtomicInteger();
+
+		executor.execute(createZones(40), zone -> {
+			if ("zone7".equals(zone.getName())) {
+				throw new IllegalStateException("test");
+			}
+			processed.incrementAndGet();
+		});
+		assertEquals(39, processed.get());
+	}
+
+	/**
+	 * Tests that zone changes are delayed to the commit phase.
+	 */
+	@Test
+	public void testDeferredZoneChange() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(2);
+		final List<IRPZone> zones = createZones(2);
+		final StendhalRPZone source = (StendhalRPZone) zones.get(0);
+		final StendhalRPZone destination = (StendhalRPZone) zones.get(1);
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+		source.add(entity);
+
+		executor.execute(zones, zone -> {
+			if (zone == source) {
+				assertTrue(StendhalRPAction.placeat(destination, entity, 5, 5));
+				assertSame(source, entity.getZone());
+			}
+		});
+		assertSame(destination, entity.getZone());
+		assertEquals(5, entity.getX());
+	}
+
+	/**
+	 * Tests that a failed teleport requested by parallel zone logic gives
+	 * feedback in the commit phase.
+	 */
+	@Test
+	public void testDeferredTeleportFailure() throws Exception {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(2);
+		final List<IRPZone> zones = createZones(2);
+		final StendhalRPZone source = (StendhalRPZone) zones.get(0);
+		final StendhalRPZone destination = (StendhalRPZone) zones.get(1);
+		final LayerDefinition collisionLayer = new LayerDefinition(10, 10);
+		collisionLayer.setName("collision");
+		collisionLayer.build();
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 10; y++) {
+				collisionLayer.set(x, y, 255);
+			}
+		}
+		destination.addCollisionLayer("collisionlayer", collisionLayer);
+		final Player player = PlayerTestHelper.createPlayer("parallel teleporter");
+		source.add(player);
+
+		executor.execute(zones, zone -> {
+			if (zone == source) {
+				player.teleport(destination, 5, 5, null, null);
+				assertTrue(player.events().isEmpty());
+			}
+		});
+		assertSame(source, player.getZone());
+		assertEquals("Position [5,5] is occupied", player.events().get(0).get("text"));
+	}
+
+	/**
+	 * Tests that changes to the NPC list are delayed to the commit phase.
+	 */
+	@Test
+	public void testDeferredNPCList() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(2);
+		final List<IRPZone> zones = createZones(2);
+		final StendhalRPZone zone0 = (StendhalRPZone) zones.get(0);
+		final SpeakerNPC npc = new SpeakerNPC("parallel test npc");
+
+		executor.execute(zones, zone -> {
+			if (zone == zone0) {
+				zone.add(npc);
+				assertFalse(SingletonRepository.getNPCList().has("parallel test npc"));
+			}
+		});
+		assertSame(npc, SingletonRepository.getNPCList().get("parallel test npc"));
+
+		executor.execute(zones, zone -> {
+			if (zone == zone0) {
+				zone.remove(npc);
+				assertTrue(SingletonRepository.getNPCList().has("parallel test npc"));
+			}
+		});
+		assertFalse(SingletonRepository.getNPCList().has("parallel test npc"));
+	}
+}
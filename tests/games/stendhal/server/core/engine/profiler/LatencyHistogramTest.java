@@ -0,0 +1,61 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Tests that the buckets cover all values without gaps.
+	 */
+	@Test
+	public void testBuckets() {
+		for (long value = 0; value < 100000; value++) {
+			final int index = LatencyHistogram.indexOf(value);
+			assertTrue(LatencyHistogram.lowestValueOf(index) <= value);
+			assertTrue(LatencyHistogram.lowestValueOf(index + 1) > value);
+		}
+	}
+
+	/**
+	 * Tests the percentiles.
+	 */
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getSum());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500.5, histogram.getMean(), 0.001);
+
+		final long median = histogram.getValueAtPercentile(50);
+		assertTrue(median >= 500 && median <= 500 * 1.07);
+		final long p99 = histogram.getValueAtPercentile(99);
+		assertTrue(p99 >= 990 && p99 <= 1000);
+		assertEquals(1000, histogram.getValueAtPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+}
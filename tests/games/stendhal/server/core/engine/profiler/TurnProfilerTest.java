@@ -0,0 +1,80 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for TurnProfiler.
+ */
+public class TurnProfilerTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests recording phases and zones.
+	 */
+	@Test
+	public void testReport() {
+		final TurnProfiler profiler = new TurnProfiler(true);
+		final long now = System.nanoTime();
+		profiler.recordPhase(TurnProfiler.BEGIN_TURN, now - 1000000);
+		profiler.recordPhase(TurnProfiler.END_TURN, now);
+		assertEquals(0, profiler.getOverruns());
+
+		// a turn that took longer than allowed
+		profiler.recordPhase(TurnProfiler.BEGIN_TURN, now - (StendhalRPWorld.MILLISECONDS_PER_TURN + 1) * 1000000L);
+		profiler.recordPhase(TurnProfiler.END_TURN, now);
+		assertEquals(1, profiler.getOverruns());
+		assertEquals(2, profiler.getPhase(TurnProfiler.END_TURN).getCount());
+
+		profiler.recordZone(new StendhalRPZone("profiled_zone", 10, 10), now);
+		final String report = profiler.getReport();
+		assertTrue(report, report.contains("2 turns, 1 longer than"));
+		assertTrue(report, report.contains(TurnProfiler.ZONE_LOGIC));
+		assertTrue(report, report.contains("profiled_zone"));
+
+		profiler.reset();
+		assertEquals(0, profiler.getOverruns());
+		assertEquals(0, profiler.getPhase(TurnProfiler.END_TURN).getCount());
+		assertFalse(profiler.getReport().contains("profiled_zone"));
+	}
+
+	/**
+	 * Tests that a disabled profiler records nothing.
+	 */
+	@Test
+	public void testDisabled() {
+		final TurnProfiler profiler = new TurnProfiler(false);
+		assertEquals(0, profiler.start());
+		profiler.recordPhase(TurnProfiler.BEGIN_TURN, 0);
+		assertEquals(0, profiler.getPhase(TurnProfiler.BEGIN_TURN).getCount());
+	}
+}
@@ -0,0 +1,129 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the TurnNotifier.
+ */
+public class TurnNotifierTest {
+	private TurnNotifier notifier;
+	private int turn;
+
+	/**
+	 * Listener that records the turns it was notified at.
+	 */
+	private static class RecordingListener implements TurnListener {
+		private final List<Integer> turns = new ArrayList<Integer>();
+
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			turns.add(Integer.valueOf(currentTurn));
+		}
+	}
+
+	@Before
+	public void setUp() {
+		notifier = TurnNotifier.get();
+		notifier.getEventListForDebugging().clear();
+		turn = notifier.getCurrentTurnForDebugging();
+	}
+
+	@After
+	public void tearDown() {
+		notifier.getEventListForDebugging().clear();
+	}
+
+	private void runTurns(final int count) {
+		for (int i = 0; i < count; i++) {
+			turn++;
+			notifier.logic(turn);
+		}
+	}
+
+	/**
+	 * Tests that notifications on all wheel levels fire at their turn.
+	 */
+	@Test
+	public void testNotifyAtTurn() {
+		final int start = turn;
+		final int[] delays = { 1, 2, 255, 256, 257, 1000, 65535, 65536, 70000 };
+		final List<RecordingListener> listeners = new ArrayList<RecordingListener>();
+		for (final int delay : delays) {
+			final RecordingListener listener = new RecordingListener();
+			listeners.add(listener);
+			notifier.notifyAtTurn(start + delay, listener);
+		}
+		assertEquals(delays.length, notifier.getQueueSize());
+		assertEquals(1000, notifier.getRemainingTurns(listeners.get(5)));
+
+		runTurns(70000);
+		for (int i = 0; i < delays.length; i++) {
+			assertEquals(Integer.valueOf(start + delays[i]), listeners.get(i).turns.get(0));
+			assertEquals(1, listeners.get(i).turns.size());
+		}
+		assertEquals(0, notifier.getQueueSize());
+	}
+
+	/**
+	 * Tests cancelling, and multiple notifications of the same listener.
+	 */
+	@Test
+	public void testDontNotify() {
+		final RecordingListener listener = new RecordingListener();
+		final RecordingListener other = new RecordingListener();
+		notifier.notifyInTurns(10, listener);
+		notifier.notifyInTurns(3, listener);
+		notifier.notifyInTurns(3, listener);
+		notifier.notifyInTurns(3, other);
+		assertEquals(3, notifier.getQueueSize());
+		assertEquals(4, notifier.getRemainingTurns(listener));
+
+		runTurns(4);
+		assertEquals(1, listener.turns.size());
+		assertEquals(2, notifier.getFiredInLastTurn());
+		assertEquals(7, notifier.getRemainingTurns(listener));
+
+		notifier.dontNotify(listener);
+		assertEquals(-1, notifier.getRemainingTurns(listener));
+		assertEquals(0, notifier.getQueueSize());
+		runTurns(20);
+		assertEquals(1, listener.turns.size());
+	}
+
+	/**
+	 * Tests that skipped turns do not fire, like before the timing wheel, and
+	 * that notifications after them still do.
+	 */
+	@Test
+	public void testSkippedTurns() {
+		final RecordingListener skipped = new RecordingListener();
+		final RecordingListener later = new RecordingListener();
+		notifier.notifyInTurns(0, skipped);
+		notifier.notifyInTurns(300, later);
+
+		turn += 2;
+		notifier.logic(turn);
+		assertTrue(skipped.turns.isEmpty());
+		runTurns(299);
+		assertEquals(1, later.turns.size());
+	}
+}
@@ -13,6 +13,9 @@
 package games.stendhal.server.core.pathfinder;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -74,4 +77,40 @@ public class PathTest {
 
 		assertArrayEquals(expected.toArray(), Path.searchPath(zone, 0, 0, 6, 6, 20).toArray());
 	}
+
+	/**
+	 * Test that stopped entities are avoided, and that consecutive searches
+	 * reusing the same node tables give consistent results.
+	 */
+	@Test
+	public void testSearchPathAroundEntity() {
+		final StendhalRPZone zone = new StendhalRPZone("test", 20, 20);
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+		entity.setPosition(2, 5);
+		zone.add(entity);
+		final Entity wall = new Entity() {
+			// just to create an instance
+		};
+		wall.setPosition(5, 0);
+		wall.setSize(1, 10);
+		zone.add(wall);
+
+		final List<Node> path = Path.searchPath(entity, 8, 5);
+		assertFalse(path.isEmpty());
+		for (final Node node : path) {
+			assertFalse("path goes through the wall: " + node, (node.getX() == 5) && (node.getY() < 10));
+		}
+		assertEquals(new Node(8, 5), path.get(path.size() - 1));
+		assertArrayEquals(path.toArray(), Path.searchPath(entity, 8, 5).toArray());
+
+		// without entity checking the direct route is used
+		final List<Node> direct = Path.searchPath(entity, zone, 2, 5, entity.getArea(8, 5), 80, false);
+		assertEquals(7, direct.size());
+
+		// blocked completely
+		wall.setSize(1, 20);
+		assertTrue(Path.searchPath(entity, 8, 5).isEmpty());
+	}
 }
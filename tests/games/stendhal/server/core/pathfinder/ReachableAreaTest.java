@@ -0,0 +1,127 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for ReachableArea.
+ */
+public class ReachableAreaTest {
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests reachability with a wall that has a gap.
+	 */
+	@Test
+	public void testWall() {
+		final StendhalRPZone zone = new StendhalRPZone("reachable_test", 20, 20);
+		for (int y = 1; y < 20; y++) {
+			zone.collisionMap.setCollide(10, y);
+		}
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+
+		ReachableArea area = new ReachableArea(entity, zone, 5, 5, 100);
+		assertTrue(area.isReachable(5, 5));
+		assertEquals(0, area.getDistance(5, 5));
+		assertEquals(8, area.getDistance(9, 9));
+		assertFalse(area.isReachable(10, 5));
+		// around the wall through the gap at (10, 0)
+		assertTrue(area.isReachable(11, 5));
+		assertEquals(16, area.getDistance(11, 5));
+		assertFalse(area.isReachable(-1, 5));
+		area.release();
+
+		// too far
+		area = new ReachableArea(entity, zone, 5, 5, 10);
+		assertTrue(area.isReachable(9, 9));
+		assertFalse(area.isReachable(11, 5));
+		area.release();
+
+		zone.collisionMap.setCollide(10, 0);
+		area = new ReachableArea(entity, zone, 5, 5, 100);
+		assertFalse(area.isReachable(11, 5));
+		area.release();
+	}
+
+	/**
+	 * Tests that the result does not depend on the order of the checks.
+	 */
+	@Test
+	public void testCheckOrder() {
+		final StendhalRPZone zone = new StendhalRPZone("reachable_order_test", 20, 20);
+		for (int y = 1; y < 20; y++) {
+			zone.collisionMap.setCollide(10, y);
+		}
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+
+		final ReachableArea area = new ReachableArea(entity, zone, 5, 5, 100);
+		assertEquals(16, area.getDistance(11, 5));
+		assertEquals(8, area.getDistance(9, 9));
+		assertEquals(1, area.getDistance(5, 6));
+		assertFalse(area.isReachable(10, 5));
+		assertEquals(0, area.getDistance(5, 5));
+		area.release();
+	}
+
+	/**
+	 * Tests that a reused workspace does not keep the results of earlier
+	 * searches, and that overlapping searches do not share it.
+	 */
+	@Test
+	public void testWorkspaceReuse() {
+		final StendhalRPZone zone = new StendhalRPZone("reachable_reuse_test", 20, 20);
+		for (int y = 0; y < 20; y++) {
+			zone.collisionMap.setCollide(10, y);
+		}
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+
+		ReachableArea area = new ReachableArea(entity, zone, 15, 5, 100);
+		assertTrue(area.isReachable(12, 12));
+		area.release();
+
+		area = new ReachableArea(entity, zone, 5, 5, 100);
+		assertFalse(area.isReachable(12, 12));
+		assertEquals(1, area.getDistance(5, 6));
+		final ReachableArea other = new ReachableArea(entity, zone, 15, 5, 100);
+		assertTrue(other.isReachable(12, 12));
+		assertFalse(other.isReachable(5, 6));
+		assertEquals(2, area.getDistance(5, 7));
+		assertFalse(area.isReachable(12, 12));
+		other.release();
+		area.release();
+	}
+}
@@ -0,0 +1,154 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.RPClass.EntityTestHelper;
+
+/**
+ * Tests for the hierarchical path finder.
+ */
+public class ZonePathfinderTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		EntityTestHelper.generateRPClasses();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Check that a path consists of single steps over free tiles.
+	 *
+	 * @param zone zone of the path
+	 * @param path path to check
+	 */
+	private static void assertWalkable(final StendhalRPZone zone, final List<Node> path) {
+		Node previous = null;
+		for (final Node node : path) {
+			assertFalse("free tile " + node, zone.collisionMap.collides(node.getX(), node.getY()));
+			if (previous != null) {
+				assertEquals("single step to " + node, 1,
+						Math.abs(node.getX() - previous.getX()) + Math.abs(node.getY() - previous.getY()));
+			}
+			previous = node;
+		}
+	}
+
+	private static Node last(final List<Node> path) {
+		return path.get(path.size() - 1);
+	}
+
+	/**
+	 * Tests that the graph of a zone is rebuilt when its collision layer
+	 * changes.
+	 */
+	@Test
+	public void testCollisionChange() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("0_pathtest_change", 60, 20);
+		MockStendlRPWorld.get().addRPZone("dummy", zone);
+		final LayerDefinition walled = new LayerDefinition(60, 20);
+		walled.setName("collision");
+		walled.build();
+		for (int y = 0; y < 20; y++) {
+			walled.set(30, y, 255);
+		}
+		zone.addCollisionLayer("collision", walled);
+		assertNull(ZonePathfinder.get().searchZoneWaypoints(zone, 2, 10, 55, 10));
+
+		final LayerDefinition open = new LayerDefinition(60, 20);
+		open.setName("collision");
+		open.build();
+		zone.addCollisionLayer("collision", open);
+		final List<Node> waypoints = ZonePathfinder.get().searchZoneWaypoints(zone, 2, 10, 55, 10);
+		assertEquals(new Node(2, 10), waypoints.get(0));
+		assertEquals(new Node(55, 10), last(waypoints));
+	}
+
+	/**
+	 * Tests that long entity paths within a zone are planned with waypoints.
+	 */
+	@Test
+	public void testLongEntityPath() {
+		final StendhalRPZone zone = new StendhalRPZone("0_pathtest_long", 100, 40);
+		MockStendlRPWorld.get().addRPZone("dummy", zone);
+		// walls with a gap at alternating ends
+		for (int x = 20; x < 100; x += 20) {
+			final int gap = ((x / 20) % 2 == 0) ? 0 : 39;
+			for (int y = 0; y < 40; y++) {
+				if (y != gap) {
+					zone.collisionMap.setCollide(x, y);
+				}
+			}
+		}
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+		entity.setPosition(2, 20);
+		zone.add(entity);
+
+		final List<Node> waypoints = ZonePathfinder.get().searchZoneWaypoints(zone, 2, 20, 95, 20);
+		assertEquals(new Node(95, 20), last(waypoints));
+
+		final List<Node> path = Path.searchPath(entity, 95, 20);
+		assertEquals(new Node(2, 20), path.get(0));
+		assertEquals(new Node(95, 20), last(path));
+		assertWalkable(zone, path);
+	}
+
+	/**
+	 * Tests that long entity paths are limited to the same length as
+	 * ordinary searches.
+	 */
+	@Test
+	public void testLongEntityPathLimit() {
+		final StendhalRPZone zone = new StendhalRPZone("0_pathtest_limit", 50, 40);
+		MockStendlRPWorld.get().addRPZone("dummy", zone);
+		// walls with gaps at alternating ends make the way much longer than
+		// the distance
+		final int[][] walls = {{10, 0}, {20, 39}, {30, 0}, {35, 39}};
+		for (final int[] wall : walls) {
+			for (int y = 0; y < 40; y++) {
+				if (y != wall[1]) {
+					zone.collisionMap.setCollide(wall[0], y);
+				}
+			}
+		}
+		final Entity entity = new Entity() {
+			// just to create an instance
+		};
+		entity.setPosition(2, 20);
+		zone.add(entity);
+
+		assertNotNull(ZonePathfinder.get().searchZoneWaypoints(zone, 2, 20, 40, 20));
+		assertTrue(Path.searchPath(entity, 40, 20).isEmpty());
+	}
+}
@@ -13,8 +13,10 @@
 package games.stendhal.server.core.rp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static utilities.PlayerTestHelper.getPrivateReply;
 
 import org.junit.After;
@@ -283,4 +285,36 @@ public class StendhalRPActionTest {
 				"The powerful protective aura in this place prevents you from attacking jekyll's sheep.",
 				getPrivateReply(hyde));
 	}
+
+	/**
+	 * Tests that placing on an occupied spot finds a free spot reachable
+	 * from it.
+	 */
+	@Test
+	public void placeatOccupied() {
+		// only (9, 5) is free on the west side
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 20; y++) {
+				if ((x != 9) || (y != 5)) {
+					zone.collisionMap.setCollide(x, y);
+				}
+			}
+		}
+		final Creature first = new Creature();
+		assertTrue(StendhalRPAction.placeat(zone, first, 9, 5));
+		assertEquals(9, first.getX());
+		assertEquals(5, first.getY());
+
+		final Creature second = new Creature();
+		assertTrue(StendhalRPAction.placeat(zone, second, 9, 5));
+		assertEquals(10, second.getX());
+		assertEquals(5, second.getY());
+
+		// no free spot reachable from (9, 5)
+		zone.remove(second);
+		for (int y = 0; y < 20; y++) {
+			zone.collisionMap.setCollide(10, y);
+		}
+		assertFalse(StendhalRPAction.placeat(zone, new Creature(), 9, 5));
+	}
 }
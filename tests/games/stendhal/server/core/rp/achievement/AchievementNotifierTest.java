@@ -0,0 +1,86 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp.achievement;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.rp.achievement.factory.FightingAchievementFactory;
+import games.stendhal.server.entity.player.Player;
+import utilities.AchievementTestHelper;
+
+/**
+ * Tests for the dependency based achievement checks.
+ */
+public class AchievementNotifierTest extends AchievementTestHelper {
+
+	private Player player;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		AchievementTestHelper.setUpBeforeClass();
+	}
+
+	@Before
+	public void setUp() {
+		player = createPlayer("player");
+		init(player);
+	}
+
+	/**
+	 * Tests that a quest slot change checks the achievements reading the slot.
+	 */
+	@Test
+	public void testQuestChange() {
+		player.setQuest("some_other_quest", "done");
+		assertFalse(achievementReached(player, "quest.special.maze"));
+
+		player.setQuest("maze", "done;0;1");
+		assertTrue(achievementReached(player, "quest.special.maze"));
+		assertFalse(achievementReached(player, "quest.special.elf_princess.0025"));
+
+		// only checked when its own slot changes
+		player.setKeyedSlot("!quests", "elf_princess", "done;0;25");
+		player.setQuest("maze", "done;0;2");
+		assertFalse(achievementReached(player, "quest.special.elf_princess.0025"));
+		player.setQuest("elf_princess", "done;0;25");
+		assertTrue(achievementReached(player, "quest.special.elf_princess.0025"));
+
+		// a full check still finds everything
+		player.setKeyedSlot("!quests", "kill_monks", "done;0;25");
+		an.onFinishQuest(player);
+		assertTrue(achievementReached(player, "quest.special.kill_monks.0025"));
+	}
+
+	/**
+	 * Tests that a kill checks the achievements counting the killed creature.
+	 */
+	@Test
+	public void testKill() {
+		for (int i = 0; i < 15; i++) {
+			player.incSoloKillCount("rat");
+		}
+		for (int i = 0; i < 25; i++) {
+			player.incSoloKillCount("deer");
+		}
+		an.onKill(player, "deer");
+		assertTrue(achievementReached(player, FightingAchievementFactory.ID_DEER));
+		assertFalse(achievementReached(player, FightingAchievementFactory.ID_RATS));
+
+		an.onKill(player, "rat");
+		assertTrue(achievementReached(player, FightingAchievementFactory.ID_RATS));
+	}
+}
@@ -22,6 +22,10 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.profiler.ModificationStatistics;
+import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.maps.MockStendlRPWorld;
 import utilities.PlayerTestHelper;
@@ -230,4 +234,45 @@ public class EntityTest {
 
 
 	}
+	/**
+	 * Tests that notifications of unchanged entities are skipped.
+	 */
+	@Test
+	public void testNotifyWorldAboutChanges() {
+		final StendhalRPZone zone = new StendhalRPZone("changes_test", 10, 10);
+		final Player player = PlayerTestHelper.createPlayer("changes");
+		zone.add(player);
+		player.notifyWorldAboutChanges();
+
+		long modified = ModificationStatistics.getModified();
+		long suppressed = ModificationStatistics.getSuppressed();
+		player.notifyWorldAboutChanges();
+		assertEquals(modified, ModificationStatistics.getModified());
+		assertEquals(suppressed + 1, ModificationStatistics.getSuppressed());
+
+		// attribute change
+		player.put("title", "changed");
+		player.notifyWorldAboutChanges();
+		assertEquals(modified + 1, ModificationStatistics.getModified());
+		player.notifyWorldAboutChanges();
+		assertEquals(suppressed + 2, ModificationStatistics.getSuppressed());
+
+		// slot content
+		final Item item = SingletonRepository.getEntityManager().getItem("dagger");
+		player.getSlot("bag").add(item);
+		player.notifyWorldAboutChanges();
+		assertEquals(modified + 2, ModificationStatistics.getModified());
+
+		// change of an item in a slot
+		item.put("bound", "changes");
+		player.notifyWorldAboutChanges();
+		assertEquals(modified + 3, ModificationStatistics.getModified());
+
+		// keyed slot
+		player.setQuest("changes_test", "done");
+		player.notifyWorldAboutChanges();
+		assertEquals(modified + 4, ModificationStatistics.getModified());
+		player.notifyWorldAboutChanges();
+		assertEquals(suppressed + 3, ModificationStatistics.getSuppressed());
+	}
 }
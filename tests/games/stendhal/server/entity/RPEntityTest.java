@@ -289,6 +289,44 @@ public class RPEntityTest {
 
 	}
 
+	/**
+	 * Tests that the cached equipment stats follow equipment and level changes.
+	 */
+	@Test
+	public void testEquipmentStatsCache() {
+		final RPEntity entity = new MockRPEntity();
+		entity.addSlot(new PlayerSlot("lhand"));
+		entity.addSlot(new PlayerSlot("rhand"));
+		entity.addSlot(new PlayerSlot("armor"));
+		entity.setLevel(0);
+
+		assertThat(entity.getItemDef(), is(0f));
+		final Item armor = SingletonRepository.getEntityManager().getItem("leather armor");
+		armor.put("min_level", 10);
+		entity.getSlot("armor").add(armor);
+		final float lowLevelDef = entity.getItemDef();
+		entity.setLevel(10);
+		assertThat(entity.getItemDef(), is((float) armor.getDefense()));
+		assertThat(entity.getItemDef(), greaterThan(lowLevelDef));
+
+		final Item dagger = SingletonRepository.getEntityManager().getItem("dagger");
+		entity.getSlot("rhand").add(dagger);
+		assertThat(entity.getItemAtk(), is((float) dagger.getAttack()));
+
+		entity.getSlot("rhand").clear();
+		assertThat(entity.getItemAtk(), is(0f));
+		entity.getSlot("armor").remove(armor.getID());
+		assertThat(entity.getItemDef(), is(0f));
+
+		// stats of an equipped item changed
+		entity.getSlot("lhand").add(dagger);
+		assertThat(entity.getItemAtk(), is((float) dagger.getAttack()));
+		dagger.put("atk", dagger.getAttack() + 5);
+		entity.updateItemAtkDef();
+		assertThat(entity.getItemAtk(), is((float) dagger.getAttack()));
+		assertEquals(dagger.getAttack(), entity.getInt("atk_item"));
+	}
+
 	/**
 	 * Tests for attackCanHitreturnTruedamageZero.
 	 */
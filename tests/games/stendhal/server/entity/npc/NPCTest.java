@@ -13,6 +13,7 @@
 package games.stendhal.server.entity.npc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static utilities.SpeakerNPCTestHelper.getReply;
@@ -83,6 +84,32 @@ public class NPCTest extends ZonePlayerAndNPCTestImpl {
 		assertEquals(null, npc.getAttending());
 	}
 
+	/**
+	 * Tests that NPCs hear players speaking near them.
+	 */
+	@Test
+	public void testSpeech() {
+		final SpeakerNPC npc = getNPC("Felina");
+		npc.getEngine().setCurrentState(ConversationStates.IDLE);
+		npc.setAttending(null);
+
+		player.setPosition(npc.getX() + npc.getPerceptionRange() + 1, npc.getY());
+		player.say("hi");
+		npc.preLogic();
+		assertFalse(npc.isTalking());
+
+		player.setPosition(npc.getX() + 1, npc.getY());
+		player.say("hi");
+		npc.preLogic();
+		assertEquals("Greetings! How may I help you?", getReply(npc));
+		assertEquals(player, npc.getAttending());
+
+		player.say("bye");
+		npc.preLogic();
+		assertEquals("Bye.", getReply(npc));
+		assertFalse(npc.isTalking());
+	}
+
 	/**
 	 * Tests for idea.
 	 */
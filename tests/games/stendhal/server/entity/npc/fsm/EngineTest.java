@@ -16,6 +16,7 @@ import static games.stendhal.server.entity.npc.ConversationStates.ATTENDING;
 import static games.stendhal.server.entity.npc.ConversationStates.IDLE;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static utilities.SpeakerNPCTestHelper.getReply;
@@ -209,4 +210,35 @@ public class EngineTest {
 		assertEquals(reply, getReply(bob));
 	}
 
+	/**
+	 * Tests that the transition index follows changes of the transition table.
+	 */
+	@Test
+	public void testTransitionIndex() {
+		final Engine en = new Engine(new SpeakerNPC("bob"));
+		final Player pete = PlayerTestHelper.createPlayer("player");
+		en.add(IDLE, "hi", null, false, ATTENDING, null, null);
+		en.add(ATTENDING, "job", null, false, ConversationStates.QUESTION_1, null, null);
+		en.add(ConversationStates.ANY, "bye", null, false, IDLE, null, null, "bye");
+
+		// jumps are not possible from IDLE
+		assertFalse(en.step(pete, "bye"));
+		assertEquals(IDLE, en.getCurrentState());
+		assertFalse(en.step(pete, "job"));
+		assertTrue(en.step(pete, "hi"));
+		assertEquals(ATTENDING, en.getCurrentState());
+		assertTrue(en.step(pete, "job"));
+		assertEquals(ConversationStates.QUESTION_1, en.getCurrentState());
+		assertTrue(en.step(pete, "bye"));
+		assertEquals(IDLE, en.getCurrentState());
+
+		assertTrue(en.remove("bye"));
+		en.setCurrentState(ATTENDING);
+		assertFalse(en.step(pete, "bye"));
+		assertEquals(ATTENDING, en.getCurrentState());
+
+		en.add(ATTENDING, "bye", null, false, IDLE, null, null);
+		assertTrue(en.step(pete, "bye"));
+		assertEquals(IDLE, en.getCurrentState());
+	}
 }
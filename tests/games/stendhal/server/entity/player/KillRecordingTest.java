@@ -0,0 +1,96 @@
+/***************************************************************************
+ *                    Copyright © 2024 - Faiumoni e. V.                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for KillRecording.
+ */
+public class KillRecordingTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests counting kills, and storing them to the slot.
+	 */
+	@Test
+	public void testCounting() {
+		final Player player = PlayerTestHelper.createPlayer("killer");
+		assertFalse(player.hasKilled("rat"));
+		assertEquals(0, player.getSoloKill("rat"));
+
+		player.setSoloKill("rat");
+		player.setSoloKill("rat");
+		player.setSharedKill("rat");
+		player.setSharedKill("never seen creature");
+		assertTrue(player.hasKilled("rat"));
+		assertTrue(player.hasKilledSolo("rat"));
+		assertTrue(player.hasKilledShared("never seen creature"));
+		assertFalse(player.hasKilledSolo("never seen creature"));
+		assertEquals(2, player.getSoloKill("rat"));
+		assertEquals(1, player.getSharedKill("rat"));
+
+		assertEquals("2", player.getKeyedSlot(KillRecording.KILL_SLOT_NAME, "solo.rat"));
+		assertEquals("1", player.getKeyedSlot(KillRecording.KILL_SLOT_NAME, "shared.rat"));
+		assertEquals("1", player.getKeyedSlot(KillRecording.KILL_SLOT_NAME, "shared.never seen creature"));
+
+		player.setSoloKillCount("rat", 10);
+		assertEquals(10, player.getSoloKill("rat"));
+		assertEquals("10", player.getKeyedSlot(KillRecording.KILL_SLOT_NAME, "solo.rat"));
+	}
+
+	/**
+	 * Tests loading the kill counts from the slot.
+	 */
+	@Test
+	public void testLoading() {
+		final Player player = PlayerTestHelper.createPlayer("loader");
+		player.setKeyedSlot(KillRecording.KILL_SLOT_NAME, "solo.wolf", "3");
+		player.setKeyedSlot(KillRecording.KILL_SLOT_NAME, "shared.bear", "4");
+		player.setKeyedSlot(KillRecording.KILL_SLOT_NAME, "solo.broken", "x");
+		assertEquals(3, player.getSoloKill("wolf"));
+		assertEquals(4, player.getSharedKill("bear"));
+		assertEquals(0, player.getSharedKill("wolf"));
+		assertFalse(player.hasKilled("broken"));
+
+		// replacing the slot object resets the counts
+		final RPSlot slot = player.getSlot(KillRecording.KILL_SLOT_NAME);
+		slot.remove(slot.getFirst().getID());
+		final RPObject kills = new RPObject();
+		kills.put("solo.bear", "5");
+		slot.add(kills);
+		assertEquals(0, player.getSoloKill("wolf"));
+		assertEquals(5, player.getSoloKill("bear"));
+		player.setSoloKill("bear");
+		assertEquals("6", kills.get("solo.bear"));
+	}
+}
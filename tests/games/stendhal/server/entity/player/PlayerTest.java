@@ -363,6 +363,30 @@ public class PlayerTest {
 
 	}
 
+	/**
+	 * Tests sub states of quests that are changed without the quest methods,
+	 * and sub states with empty elements.
+	 */
+	@Test
+	public void testQuestSubStatesChangedDirectly() {
+		Player player = PlayerTestHelper.createPlayer("questTestPlayer2");
+		player.setQuest("testquest", "a;b;;");
+		assertThat(player.getQuest("testquest", 1), equalTo("b"));
+		assertThat(player.getQuest("testquest", 2), equalTo(""));
+
+		player.setKeyedSlot("!quests", "testquest", "c;d");
+		assertThat(player.getQuest("testquest", 0), equalTo("c"));
+		assertThat(player.getQuest("testquest", 1), equalTo("d"));
+
+		player.setQuest("testquest", 3, "e");
+		assertThat(player.getQuest("testquest"), equalTo("c;d;;e"));
+		assertThat(player.getQuest("testquest", 2), equalTo(""));
+		assertThat(player.getQuest("testquest", 3), equalTo("e"));
+
+		player.removeQuest("testquest");
+		assertThat(player.getQuest("testquest", 0), nullValue());
+	}
+
 	/**
 	 * Test that the damage done by a player is of right type.
 	 */